@@ -0,0 +1,17 @@
+package tomcat.request.session.benchmark;
+
+public enum AttributeCount {
+    FEW(4),
+    MANY(64);
+
+    private final int count;
+
+    AttributeCount(int count) {
+        this.count = count;
+    }
+
+    /** To get the number of session attributes. */
+    public int getCount() {
+        return this.count;
+    }
+}
@@ -0,0 +1,47 @@
+package tomcat.request.session.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark runner, accepts the jmh command line options. With '-Dbenchmark.threads=1,4,16', the benchmarks are run
+ * once per thread count, and the results of each run are written to their own result file.
+ */
+public class BenchmarkRunner {
+
+    private static final String THREADS_PROPERTY = "benchmark.threads";
+    private static final String DEFAULT_RESULT_FILE = "jmh-result";
+
+    public static void main(String[] args) throws Exception {
+        String threads = System.getProperty(THREADS_PROPERTY);
+        if (threads == null || threads.trim().isEmpty()) {
+            Main.main(args);
+            return;
+        }
+
+        CommandLineOptions options = new CommandLineOptions(args);
+        for (String count : threads.split(",")) {
+            int threadCount = Integer.parseInt(count.trim());
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(options).threads(threadCount);
+            if (options.getResultFormat().hasValue()) {
+                builder.result(getResultFile(options.getResult().hasValue() ? options.getResult().get() : null,
+                        options.getResultFormat().get().name().toLowerCase(), threadCount));
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+
+    /** To get the result file of the thread count, ex: 'jmh-result-4t.json'. */
+    private static String getResultFile(String resultFile, String format, int threadCount) {
+        if (resultFile == null) {
+            return DEFAULT_RESULT_FILE + "-" + threadCount + "t." + format;
+        }
+        int extensionIndex = resultFile.lastIndexOf('.');
+        return (extensionIndex > 0)
+                ? resultFile.substring(0, extensionIndex) + "-" + threadCount + "t" + resultFile.substring(extensionIndex)
+                : resultFile + "-" + threadCount + "t";
+    }
+}
@@ -0,0 +1,138 @@
+package tomcat.request.session.benchmark;
+
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.StandardManager;
+import tomcat.request.session.codec.CompressionCodec;
+import tomcat.request.session.codec.SessionCodec;
+import tomcat.request.session.codec.SessionCodecFactory;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.util.ConfigUtil;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Benchmark support, to build the session manager components and the sessions of realistic shapes, without tomcat
+ * and redis.
+ */
+final class BenchmarkSupport {
+
+    private static final String CATALINA_BASE = "catalina.base";
+    private static final String CONF = "conf";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * To get application config, the default properties overridden by the given properties.
+     *
+     * @param properties - properties to override.
+     * @return - Returns the application config.
+     */
+    static Config getConfig(Properties properties) throws IOException {
+        File base = new File(System.getProperty("java.io.tmpdir"), "session-manager-benchmark-" + System.nanoTime());
+        File conf = new File(base, CONF);
+        File file = new File(conf, Config.APPLICATION_PROPERTIES_FILE);
+        if (!conf.mkdirs()) {
+            throw new IOException("Unable to create benchmark config directory [" + conf + "]");
+        }
+
+        String catalinaBase = System.getProperty(CATALINA_BASE);
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, null);
+            System.setProperty(CATALINA_BASE, base.getAbsolutePath());
+            return ConfigUtil.getConfig();
+        } finally {
+            if (catalinaBase != null) {
+                System.setProperty(CATALINA_BASE, catalinaBase);
+            }
+            file.delete();
+            conf.delete();
+            base.delete();
+        }
+    }
+
+    /** To get the session serializer, as the session manager builds it. */
+    static SerializationUtil getSerializer(Config config) {
+        SessionCodecFactory codecFactory = new SessionCodecFactory(config, null);
+        SessionCodec codec = codecFactory.getSessionCodec();
+        CompressionCodec compressionCodec = codecFactory.getCompressionCodec();
+        return new SerializationUtil(codec, codecFactory.getSessionCodecs(codec),
+                HashAlgorithm.fromName(config.getSessionAttributesHashAlgorithm()),
+                compressionCodec, codecFactory.getCompressionCodecs(compressionCodec),
+                config.getSessionCompressionThreshold());
+    }
+
+    /** To get a session manager, attached to a context which is never started. */
+    static StandardManager getManager() {
+        StandardContext context = new StandardContext();
+        StandardManager manager = new StandardManager();
+        manager.setContext(context);
+        return manager;
+    }
+
+    /** To create an empty valid session. */
+    static Session createEmptySession(StandardManager manager) {
+        Session session = new Session(manager);
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis());
+        session.setMaxInactiveInterval(1800);
+        return session;
+    }
+
+    /** To create a session of the given shape, with unchanged dirty tracking. */
+    static Session createSession(StandardManager manager, SessionSize size, AttributeCount attributes) {
+        Session session = createEmptySession(manager);
+        session.setId("benchmark-session-" + size + "-" + attributes);
+        for (int i = 0; i < attributes.getCount(); i++) {
+            session.setAttribute("attribute-" + i, createAttributeValue(i, size));
+        }
+        session.resetDirtyTracking();
+        return session;
+    }
+
+    /**
+     * To create an attribute value of the given size. Attribute values cycle through the types commonly kept in the
+     * sessions: strings, string maps, string lists and numbers.
+     */
+    static Object createAttributeValue(int index, SessionSize size) {
+        Random random = new Random(index);
+        switch (index % 4) {
+            case 0:
+                return createString(random, size.getAttributeSize());
+            case 1:
+                Map<String, String> map = new HashMap<>();
+                for (int i = 0; i < Math.max(size.getAttributeSize() / 32, 1); i++) {
+                    map.put("key-" + i, createString(random, 24));
+                }
+                return map;
+            case 2:
+                List<String> list = new ArrayList<>();
+                for (int i = 0; i < Math.max(size.getAttributeSize() / 16, 1); i++) {
+                    list.add(createString(random, 16));
+                }
+                return list;
+            default:
+                return random.nextLong();
+        }
+    }
+
+    private static String createString(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,104 @@
+package tomcat.request.session.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tomcat.request.session.data.cache.impl.LocalDataCache;
+import tomcat.request.session.data.cache.impl.StandardDataCache;
+import tomcat.request.session.metrics.SessionMetrics;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data-cache benchmarks, the sticky session data-cache over the in-process local data-cache in place of redis.
+ * Run with increasing thread counts to measure the contention, ex: -t 1, -t 4 and -t 16.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataCacheBenchmark {
+
+    private static final int SESSION_TIMEOUT = 1800;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private SessionSize size;
+
+    @Param({"FEW", "MANY"})
+    private AttributeCount attributes;
+
+    @Param({"10000"})
+    private int sessions;
+
+    private LocalDataCache localDataCache;
+    private StandardDataCache standardDataCache;
+    private String[] keys;
+    private byte[] value;
+
+    @Setup
+    public void setup() throws IOException {
+        Properties properties = new Properties();
+        // sessions share the same value, so the sessions are never evicted from local jvm.
+        properties.setProperty("lb.sticky-session.enabled", "true");
+        properties.setProperty("lb.sticky-session.local-cache.max-entries", "0");
+        properties.setProperty("lb.sticky-session.local-cache.max-size", "0");
+        Config config = BenchmarkSupport.getConfig(properties);
+
+        SerializationUtil serializer = BenchmarkSupport.getSerializer(config);
+        this.value = serializer.compress(serializer.serializeSessionData(
+                BenchmarkSupport.createSession(BenchmarkSupport.getManager(), this.size, this.attributes),
+                new SessionMetadata()));
+        this.localDataCache = new LocalDataCache();
+        this.standardDataCache = new StandardDataCache(config, SESSION_TIMEOUT, SessionMetrics.DISABLED, this.localDataCache);
+
+        this.keys = new String[this.sessions];
+        for (int i = 0; i < this.sessions; i++) {
+            this.keys[i] = "benchmark-session-" + i;
+            this.standardDataCache.setex(this.keys[i], this.value, SESSION_TIMEOUT);
+        }
+    }
+
+    /** Session read in sticky session mode, served from local jvm. */
+    @Benchmark
+    public byte[] get() {
+        return this.standardDataCache.get(nextKey());
+    }
+
+    /** Changed session write in sticky session mode, stored in local jvm and in the data-cache. */
+    @Benchmark
+    public byte[] setex() {
+        return this.standardDataCache.setex(nextKey(), this.value, SESSION_TIMEOUT);
+    }
+
+    /** Unchanged session expiry refresh in sticky session mode. */
+    @Benchmark
+    public Long expire() {
+        return this.standardDataCache.expire(nextKey(), SESSION_TIMEOUT);
+    }
+
+    /** Session read from the in-process data-cache, the baseline of the data-cache overhead. */
+    @Benchmark
+    public byte[] localGet() {
+        return this.localDataCache.get(nextKey());
+    }
+
+    private String nextKey() {
+        return this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+    }
+}
@@ -0,0 +1,60 @@
+package tomcat.request.session.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session attributes hash benchmark, the hash computed on each session save to detect the attribute changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private SessionSize size;
+
+    @Param({"FEW", "MANY"})
+    private AttributeCount attributes;
+
+    @Param({"MD5", "MURMUR3"})
+    private String hashAlgorithm;
+
+    private SerializationUtil serializer;
+    private byte[] sessionData;
+
+    @Setup
+    public void setup() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("session.attributes.hash.algorithm", this.hashAlgorithm);
+
+        this.serializer = BenchmarkSupport.getSerializer(BenchmarkSupport.getConfig(properties));
+        this.sessionData = this.serializer.serializeSessionData(
+                BenchmarkSupport.createSession(BenchmarkSupport.getManager(), this.size, this.attributes),
+                new SessionMetadata());
+    }
+
+    /** Hash of the encoded session. */
+    @Benchmark
+    public byte[] attributesHashCode() {
+        return this.serializer.getHashCode(this.sessionData);
+    }
+}
@@ -0,0 +1,91 @@
+package tomcat.request.session.benchmark;
+
+import org.apache.catalina.session.StandardManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session serialization benchmarks, the session encoded as a single value and as hash fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private SessionSize size;
+
+    @Param({"FEW", "MANY"})
+    private AttributeCount attributes;
+
+    @Param({"JAVA", "BINARY"})
+    private String codec;
+
+    @Param({"NONE", "DEFLATE"})
+    private String compression;
+
+    private StandardManager manager;
+    private SerializationUtil serializer;
+    private Session session;
+    private byte[] sessionData;
+
+    @Setup
+    public void setup() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("session.codec", this.codec);
+        properties.setProperty("session.compression.codec", this.compression);
+
+        this.manager = BenchmarkSupport.getManager();
+        this.serializer = BenchmarkSupport.getSerializer(BenchmarkSupport.getConfig(properties));
+        this.session = BenchmarkSupport.createSession(this.manager, this.size, this.attributes);
+        this.sessionData = this.serializer.compress(this.serializer.serializeSessionData(this.session, new SessionMetadata()));
+    }
+
+    /** Session write, when stored as a single value. */
+    @Benchmark
+    public byte[] serializeSessionData() throws IOException {
+        return this.serializer.compress(this.serializer.serializeSessionData(this.session, new SessionMetadata()));
+    }
+
+    /** Session read, when stored as a single value. */
+    @Benchmark
+    public Session deserializeSessionData() throws IOException, ClassNotFoundException {
+        Session newSession = BenchmarkSupport.createEmptySession(this.manager);
+        this.serializer.deserializeSessionData(this.sessionData, newSession, new SessionMetadata());
+        return newSession;
+    }
+
+    /** Session write, when stored as hash fields: each attribute encoded, hashed and compressed, then the meta-data. */
+    @Benchmark
+    public void serializeSessionFields(Blackhole blackhole) throws IOException {
+        SessionMetadata metadata = new SessionMetadata();
+        for (Enumeration<String> names = this.session.getAttributeNames(); names.hasMoreElements(); ) {
+            String name = names.nextElement();
+            byte[] value = this.serializer.serializeSessionAttribute(this.session.getAttribute(name));
+            metadata.getAttributeHashes().put(name, this.serializer.getHashCode(value));
+            blackhole.consume(this.serializer.compress(value));
+        }
+        blackhole.consume(this.serializer.compress(this.serializer.serializeSessionMetadata(this.session, metadata)));
+    }
+}
@@ -0,0 +1,77 @@
+package tomcat.request.session.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tomcat.request.session.model.Session;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session attribute benchmarks, the dirty tracking done on each attribute set.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+
+    private static final String ATTRIBUTE_NAME = "attribute-1";
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private SessionSize size;
+
+    @Param({"FEW", "MANY"})
+    private AttributeCount attributes;
+
+    private Session session;
+    private Object value;
+    private Object equalValue;
+    private Object[] changedValues;
+    private int changeCount;
+
+    @Setup
+    public void setup() {
+        this.session = BenchmarkSupport.createSession(BenchmarkSupport.getManager(), this.size, this.attributes);
+        this.value = this.session.getAttribute(ATTRIBUTE_NAME);
+        this.equalValue = BenchmarkSupport.createAttributeValue(1, this.size);
+        this.changedValues = new Object[]{BenchmarkSupport.createAttributeValue(5, this.size), this.value};
+    }
+
+    /** Attribute set with the same instance, ex: the attribute modified in place and set again. */
+    @Benchmark
+    public Boolean setSameAttribute() {
+        this.session.setAttribute(ATTRIBUTE_NAME, this.value);
+        return this.session.isDirty();
+    }
+
+    /** Attribute set with an equal value, the values are compared to skip the change. */
+    @Benchmark
+    public Boolean setEqualAttribute() {
+        this.session.setAttribute(ATTRIBUTE_NAME, this.equalValue);
+        return this.session.isDirty();
+    }
+
+    /** Attribute set with a changed value, the change is tracked. */
+    @Benchmark
+    public Boolean setChangedAttribute() {
+        this.session.setAttribute(ATTRIBUTE_NAME, this.changedValues[this.changeCount++ & 1]);
+        return this.session.isDirty();
+    }
+
+    /** Attribute get. */
+    @Benchmark
+    public Object getAttribute() {
+        return this.session.getAttribute(ATTRIBUTE_NAME);
+    }
+}
@@ -0,0 +1,18 @@
+package tomcat.request.session.benchmark;
+
+public enum SessionSize {
+    SMALL(32),
+    MEDIUM(1024),
+    HUGE(32 * 1024);
+
+    private final int attributeSize;
+
+    SessionSize(int attributeSize) {
+        this.attributeSize = attributeSize;
+    }
+
+    /** To get the approximate size (in bytes) of each attribute value. */
+    public int getAttributeSize() {
+        return this.attributeSize;
+    }
+}
@@ -0,0 +1,333 @@
+package tomcat.request.session.benchmark.load;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import tomcat.request.session.metrics.Histogram;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.redis.SessionHandlerValve;
+import tomcat.request.session.redis.SessionManager;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test, drives concurrent requests through an embedded tomcat with the session manager, backed by
+ * the in-process redis stand-in, and reports the throughput and the latency histograms.
+ *
+ * Each client thread holds its own users' session cookies and sends a mix of the session reads, the session writes
+ * and the new sessions. Options are set as system properties, ex: -Dload.threads=32 -Dload.latency=1
+ *   - load.threads: concurrent client threads. (default: 16)
+ *   - load.sessions: user sessions per client thread. (default: 100)
+ *   - load.warmup: warm-up duration in seconds, not reported. (default: 10)
+ *   - load.duration: measured duration in seconds. (default: 30)
+ *   - load.mix: read:write:new request percentages. (default: 80:15:5)
+ *   - load.payload: size (in bytes) of the session payload attribute. (default: 1024)
+ *   - load.latency, load.latency.jitter: redis command latency in milliseconds. (default: 0, 0)
+ *   - load.failure-rate: fraction of the redis commands to fail. (default: 0.0)
+ *   - load.failure-mode: ERROR or DISCONNECT. (default: ERROR)
+ *   - load.properties: session manager properties file, the redis hosts are set to the stand-in. (default: none)
+ */
+public class LoadTest {
+
+    private static final String CATALINA_BASE = "catalina.base";
+
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int NEW = 2;
+    private static final String[] ACTIONS = {"read", "write", "new"};
+
+    private final int threads = Integer.getInteger("load.threads", 16);
+    private final int sessions = Integer.getInteger("load.sessions", 100);
+    private final int warmup = Integer.getInteger("load.warmup", 10);
+    private final int duration = Integer.getInteger("load.duration", 30);
+    private final int[] mix = getMix(System.getProperty("load.mix", "80:15:5"));
+    private final int payload = Integer.getInteger("load.payload", 1024);
+    private final long latency = Long.getLong("load.latency", 0L);
+    private final long latencyJitter = Long.getLong("load.latency.jitter", 0L);
+    private final double failureRate = Double.parseDouble(System.getProperty("load.failure-rate", "0"));
+    private final RespServer.FailureMode failureMode =
+            RespServer.FailureMode.valueOf(System.getProperty("load.failure-mode", "ERROR").toUpperCase());
+    private final String properties = System.getProperty("load.properties");
+
+    private volatile Results results = new Results();
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+        // session manager threads are left running.
+        System.exit(0);
+    }
+
+    /** To run the load test. */
+    public void run() throws Exception {
+        RespServer server = new RespServer();
+        server.start(0);
+
+        File base = new File(System.getProperty("java.io.tmpdir"), "session-manager-load-test-" + System.nanoTime());
+        writeConfig(base, server.getPort());
+        System.setProperty(CATALINA_BASE, base.getAbsolutePath());
+        // client threads keep their connections alive.
+        System.setProperty("http.maxConnections", String.valueOf(this.threads));
+
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(base.getAbsolutePath());
+        tomcat.setPort(0);
+        Context context = tomcat.addContext("", null);
+        context.getPipeline().addValve(new SessionHandlerValve());
+        context.setManager(new SessionManager());
+        Tomcat.addServlet(context, "load-test", new LoadTestServlet(this.payload));
+        context.addServletMappingDecoded("/", "load-test");
+        tomcat.getConnector();
+        tomcat.start();
+
+        try {
+            URL url = new URL("http://127.0.0.1:" + tomcat.getConnector().getLocalPort() + "/");
+            // latency and failures are injected once tomcat is started.
+            server.setLatency(this.latency, this.latencyJitter);
+            server.setFailures(this.failureRate, this.failureMode);
+
+            long start = System.nanoTime();
+            long warmupEnd = start + TimeUnit.SECONDS.toNanos(this.warmup);
+            long end = warmupEnd + TimeUnit.SECONDS.toNanos(this.duration);
+
+            List<Thread> clients = new ArrayList<>();
+            for (int i = 0; i < this.threads; i++) {
+                Thread client = new Thread(new Client(url, end), "load-test-client-" + (i + 1));
+                client.start();
+                clients.add(client);
+            }
+
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime()));
+            this.results = new Results();
+            server.resetCommandCounts();
+            long measureStart = System.nanoTime();
+
+            for (Thread client : clients) {
+                client.join();
+            }
+            long measuredTime = System.nanoTime() - measureStart;
+            report(this.results, measuredTime, server.getCommandCounts(), server.getKeyCount());
+        } finally {
+            server.setLatency(0, 0);
+            server.setFailures(0, RespServer.FailureMode.ERROR);
+            try {
+                tomcat.stop();
+                tomcat.destroy();
+            } catch (LifecycleException ex) {
+                System.err.println("Error occurred while stopping tomcat: " + ex);
+            }
+            server.stop();
+            delete(base);
+        }
+    }
+
+    /** To write the session manager properties, with the redis hosts set to the stand-in. */
+    private void writeConfig(File base, int port) throws IOException {
+        Properties config = new Properties();
+        if (this.properties != null) {
+            try (InputStream in = new FileInputStream(this.properties)) {
+                config.load(in);
+            }
+        }
+        config.setProperty("redis.hosts", "127.0.0.1:" + port);
+        config.setProperty("redis.cluster.enabled", "false");
+        config.setProperty("redis.sentinel.enabled", "false");
+
+        File conf = new File(base, "conf");
+        if (!conf.mkdirs()) {
+            throw new IOException("Unable to create load test config directory [" + conf + "]");
+        }
+        try (OutputStream out = new FileOutputStream(new File(conf, Config.APPLICATION_PROPERTIES_FILE))) {
+            config.store(out, null);
+        }
+    }
+
+    private void report(Results results, long measuredTime, Map<String, Long> commandCounts, int keyCount) {
+        double seconds = measuredTime / 1e9;
+        long requests = 0;
+        for (Histogram histogram : results.histograms) {
+            requests += histogram.getCount();
+        }
+
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT,
+                "threads: %d, sessions: %d, duration: %ds, mix (read:write:new): %d:%d:%d, payload: %d bytes",
+                this.threads, this.threads * this.sessions, this.duration, this.mix[READ], this.mix[WRITE], this.mix[NEW],
+                this.payload));
+        System.out.println(String.format(Locale.ROOT,
+                "redis latency: %d ms (+%d ms jitter), redis failures: %.4f (%s)",
+                this.latency, this.latencyJitter, this.failureRate, this.failureMode));
+        System.out.println(String.format(Locale.ROOT, "throughput: %.1f requests/s, errors: %d",
+                requests / seconds, results.errors.get()));
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%-8s %10s %10s %10s %10s %10s %10s %10s",
+                "latency", "count", "mean(ms)", "p50", "p90", "p99", "p99.9", "max"));
+        Histogram all = new Histogram();
+        for (int i = 0; i < ACTIONS.length; i++) {
+            printHistogram(ACTIONS[i], results.histograms[i]);
+        }
+        for (Histogram histogram : results.histograms) {
+            all.add(histogram);
+        }
+        printHistogram("all", all);
+
+        System.out.println();
+        long commands = 0;
+        for (long count : commandCounts.values()) {
+            commands += count;
+        }
+        System.out.println(String.format(Locale.ROOT, "redis commands: %s, per request: %.2f, keys: %d",
+                commandCounts, (requests == 0) ? 0.0 : (double) commands / requests, keyCount));
+    }
+
+    private static void printHistogram(String name, Histogram histogram) {
+        System.out.println(String.format(Locale.ROOT, "%-8s %10d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f",
+                name, histogram.getCount(), histogram.getMean() / 1000.0,
+                histogram.getPercentile(50) / 1000.0, histogram.getPercentile(90) / 1000.0,
+                histogram.getPercentile(99) / 1000.0, histogram.getPercentile(99.9) / 1000.0,
+                histogram.getMax() / 1000.0));
+    }
+
+    private static int[] getMix(String mix) {
+        String[] values = mix.split(":");
+        if (values.length != ACTIONS.length) {
+            throw new IllegalArgumentException("Invalid load.mix [" + mix + "], expected read:write:new percentages");
+        }
+        int[] percentages = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            percentages[i] = Integer.parseInt(values[i].trim());
+        }
+        return percentages;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Results of the measured duration. */
+    private static class Results {
+        private final Histogram[] histograms = {new Histogram(), new Histogram(), new Histogram()};
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    /** Load test client, sends the request mix of its users until the end time. */
+    private class Client implements Runnable {
+        private final URL url;
+        private final long end;
+        private final String[] cookies;
+        private final byte[] buffer = new byte[8192];
+
+        Client(URL url, long end) {
+            this.url = url;
+            this.end = end;
+            this.cookies = new String[sessions];
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            int total = mix[READ] + mix[WRITE] + mix[NEW];
+            while (System.nanoTime() < this.end) {
+                int user = ThreadLocalRandom.current().nextInt(this.cookies.length);
+                int choice = ThreadLocalRandom.current().nextInt(Math.max(total, 1));
+                int action = (choice < mix[READ]) ? READ : (choice < mix[READ] + mix[WRITE]) ? WRITE : NEW;
+                if (action == NEW || this.cookies[user] == null) {
+                    action = NEW;
+                    this.cookies[user] = null;
+                }
+
+                Results current = results;
+                long start = System.nanoTime();
+                boolean success = send(user, (action == READ) ? "read" : "write");
+                current.histograms[action].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                if (!success) {
+                    current.errors.incrementAndGet();
+                }
+            }
+        }
+
+        private boolean send(int user, String action) {
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(this.url, "?action=" + action).openConnection();
+                if (this.cookies[user] != null) {
+                    connection.setRequestProperty("Cookie", this.cookies[user]);
+                }
+                int status = connection.getResponseCode();
+                String cookie = connection.getHeaderField("Set-Cookie");
+                if (cookie != null) {
+                    this.cookies[user] = cookie.split(";")[0];
+                }
+                // response is read fully, so the connection is kept alive.
+                try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (in != null && in.read(this.buffer) != -1) {
+                        // skip.
+                    }
+                }
+                return status == HttpServletResponse.SC_OK;
+            } catch (IOException ex) {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                this.cookies[user] = null;
+                return false;
+            }
+        }
+    }
+
+    /** Load test servlet, reads or updates the session. */
+    private static class LoadTestServlet extends HttpServlet {
+
+        private static final long serialVersionUID = 2958413071453371902L;
+
+        private final int payload;
+
+        LoadTestServlet(int payload) {
+            this.payload = payload;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            HttpSession session = request.getSession();
+            if (session.getAttribute("payload") == null) {
+                char[] chars = new char[this.payload];
+                Arrays.fill(chars, 'x');
+                session.setAttribute("payload", new String(chars));
+            }
+
+            Integer counter = (Integer) session.getAttribute("counter");
+            if ("write".equals(request.getParameter("action"))) {
+                counter = (counter == null) ? 1 : counter + 1;
+                session.setAttribute("counter", counter);
+            }
+            response.setContentType("text/plain");
+            response.getWriter().print(counter);
+        }
+    }
+}
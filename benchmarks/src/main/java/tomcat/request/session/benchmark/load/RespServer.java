@@ -0,0 +1,472 @@
+package tomcat.request.session.benchmark.load;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process redis stand-in, speaking the redis protocol over a local socket.
+ *
+ * Supports the string commands used by the session manager in the default storage: GET, SET (with NX, XX, EX and
+ * PX), SETNX, SETEX, EXPIRE, PEXPIRE, TTL, DEL, EXISTS, along with PING, AUTH, SELECT, FLUSHALL and QUIT. Any other
+ * command is answered with an error. Every command is delayed by the injected latency, and fails at the injected
+ * failure rate, either with an error reply or by dropping the connection.
+ */
+public class RespServer {
+
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PONG = "+PONG\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_BULK = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+
+    /** Injected failure mode. */
+    public enum FailureMode {
+        /** Command is answered with an error reply. */
+        ERROR,
+        /** Connection is dropped without a reply. */
+        DISCONNECT
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> commandCounts = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    private volatile long latency;
+    private volatile long latencyJitter;
+    private volatile double failureRate;
+    private volatile FailureMode failureMode = FailureMode.ERROR;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    /** To start the server on the given port, 0 for any free port. */
+    public void start(int port) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.executor = Executors.newCachedThreadPool(new ConnectionThreadFactory());
+        this.executor.execute(new Runnable() {
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /** To stop the server, closing the client connections. */
+    public void stop() throws IOException {
+        this.serverSocket.close();
+        for (Socket connection : this.connections) {
+            connection.close();
+        }
+        this.executor.shutdownNow();
+    }
+
+    /** To get the server port. */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /**
+     * To inject latency to every command.
+     *
+     * @param latency - delay (in milliseconds) of every command.
+     * @param jitter  - random additional delay (in milliseconds), up to this value.
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = Math.max(latency, 0);
+        this.latencyJitter = Math.max(jitter, 0);
+    }
+
+    /**
+     * To inject failures.
+     *
+     * @param failureRate - fraction of the commands to fail, 0.0 to 1.0.
+     * @param failureMode - failure mode.
+     */
+    public void setFailures(double failureRate, FailureMode failureMode) {
+        this.failureRate = failureRate;
+        this.failureMode = failureMode;
+    }
+
+    /** To get the number of keys stored. */
+    public int getKeyCount() {
+        return this.entries.size();
+    }
+
+    /** To get the number of commands executed, by command name. */
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> count : this.commandCounts.entrySet()) {
+            counts.put(count.getKey(), count.getValue().get());
+        }
+        return counts;
+    }
+
+    /** To reset the command counts, ex: after the warm-up. */
+    public void resetCommandCounts() {
+        this.commandCounts.clear();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException ex) {
+                return;
+            }
+            this.executor.execute(new Runnable() {
+                /** {@inheritDoc} */
+                @Override
+                public void run() {
+                    serve(socket);
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket) {
+        this.connections.add(socket);
+        try (Socket connection = socket;
+             InputStream in = new BufferedInputStream(connection.getInputStream());
+             OutputStream out = new BufferedOutputStream(connection.getOutputStream())) {
+            while (true) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                if (!execute(command, out)) {
+                    return;
+                }
+                // pipelined commands are answered together.
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            // connection closed.
+        } finally {
+            this.connections.remove(socket);
+        }
+    }
+
+    /** To execute the command. Returns false, if the connection is to be closed. */
+    private boolean execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase();
+        getCommandCount(name).incrementAndGet();
+        delay();
+
+        if (this.failureRate > 0 && ThreadLocalRandom.current().nextDouble() < this.failureRate) {
+            if (this.failureMode == FailureMode.DISCONNECT) {
+                return false;
+            }
+            writeError(out, "ERR injected failure");
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        switch (name) {
+            case "PING":
+                out.write(PONG);
+                break;
+            case "AUTH":
+            case "SELECT":
+                out.write(OK);
+                break;
+            case "QUIT":
+                out.write(OK);
+                out.flush();
+                return false;
+            case "FLUSHALL":
+            case "FLUSHDB":
+                this.entries.clear();
+                out.write(OK);
+                break;
+            case "GET":
+                writeBulk(out, getValue(key(command, 1), now));
+                break;
+            case "SET":
+                set(command, out, now);
+                break;
+            case "SETNX":
+                writeInteger(out, putIfAbsent(key(command, 1), command.get(2), 0, now) ? 1 : 0);
+                break;
+            case "SETEX":
+                this.entries.put(key(command, 1), new Entry(command.get(3), now + number(command, 2) * 1000L));
+                out.write(OK);
+                break;
+            case "EXPIRE":
+                writeInteger(out, expire(key(command, 1), now + number(command, 2) * 1000L, now) ? 1 : 0);
+                break;
+            case "PEXPIRE":
+                writeInteger(out, expire(key(command, 1), now + number(command, 2), now) ? 1 : 0);
+                break;
+            case "TTL":
+                writeInteger(out, ttl(key(command, 1), now));
+                break;
+            case "DEL":
+                long deleted = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    deleted += (this.entries.remove(key(command, i)) != null) ? 1 : 0;
+                }
+                writeInteger(out, deleted);
+                break;
+            case "EXISTS":
+                long exists = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    exists += (getValue(key(command, i), now) != null) ? 1 : 0;
+                }
+                writeInteger(out, exists);
+                break;
+            default:
+                writeError(out, "ERR unknown command '" + name + "'");
+                break;
+        }
+        return true;
+    }
+
+    /** SET key value [NX|XX] [EX seconds|PX milliseconds]. */
+    private void set(List<byte[]> command, OutputStream out, long now) throws IOException {
+        boolean nx = false;
+        boolean xx = false;
+        long expiresAt = 0;
+        for (int i = 3; i < command.size(); i++) {
+            String option = new String(command.get(i), StandardCharsets.US_ASCII).toUpperCase();
+            if ("NX".equals(option)) {
+                nx = true;
+            } else if ("XX".equals(option)) {
+                xx = true;
+            } else if ("EX".equals(option)) {
+                expiresAt = now + number(command, ++i) * 1000L;
+            } else if ("PX".equals(option)) {
+                expiresAt = now + number(command, ++i);
+            } else {
+                writeError(out, "ERR syntax error");
+                return;
+            }
+        }
+
+        String key = key(command, 1);
+        byte[] value = command.get(2);
+        boolean stored;
+        if (nx) {
+            stored = putIfAbsent(key, value, expiresAt, now);
+        } else if (xx) {
+            stored = getValue(key, now) != null && this.entries.put(key, new Entry(value, expiresAt)) != null;
+        } else {
+            this.entries.put(key, new Entry(value, expiresAt));
+            stored = true;
+        }
+        out.write(stored ? OK : NULL_BULK);
+    }
+
+    private boolean putIfAbsent(String key, byte[] value, long expiresAt, long now) {
+        Entry entry = new Entry(value, expiresAt);
+        while (true) {
+            Entry current = this.entries.putIfAbsent(key, entry);
+            if (current == null) {
+                return true;
+            }
+            if (!current.isExpired(now) || !this.entries.remove(key, current)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean expire(String key, long expiresAt, long now) {
+        while (true) {
+            Entry current = this.entries.get(key);
+            if (current == null || current.isExpired(now)) {
+                return false;
+            }
+            if (this.entries.replace(key, current, new Entry(current.value, expiresAt))) {
+                return true;
+            }
+        }
+    }
+
+    private long ttl(String key, long now) {
+        Entry entry = this.entries.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            return -2;
+        }
+        return (entry.expiresAt == 0) ? -1 : TimeUnit.MILLISECONDS.toSeconds(entry.expiresAt - now);
+    }
+
+    private byte[] getValue(String key, long now) {
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(now)) {
+            this.entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private void delay() {
+        long delay = this.latency + ((this.latencyJitter > 0) ? ThreadLocalRandom.current().nextLong(this.latencyJitter + 1) : 0);
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private AtomicLong getCommandCount(String name) {
+        AtomicLong count = this.commandCounts.get(name);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+            count = this.commandCounts.putIfAbsent(name, newCount);
+            count = (count == null) ? newCount : count;
+        }
+        return count;
+    }
+
+    private static String key(List<byte[]> command, int index) {
+        return new String(command.get(index), StandardCharsets.UTF_8);
+    }
+
+    private static long number(List<byte[]> command, int index) {
+        return Long.parseLong(new String(command.get(index), StandardCharsets.US_ASCII));
+    }
+
+    /** To read the command, sent as an array of bulk strings. Returns null, if the connection is closed. */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Unexpected command type [" + (char) type + "]");
+        }
+        int count = (int) readLong(in);
+        List<byte[]> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Unexpected command argument type");
+            }
+            int length = (int) readLong(in);
+            if (length < 0 || length > MAX_BULK_LENGTH) {
+                throw new IOException("Invalid command argument length [" + length + "]");
+            }
+            byte[] argument = new byte[length];
+            readFully(in, argument);
+            readFully(in, new byte[CRLF.length]);
+            command.add(argument);
+        }
+        return command.isEmpty() ? readCommand(in) : command;
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        while (true) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '\r') {
+                in.read();
+                return negative ? -value : value;
+            }
+            if (b == '-') {
+                negative = true;
+            } else {
+                value = value * 10 + (b - '0');
+            }
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] data) throws IOException {
+        int offset = 0;
+        while (offset < data.length) {
+            int read = in.read(data, offset, data.length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write(NULL_BULK);
+            return;
+        }
+        out.write(("$" + value.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((":" + value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write(("-" + message).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    /** Stored value, with its expiry time. 0, for no expiry. */
+    private static class Entry {
+        private final byte[] value;
+        private final long expiresAt;
+
+        Entry(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return this.expiresAt != 0 && this.expiresAt <= now;
+        }
+    }
+
+    /** Connection thread factory, which creates daemon threads to not block the load test exit. */
+    private static class ConnectionThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "resp-server-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package tomcat.request.session.metrics.micrometer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer binder of the session manager metrics, read from the session manager MBeans on each scrape.
+ * The session manager metrics must be enabled (session.metrics.enabled=true), and the session manager started
+ * before the binder is bound to the registry.
+ *
+ * ex: new SessionManagerMetrics("/app").bindTo(registry);
+ *   tomcat.redis.session.created, tomcat.redis.session.data.cache.get, tomcat.redis.session.redis.circuit.state
+ */
+public class SessionManagerMetrics implements MeterBinder {
+
+    private static final String METER_PREFIX = "tomcat.redis.session.";
+    private static final String SESSION_METRIC_PREFIX = "session.";
+    private static final String MICROSECONDS = "microseconds";
+
+    private static final String[] PERCENTILE_ATTRIBUTES = {"P50", "P90", "P99", "P999"};
+    private static final String[] PERCENTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final MBeanServer server;
+    private final ObjectName query;
+    private final Iterable<Tag> tags;
+
+    /** @param context - context path of the session manager, ex: /app. null, to bind the session managers of all contexts. */
+    public SessionManagerMetrics(String context) {
+        this(context, Collections.<Tag>emptyList());
+    }
+
+    public SessionManagerMetrics(String context, Iterable<Tag> tags) {
+        this(ManagementFactory.getPlatformMBeanServer(), context, tags);
+    }
+
+    /**
+     * @param server  - MBean server, the session manager MBeans are registered to.
+     * @param context - context path of the session manager, ex: /app. null, to bind the session managers of all contexts.
+     * @param tags    - tags, added to all the meters.
+     */
+    public SessionManagerMetrics(MBeanServer server, String context, Iterable<Tag> tags) {
+        this.server = server;
+        this.tags = tags;
+        try {
+            this.query = new ObjectName("*:type=RedisSessionMetrics" + ((context != null) ? ",context=" + context : "") + ",*");
+        } catch (MalformedObjectNameException ex) {
+            throw new IllegalArgumentException("Invalid context path: " + context, ex);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ObjectName objectName : this.server.queryNames(this.query, null)) {
+            Set<String> attributes = getAttributeNames(objectName);
+            String name = getMeterName(objectName.getKeyProperty("name"));
+            Tags meterTags = Tags.of(this.tags)
+                    .and("host", String.valueOf(objectName.getKeyProperty("host")))
+                    .and("context", String.valueOf(objectName.getKeyProperty("context")));
+
+            if (attributes.contains("P50")) {
+                bindMetric(registry, objectName, name, meterTags);
+            } else if (attributes.contains("Value")) {
+                Gauge.builder(name, this.server, server -> getValue(server, objectName, "Value"))
+                        .tags(meterTags)
+                        .register(registry);
+            } else if (attributes.contains("Count")) {
+                FunctionCounter.builder(name, this.server, server -> getValue(server, objectName, "Count"))
+                        .tags(meterTags)
+                        .register(registry);
+            }
+        }
+    }
+
+    /** To bind the histogram metric, as a timer for the latencies, else as the count and the sum of the values. */
+    private void bindMetric(MeterRegistry registry, ObjectName objectName, String name, Tags tags) {
+        FunctionCounter.builder(name + ".errors", this.server, server -> getValue(server, objectName, "ErrorCount"))
+                .tags(tags)
+                .register(registry);
+
+        Object unit = getAttribute(objectName, "Unit");
+        if (MICROSECONDS.equals(unit)) {
+            FunctionTimer.builder(name, this.server,
+                    server -> (long) getValue(server, objectName, "Count"),
+                    server -> getValue(server, objectName, "Sum"),
+                    TimeUnit.MICROSECONDS)
+                    .tags(tags)
+                    .register(registry);
+            TimeGauge.builder(name + ".max", this.server, TimeUnit.MICROSECONDS, server -> getValue(server, objectName, "Max"))
+                    .tags(tags)
+                    .register(registry);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                String attribute = PERCENTILE_ATTRIBUTES[i];
+                TimeGauge.builder(name + ".percentile", this.server, TimeUnit.MICROSECONDS, server -> getValue(server, objectName, attribute))
+                        .tags(tags.and("phi", PERCENTILES[i]))
+                        .register(registry);
+            }
+            return;
+        }
+
+        String baseUnit = (unit != null) ? unit.toString() : null;
+        FunctionCounter.builder(name + ".count", this.server, server -> getValue(server, objectName, "Count"))
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder(name + ".sum", this.server, server -> getValue(server, objectName, "Sum"))
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(registry);
+        Gauge.builder(name + ".max", this.server, server -> getValue(server, objectName, "Max"))
+                .tags(tags)
+                .baseUnit(baseUnit)
+                .register(registry);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            String attribute = PERCENTILE_ATTRIBUTES[i];
+            Gauge.builder(name + ".percentile", this.server, server -> getValue(server, objectName, attribute))
+                    .tags(tags.and("phi", PERCENTILES[i]))
+                    .baseUnit(baseUnit)
+                    .register(registry);
+        }
+    }
+
+    /** To get the MBean attribute names. */
+    private Set<String> getAttributeNames(ObjectName objectName) {
+        Set<String> names = new HashSet<>();
+        try {
+            for (MBeanAttributeInfo attribute : this.server.getMBeanInfo(objectName).getAttributes()) {
+                names.add(attribute.getName());
+            }
+        } catch (JMException ex) {
+            // MBean unregistered, nothing to bind.
+        }
+        return names;
+    }
+
+    private Object getAttribute(ObjectName objectName, String attribute) {
+        try {
+            return this.server.getAttribute(objectName, attribute);
+        } catch (JMException ex) {
+            return null;
+        }
+    }
+
+    /** To get the numeric MBean attribute value, NaN if the MBean is unregistered. ex: the session manager stopped. */
+    private static double getValue(MBeanServer server, ObjectName objectName, String attribute) {
+        try {
+            Object value = server.getAttribute(objectName, attribute);
+            return (value instanceof Number) ? ((Number) value).doubleValue() : Double.NaN;
+        } catch (JMException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * To get the meter name of the session manager metric, as dot separated lower case words.
+     * ex: dataCache.get - tomcat.redis.session.data.cache.get, session.bytesWritten - tomcat.redis.session.bytes.written
+     */
+    private static String getMeterName(String name) {
+        if (name.startsWith(SESSION_METRIC_PREFIX)) {
+            name = name.substring(SESSION_METRIC_PREFIX.length());
+        }
+        return METER_PREFIX + name.replaceAll("([a-z0-9])([A-Z])", "$1.$2").toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,31 @@
+package tomcat.request.session.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Session attribute serializer, used by the binary session codec to write the values of the given type.
+ * Implementations must have a public no-arg constructor.
+ */
+public interface AttributeSerializer<T> {
+
+    /** To get the attribute value type, handled by this serializer. */
+    Class<T> getType();
+
+    /**
+     * To serialize attribute value.
+     *
+     * @param value - attribute value.
+     * @param out   - data output.
+     */
+    void serialize(T value, DataOutput out) throws IOException;
+
+    /**
+     * To de-serialize attribute value.
+     *
+     * @param in - data input.
+     * @return - Returns the attribute value.
+     */
+    T deserialize(DataInput in) throws IOException;
+}
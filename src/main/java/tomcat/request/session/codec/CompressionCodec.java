@@ -0,0 +1,34 @@
+package tomcat.request.session.codec;
+
+import java.io.IOException;
+
+public interface CompressionCodec {
+
+    /**
+     * To get the codec id, written to the compressed data header. Must be unique across the compression codecs.
+     *
+     * @return - Returns the codec id.
+     */
+    byte getId();
+
+    /**
+     * To compress data.
+     *
+     * @param data   - data to be compressed.
+     * @param offset - data start offset.
+     * @param length - data length.
+     * @return - Returns the compressed data.
+     */
+    byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * To decompress data.
+     *
+     * @param data           - compressed data.
+     * @param offset         - compressed data start offset.
+     * @param length         - compressed data length.
+     * @param originalLength - length of the data before compression.
+     * @return - Returns the decompressed data.
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+}
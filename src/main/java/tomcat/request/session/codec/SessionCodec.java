@@ -0,0 +1,96 @@
+package tomcat.request.session.codec;
+
+import tomcat.request.session.model.Config;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.model.SingleSignOnEntry;
+
+import java.io.IOException;
+
+public interface SessionCodec {
+
+    /**
+     * To initialize the codec.
+     *
+     * @param config - application config.
+     * @param loader - web application class loader.
+     */
+    void initialize(Config config, ClassLoader loader);
+
+    /**
+     * To check the data is encoded by this codec.
+     *
+     * @param data - encoded data.
+     * @return - Returns true, if the data can be decoded by this codec.
+     */
+    boolean canDecode(byte[] data);
+
+    /**
+     * To encode session object. The attributes hash code is computed from the encoded attributes and set to the
+     * meta-data.
+     *
+     * @param session  - session object.
+     * @param metadata - session meta-data.
+     * @return - Returns the encoded session data.
+     */
+    byte[] encodeSessionData(Session session, SessionMetadata metadata) throws IOException;
+
+    /**
+     * To decode session object.
+     *
+     * @param data     - encoded session data.
+     * @param session  - session object to be populated.
+     * @param metadata - session meta-data to be populated.
+     */
+    void decodeSessionData(byte[] data, Session session, SessionMetadata metadata) throws IOException, ClassNotFoundException;
+
+    /**
+     * To encode session meta-data and session state, excluding the attributes.
+     *
+     * @param session  - session object.
+     * @param metadata - session meta-data.
+     * @return - Returns the encoded session meta-data.
+     */
+    byte[] encodeSessionMetadata(Session session, SessionMetadata metadata) throws IOException;
+
+    /**
+     * To decode session meta-data and session state, excluding the attributes.
+     *
+     * @param data     - encoded session meta-data.
+     * @param session  - session object to be populated.
+     * @param metadata - session meta-data to be populated.
+     */
+    void decodeSessionMetadata(byte[] data, Session session, SessionMetadata metadata) throws IOException, ClassNotFoundException;
+
+    /**
+     * To encode session attribute value.
+     *
+     * @param value - session attribute value.
+     * @return - Returns the encoded attribute value.
+     */
+    byte[] encodeSessionAttribute(Object value) throws IOException;
+
+    /**
+     * To decode session attribute value.
+     *
+     * @param data - encoded attribute value.
+     * @return - Returns the session attribute value.
+     */
+    Object decodeSessionAttribute(byte[] data) throws IOException, ClassNotFoundException;
+
+    /**
+     * To encode single-sign-on entry.
+     *
+     * @param entry - single-sign-on entry.
+     * @return - Returns the encoded single-sign-on entry.
+     */
+    byte[] encodeSingleSignOnEntry(SingleSignOnEntry entry) throws IOException;
+
+    /**
+     * To decode single-sign-on entry.
+     *
+     * @param data  - encoded single-sign-on entry.
+     * @param entry - single-sign-on entry to be populated.
+     */
+    void decodeSingleSignOnEntry(byte[] data, SingleSignOnEntry entry) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,102 @@
+package tomcat.request.session.codec;
+
+import tomcat.request.session.codec.impl.BinarySessionCodec;
+import tomcat.request.session.codec.impl.DeflateCompressionCodec;
+import tomcat.request.session.codec.impl.JavaSessionCodec;
+import tomcat.request.session.model.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SessionCodecFactory {
+
+    private static final String JAVA_CODEC = "JAVA";
+    private static final String BINARY_CODEC = "BINARY";
+    private static final String NO_COMPRESSION = "NONE";
+    private static final String DEFLATE_COMPRESSION = "DEFLATE";
+
+    private final Config config;
+    private final ClassLoader loader;
+
+    public SessionCodecFactory(Config config, ClassLoader loader) {
+        this.config = config;
+        this.loader = loader;
+    }
+
+    /** To get session codec, used to encode the session data. */
+    public SessionCodec getSessionCodec() {
+        return getSessionCodec(this.config.getSessionCodec());
+    }
+
+    /**
+     * To get session codecs, used to decode the session data. The configured codec comes first, followed by the
+     * built-in codecs, so the data encoded before switching the codec is still readable.
+     */
+    public List<SessionCodec> getSessionCodecs(SessionCodec codec) {
+        List<SessionCodec> codecs = new ArrayList<>();
+        codecs.add(codec);
+        if (!(codec instanceof JavaSessionCodec)) {
+            codecs.add(getSessionCodec(JAVA_CODEC));
+        }
+        if (!(codec instanceof BinarySessionCodec)) {
+            codecs.add(getSessionCodec(BINARY_CODEC));
+        }
+        return codecs;
+    }
+
+    /** To get session codec by name or class name. */
+    private SessionCodec getSessionCodec(String name) {
+        SessionCodec codec;
+        if (JAVA_CODEC.equalsIgnoreCase(name)) {
+            codec = new JavaSessionCodec();
+        } else if (BINARY_CODEC.equalsIgnoreCase(name)) {
+            codec = new BinarySessionCodec();
+        } else {
+            try {
+                ClassLoader classLoader = (this.loader != null) ? this.loader : getClass().getClassLoader();
+                codec = (SessionCodec) Class.forName(name, true, classLoader).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new IllegalArgumentException("Invalid session codec [" + name + "]", ex);
+            }
+        }
+        codec.initialize(this.config, this.loader);
+        return codec;
+    }
+
+    /** To get compression codec, used to compress the encoded data. Returns null, if the compression is disabled. */
+    public CompressionCodec getCompressionCodec() {
+        String name = this.config.getSessionCompressionCodec();
+        if (name == null || name.isEmpty() || NO_COMPRESSION.equalsIgnoreCase(name)) {
+            return null;
+        }
+        return getCompressionCodec(name);
+    }
+
+    /**
+     * To get compression codecs, used to decompress the data. The configured codec comes first, followed by the
+     * built-in codecs, so the data compressed before switching the codec is still readable.
+     */
+    public List<CompressionCodec> getCompressionCodecs(CompressionCodec codec) {
+        List<CompressionCodec> codecs = new ArrayList<>();
+        if (codec != null) {
+            codecs.add(codec);
+        }
+        if (!(codec instanceof DeflateCompressionCodec)) {
+            codecs.add(getCompressionCodec(DEFLATE_COMPRESSION));
+        }
+        return codecs;
+    }
+
+    /** To get compression codec by name or class name. */
+    private CompressionCodec getCompressionCodec(String name) {
+        if (DEFLATE_COMPRESSION.equalsIgnoreCase(name)) {
+            return new DeflateCompressionCodec();
+        }
+        try {
+            ClassLoader classLoader = (this.loader != null) ? this.loader : getClass().getClassLoader();
+            return (CompressionCodec) Class.forName(name, true, classLoader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            throw new IllegalArgumentException("Invalid compression codec [" + name + "]", ex);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package tomcat.request.session.codec.impl;
+
+import org.apache.catalina.util.CustomObjectInputStream;
+import tomcat.request.session.codec.SessionCodec;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.util.HashUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+
+public abstract class AbstractSessionCodec implements SessionCodec {
+
+    protected static final int HASH_LENGTH = 16;
+
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+    private ClassLoader loader;
+    private HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
+
+    private final ThreadLocal<SerializationBuffer> buffer = new ThreadLocal<SerializationBuffer>() {
+        @Override
+        protected SerializationBuffer initialValue() {
+            return new SerializationBuffer();
+        }
+    };
+
+    /** {@inheritDoc} */
+    @Override
+    public void initialize(Config config, ClassLoader loader) {
+        this.loader = loader;
+        this.hashAlgorithm = HashAlgorithm.fromName(config.getSessionAttributesHashAlgorithm());
+    }
+
+    /** To get hash code of the encoded data. */
+    protected byte[] getHashCode(byte[] data, int offset, int length) {
+        return HashUtil.hash(this.hashAlgorithm, data, offset, length);
+    }
+
+    /** To get object input stream, which resolves the classes using the web application class loader. */
+    protected ObjectInputStream getObjectInputStream(InputStream in) throws IOException {
+        return new CustomObjectInputStream(in, this.loader);
+    }
+
+    /** To get web application class loader. */
+    protected ClassLoader getClassLoader() {
+        return this.loader;
+    }
+
+    /**
+     * To get the current thread's encoding buffer, emptied and ready for reuse. The buffer must not be used by
+     * nested encoding calls.
+     */
+    protected SerializationBuffer getBuffer() {
+        SerializationBuffer bos = this.buffer.get();
+        bos.reset();
+        return bos;
+    }
+
+    /**
+     * Reusable encoding buffer, which exposes its backing array. A backing array grown past the retained size, to
+     * encode a large session, is dropped once the encoded data is copied, so each thread keeps only a small buffer.
+     */
+    protected static class SerializationBuffer extends ByteArrayOutputStream {
+
+        SerializationBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        /** To get the backing array. */
+        public byte[] getBuffer() {
+            return this.buf;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public synchronized byte[] toByteArray() {
+            byte[] data = super.toByteArray();
+            if (this.buf.length > MAX_RETAINED_BUFFER_SIZE) {
+                this.buf = new byte[INITIAL_BUFFER_SIZE];
+                this.count = 0;
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package tomcat.request.session.codec.impl;
+
+import org.apache.catalina.authenticator.SingleSignOnSessionKey;
+import tomcat.request.session.codec.AttributeSerializer;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.model.SingleSignOnEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary session codec. Primitive wrappers, strings, dates, byte arrays and the common collections are
+ * written with type tags, values with a registered {@link AttributeSerializer} are written by the serializer, and
+ * any other value falls back to java serialization.
+ */
+public class BinarySessionCodec extends AbstractSessionCodec {
+
+    private static final byte MAGIC = (byte) 0xBC;
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_SESSION_DATA = 1;
+    private static final byte TYPE_SESSION_METADATA = 2;
+    private static final byte TYPE_SESSION_ATTRIBUTE = 3;
+    private static final byte TYPE_SINGLE_SIGN_ON_ENTRY = 4;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_FLOAT = 6;
+    private static final byte TAG_SHORT = 7;
+    private static final byte TAG_BYTE = 8;
+    private static final byte TAG_CHARACTER = 9;
+    private static final byte TAG_BYTE_ARRAY = 10;
+    private static final byte TAG_DATE = 11;
+    private static final byte TAG_ARRAY_LIST = 12;
+    private static final byte TAG_LINKED_LIST = 13;
+    private static final byte TAG_HASH_SET = 14;
+    private static final byte TAG_LINKED_HASH_SET = 15;
+    private static final byte TAG_HASH_MAP = 16;
+    private static final byte TAG_LINKED_HASH_MAP = 17;
+    private static final byte TAG_CUSTOM = 18;
+    private static final byte TAG_JAVA = 19;
+
+    private final Map<Class<?>, AttributeSerializer<?>> serializers = new HashMap<>();
+    private final Map<String, AttributeSerializer<?>> serializersByName = new HashMap<>();
+
+    /** {@inheritDoc} */
+    @Override
+    public void initialize(Config config, ClassLoader loader) {
+        super.initialize(config, loader);
+
+        String serializerNames = config.getSessionCodecAttributeSerializers();
+        if (serializerNames == null || serializerNames.isEmpty()) {
+            return;
+        }
+
+        ClassLoader classLoader = (loader != null) ? loader : getClass().getClassLoader();
+        for (String serializerName : serializerNames.replaceAll("\\s", "").split(",")) {
+            if (serializerName.isEmpty()) {
+                continue;
+            }
+            try {
+                registerSerializer((AttributeSerializer<?>) Class.forName(serializerName, true, classLoader).getDeclaredConstructor().newInstance());
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new IllegalArgumentException("Invalid attribute serializer [" + serializerName + "]", ex);
+            }
+        }
+    }
+
+    /** To register attribute serializer, for the values of its type. */
+    public void registerSerializer(AttributeSerializer<?> serializer) {
+        this.serializers.put(serializer.getType(), serializer);
+        this.serializersByName.put(serializer.getType().getName(), serializer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean canDecode(byte[] data) {
+        return data.length >= HEADER_LENGTH && data[0] == MAGIC && data[1] == VERSION;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The attributes hash code is computed from the encoded attributes and written in place of the meta-data hash
+     * placeholder, which follows the header.
+     */
+    @Override
+    public byte[] encodeSessionData(Session session, SessionMetadata metadata) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        DataOutputStream out = new DataOutputStream(bos);
+        writeHeader(out, TYPE_SESSION_DATA);
+        out.write(new byte[HASH_LENGTH]);
+        session.writeStateData(out);
+
+        int attributesOffset = bos.size();
+        writeAttributes(out, session);
+        int attributesLength = bos.size() - attributesOffset;
+        out.writeLong(metadata.getLastRefreshedTime());
+
+        byte[] hash = getHashCode(bos.getBuffer(), attributesOffset, attributesLength);
+        System.arraycopy(hash, 0, bos.getBuffer(), HEADER_LENGTH, HASH_LENGTH);
+        metadata.setAttributesHash(hash);
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSessionData(byte[] data, Session session, SessionMetadata metadata)
+            throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        readHeader(in, TYPE_SESSION_DATA);
+        byte[] hash = new byte[HASH_LENGTH];
+        in.readFully(hash);
+        metadata.setAttributesHash(hash);
+        session.readStateData(in);
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            session.loadAttribute(name, readValue(in));
+        }
+        metadata.setLastRefreshedTime(readLastRefreshedTime(in));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSessionMetadata(Session session, SessionMetadata metadata) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        DataOutputStream out = new DataOutputStream(bos);
+        writeHeader(out, TYPE_SESSION_METADATA);
+        writeBytes(out, metadata.getAttributesHash());
+        session.writeStateData(out);
+        out.writeLong(metadata.getLastRefreshedTime());
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSessionMetadata(byte[] data, Session session, SessionMetadata metadata) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        readHeader(in, TYPE_SESSION_METADATA);
+        metadata.setAttributesHash(readBytes(in));
+        session.readStateData(in);
+        metadata.setLastRefreshedTime(readLastRefreshedTime(in));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSessionAttribute(Object value) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        DataOutputStream out = new DataOutputStream(bos);
+        writeHeader(out, TYPE_SESSION_ATTRIBUTE);
+        writeValue(out, value);
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object decodeSessionAttribute(byte[] data) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        readHeader(in, TYPE_SESSION_ATTRIBUTE);
+        return readValue(in);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSingleSignOnEntry(SingleSignOnEntry entry) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        DataOutputStream out = new DataOutputStream(bos);
+        writeHeader(out, TYPE_SINGLE_SIGN_ON_ENTRY);
+        writeValue(out, entry.getAuthType());
+        writeValue(out, entry.getUsername());
+        writeValue(out, entry.getPassword());
+        writeValue(out, entry.getPrincipal());
+
+        List<SingleSignOnSessionKey> keys = new ArrayList<>(entry.findSessions());
+        out.writeInt(keys.size());
+        for (SingleSignOnSessionKey key : keys) {
+            writeValue(out, key);
+        }
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSingleSignOnEntry(byte[] data, SingleSignOnEntry entry) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        readHeader(in, TYPE_SINGLE_SIGN_ON_ENTRY);
+        String authType = (String) readValue(in);
+        String username = (String) readValue(in);
+        String password = (String) readValue(in);
+        Principal principal = (Principal) readValue(in);
+        entry.updateCredentials(principal, authType, username, password);
+
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            entry.addSessionKey((SingleSignOnSessionKey) readValue(in));
+        }
+    }
+
+    /** To write session attributes, in name order. Values which can't be encoded are skipped. */
+    private void writeAttributes(DataOutput out, Session session) throws IOException {
+        List<String> encodableNames = new ArrayList<>();
+        List<Object> encodableValues = new ArrayList<>();
+        for (Map.Entry<String, Object> attribute : session.getAttributeValues().entrySet()) {
+            if (isEncodable(attribute.getValue())) {
+                encodableNames.add(attribute.getKey());
+                encodableValues.add(attribute.getValue());
+            }
+        }
+
+        out.writeInt(encodableNames.size());
+        for (int i = 0; i < encodableNames.size(); i++) {
+            writeString(out, encodableNames.get(i));
+            writeValue(out, encodableValues.get(i));
+        }
+    }
+
+    /** To check the attribute value can be encoded. */
+    private boolean isEncodable(Object value) {
+        return value == null || value instanceof Serializable || this.serializers.containsKey(value.getClass());
+    }
+
+    /** To write tagged value. */
+    @SuppressWarnings("unchecked")
+    private void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (type == Integer.class) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (type == Long.class) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (type == Boolean.class) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (type == Double.class) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (type == Float.class) {
+            out.writeByte(TAG_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (type == Short.class) {
+            out.writeByte(TAG_SHORT);
+            out.writeShort((Short) value);
+        } else if (type == Byte.class) {
+            out.writeByte(TAG_BYTE);
+            out.writeByte((Byte) value);
+        } else if (type == Character.class) {
+            out.writeByte(TAG_CHARACTER);
+            out.writeChar((Character) value);
+        } else if (type == byte[].class) {
+            out.writeByte(TAG_BYTE_ARRAY);
+            writeBytes(out, (byte[]) value);
+        } else if (type == Date.class) {
+            out.writeByte(TAG_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (type == ArrayList.class) {
+            out.writeByte(TAG_ARRAY_LIST);
+            writeCollection(out, (Collection<?>) value);
+        } else if (type == LinkedList.class) {
+            out.writeByte(TAG_LINKED_LIST);
+            writeCollection(out, (Collection<?>) value);
+        } else if (type == HashSet.class) {
+            out.writeByte(TAG_HASH_SET);
+            writeCollection(out, (Collection<?>) value);
+        } else if (type == LinkedHashSet.class) {
+            out.writeByte(TAG_LINKED_HASH_SET);
+            writeCollection(out, (Collection<?>) value);
+        } else if (type == HashMap.class) {
+            out.writeByte(TAG_HASH_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (type == LinkedHashMap.class) {
+            out.writeByte(TAG_LINKED_HASH_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (this.serializers.containsKey(type)) {
+            out.writeByte(TAG_CUSTOM);
+            writeString(out, type.getName());
+            ((AttributeSerializer<Object>) this.serializers.get(type)).serialize(value, out);
+        } else if (value instanceof Serializable) {
+            out.writeByte(TAG_JAVA);
+            writeBytes(out, serialize(value));
+        } else {
+            throw new NotSerializableException(type.getName());
+        }
+    }
+
+    /** To read tagged value. */
+    private Object readValue(DataInput in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_FLOAT:
+                return in.readFloat();
+            case TAG_SHORT:
+                return in.readShort();
+            case TAG_BYTE:
+                return in.readByte();
+            case TAG_CHARACTER:
+                return in.readChar();
+            case TAG_BYTE_ARRAY:
+                return readBytes(in);
+            case TAG_DATE:
+                return new Date(in.readLong());
+            case TAG_ARRAY_LIST:
+                return readCollection(in, new ArrayList<>());
+            case TAG_LINKED_LIST:
+                return readCollection(in, new LinkedList<>());
+            case TAG_HASH_SET:
+                return readCollection(in, new HashSet<>());
+            case TAG_LINKED_HASH_SET:
+                return readCollection(in, new LinkedHashSet<>());
+            case TAG_HASH_MAP:
+                return readMap(in, new HashMap<>());
+            case TAG_LINKED_HASH_MAP:
+                return readMap(in, new LinkedHashMap<>());
+            case TAG_CUSTOM:
+                String typeName = readString(in);
+                AttributeSerializer<?> serializer = this.serializersByName.get(typeName);
+                if (serializer == null) {
+                    throw new IOException("No attribute serializer registered for [" + typeName + "]");
+                }
+                return serializer.deserialize(in);
+            case TAG_JAVA:
+                return deserialize(readBytes(in));
+            default:
+                throw new IOException("Invalid value tag [" + tag + "]");
+        }
+    }
+
+    private void writeCollection(DataOutput out, Collection<?> values) throws IOException {
+        // copied, so that the written size and elements are consistent if the collection is modified meanwhile.
+        Object[] elements = values.toArray();
+        out.writeInt(elements.length);
+        for (Object element : elements) {
+            writeValue(out, element);
+        }
+    }
+
+    private Collection<Object> readCollection(DataInput in, Collection<Object> values) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            values.add(readValue(in));
+        }
+        return values;
+    }
+
+    private void writeMap(DataOutput out, Map<?, ?> values) throws IOException {
+        List<Map.Entry<?, ?>> entries = new ArrayList<Map.Entry<?, ?>>(values.entrySet());
+        out.writeInt(entries.size());
+        for (Map.Entry<?, ?> entry : entries) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private Map<Object, Object> readMap(DataInput in, Map<Object, Object> values) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            values.put(readValue(in), readValue(in));
+        }
+        return values;
+    }
+
+    private void writeString(DataOutput out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private void writeBytes(DataOutput out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    private byte[] readBytes(DataInput in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+
+    private void writeHeader(DataOutput out, byte type) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+    }
+
+    private void readHeader(DataInput in, byte type) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        in.readFully(header);
+        if (header[0] != MAGIC || header[1] != VERSION || header[2] != type) {
+            throw new IOException("Invalid binary session codec header " + Arrays.toString(header));
+        }
+    }
+
+    /** To read the session refresh time, which is not written by the earlier releases. */
+    private long readLastRefreshedTime(DataInputStream in) throws IOException {
+        return (in.available() >= 8) ? in.readLong() : 0L;
+    }
+
+    /** To serialize the value with java serialization, for the types not known to this codec. */
+    private byte[] serialize(Object value) throws IOException {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+            oos.flush();
+            return bos.toByteArray();
+        }
+    }
+
+    /** To de-serialize the value with java serialization. */
+    private Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = getObjectInputStream(new ByteArrayInputStream(data))) {
+            return ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package tomcat.request.session.codec.impl;
+
+import tomcat.request.session.codec.CompressionCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression codec based on deflate. Deflater and inflater are reused per thread, as they hold native memory
+ * which is expensive to allocate.
+ */
+public class DeflateCompressionCodec implements CompressionCodec {
+
+    private static final byte ID = 1;
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    private final ThreadLocal<Deflater> deflater = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED, true);
+        }
+    };
+
+    private final ThreadLocal<Inflater> inflater = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    /** {@inheritDoc} */
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) {
+        Deflater compressor = this.deflater.get();
+        compressor.reset();
+        compressor.setInput(data, offset, length);
+        compressor.finish();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(length / 2, 64));
+        byte[] chunk = new byte[CHUNK_SIZE];
+        while (!compressor.finished()) {
+            int count = compressor.deflate(chunk);
+            bos.write(chunk, 0, count);
+        }
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        Inflater decompressor = this.inflater.get();
+        decompressor.reset();
+        // nowrap inflater may need an extra input byte to complete the stream.
+        byte[] input = new byte[length + 1];
+        System.arraycopy(data, offset, input, 0, length);
+        decompressor.setInput(input);
+
+        byte[] decompressed = new byte[originalLength];
+        try {
+            int count = 0;
+            while (count < originalLength && !decompressor.finished()) {
+                int inflated = decompressor.inflate(decompressed, count, originalLength - count);
+                if (inflated == 0 && (decompressor.needsInput() || decompressor.needsDictionary())) {
+                    break;
+                }
+                count += inflated;
+            }
+            if (count != originalLength) {
+                throw new IOException("Invalid compressed data, expected " + originalLength + " bytes but got " + count);
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid compressed data", ex);
+        }
+        return decompressed;
+    }
+}
@@ -0,0 +1,147 @@
+package tomcat.request.session.codec.impl;
+
+import tomcat.request.session.model.Session;
+import tomcat.request.session.model.SessionMetadata;
+import tomcat.request.session.model.SingleSignOnEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+
+/**
+ * Session codec based on java serialization.
+ */
+public class JavaSessionCodec extends AbstractSessionCodec {
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean canDecode(byte[] data) {
+        return data.length >= 2
+                && data[0] == (byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8)
+                && data[1] == (byte) ObjectStreamConstants.STREAM_MAGIC;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The session is serialized once; the attributes hash code is computed from the serialized attributes and
+     * written in place of the meta-data hash placeholder.
+     */
+    @Override
+    public byte[] encodeSessionData(Session session, SessionMetadata metadata) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        int hashOffset;
+        int attributesOffset;
+        int attributesLength;
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            metadata.setAttributesHash(new byte[HASH_LENGTH]);
+            oos.writeObject(metadata);
+            oos.flush();
+            // meta-data hash is the last data written before the end of its block data.
+            hashOffset = bos.size() - HASH_LENGTH - 1;
+            if (bos.getBuffer()[bos.size() - 1] != ObjectStreamConstants.TC_ENDBLOCKDATA) {
+                throw new IOException("Unexpected session meta-data serialized form");
+            }
+
+            session.writeStateObjectData(oos);
+            // reset, so that the serialized attributes doesn't refer the session state objects.
+            oos.reset();
+            oos.flush();
+            attributesOffset = bos.size();
+            session.writeAttributesObjectData(oos);
+            oos.flush();
+            attributesLength = bos.size() - attributesOffset;
+
+            oos.writeLong(session.getCreationTime());
+            oos.flush();
+        }
+
+        byte[] hash = getHashCode(bos.getBuffer(), attributesOffset, attributesLength);
+        System.arraycopy(hash, 0, bos.getBuffer(), hashOffset, HASH_LENGTH);
+        metadata.setAttributesHash(hash);
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSessionData(byte[] data, Session session, SessionMetadata metadata)
+            throws IOException, ClassNotFoundException {
+        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
+             ObjectInputStream ois = getObjectInputStream(bis)) {
+            SessionMetadata serializedMetadata = (SessionMetadata) ois.readObject();
+            metadata.copyFieldsFrom(serializedMetadata);
+            session.readObjectData(ois);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSessionMetadata(Session session, SessionMetadata metadata) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(metadata);
+            session.writeStateData(oos);
+            oos.flush();
+        }
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSessionMetadata(byte[] data, Session session, SessionMetadata metadata)
+            throws IOException, ClassNotFoundException {
+        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
+             ObjectInputStream ois = getObjectInputStream(bis)) {
+            SessionMetadata serializedMetadata = (SessionMetadata) ois.readObject();
+            metadata.copyFieldsFrom(serializedMetadata);
+            session.readStateData(ois);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSessionAttribute(Object value) throws IOException {
+        SerializationBuffer bos = getBuffer();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(value);
+            oos.flush();
+        }
+        return bos.toByteArray();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object decodeSessionAttribute(byte[] data) throws IOException, ClassNotFoundException {
+        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
+             ObjectInputStream ois = getObjectInputStream(bis)) {
+            return ois.readObject();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] encodeSingleSignOnEntry(SingleSignOnEntry entry) throws IOException {
+        byte[] serialized;
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bos))) {
+            entry.writeObjectData(oos);
+            oos.flush();
+            serialized = bos.toByteArray();
+        }
+        return serialized;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void decodeSingleSignOnEntry(byte[] data, SingleSignOnEntry entry)
+            throws IOException, ClassNotFoundException {
+        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
+             ObjectInputStream ois = getObjectInputStream(bis)) {
+            entry.readObjectData(ois);
+        }
+    }
+}
@@ -4,6 +4,9 @@ package tomcat.request.session.constant;
 public interface SessionConstants {
     byte[] NULL_SESSION = "null".getBytes();
 
+    String SESSION_METADATA_FIELD = "metadata";
+    String SESSION_ATTRIBUTE_FIELD_PREFIX = "attr:";
+
     enum SessionPolicy {
         DEFAULT, SAVE_ON_CHANGE, ALWAYS_SAVE_AFTER_REQUEST;
 
@@ -16,4 +19,17 @@ public interface SessionConstants {
             throw new IllegalArgumentException("Invalid session policy [" + name + "]");
         }
     }
+
+    enum HashAlgorithm {
+        MD5, MURMUR3;
+
+        public static HashAlgorithm fromName(String name) {
+            for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+                if (algorithm.name().equalsIgnoreCase(name)) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("Invalid hash algorithm [" + name + "]");
+        }
+    }
 }
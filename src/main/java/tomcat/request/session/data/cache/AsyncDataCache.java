@@ -0,0 +1,80 @@
+package tomcat.request.session.data.cache;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking variants of the data-cache operations. The operations return without waiting for the data-cache
+ * response; the result is available from the returned future.
+ */
+public interface AsyncDataCache {
+
+    /**
+     * Set value in data-cache.
+     *
+     * @param key   - key with which the specified value is to be associated.
+     * @param value - value to be associated with the specified key.
+     * @return - Returns the future of the value.
+     */
+    Future<byte[]> setAsync(String key, byte[] value);
+
+    /**
+     * Set value if key not exists in data-cache.
+     *
+     * @param key   - key with which the specified value is to be associated.
+     * @param value - value to be associated with the specified key.
+     * @return - Returns the future of '0' if key already exists else '1'.
+     */
+    Future<Long> setnxAsync(String key, byte[] value);
+
+    /**
+     * Set value with expiry in data-cache, as a single atomic operation.
+     *
+     * @param key     - key with which the specified value is to be associated.
+     * @param value   - value to be associated with the specified key.
+     * @param seconds - expiration time in seconds.
+     * @return - Returns the future of the value.
+     */
+    Future<byte[]> setexAsync(String key, byte[] value, int seconds);
+
+    /**
+     * Set expiry in data-cache.
+     *
+     * @param key     - key with which the specified value is to be associated.
+     * @param seconds - expiration time in seconds.
+     * @return - Returns the future of the expiration time in seconds.
+     */
+    Future<Long> expireAsync(String key, int seconds);
+
+    /**
+     * Get value from data-cache.
+     *
+     * @param key - key with which the specified value is to be associated.
+     * @return - Returns the future of the value.
+     */
+    Future<byte[]> getAsync(String key);
+
+    /**
+     * Delete value from data-cache.
+     *
+     * @param key - key with which the specified value is to be associated.
+     * @return - Returns the future of the number of keys that were removed.
+     */
+    Future<Long> deleteAsync(String key);
+
+    /**
+     * Check the key exists in data-cache.
+     *
+     * @param key - key with which the specified value is to be associated.
+     * @return - Returns the future of true, if the key exists.
+     */
+    Future<Boolean> existsAsync(String key);
+
+    /**
+     * Get hash fields from data-cache.
+     *
+     * @param key - key with which the specified hash is to be associated.
+     * @return - Returns the future of the hash fields, empty if the key not exists or does not hold a hash.
+     */
+    Future<Map<String, byte[]>> hgetAllAsync(String key);
+}
@@ -1,5 +1,8 @@
 package tomcat.request.session.data.cache;
 
+import java.util.Map;
+import java.util.Set;
+
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 public interface DataCache {
 
@@ -21,6 +24,26 @@ public interface DataCache {
      */
     Long setnx(String key, byte[] value);
 
+    /**
+     * Set value with expiry in data-cache, as a single atomic operation.
+     *
+     * @param key     - key with which the specified value is to be associated.
+     * @param value   - value to be associated with the specified key.
+     * @param seconds - expiration time in seconds.
+     * @return - Returns the value.
+     */
+    byte[] setex(String key, byte[] value, int seconds);
+
+    /**
+     * Set value with expiry if key not exists in data-cache, as a single atomic operation.
+     *
+     * @param key     - key with which the specified value is to be associated.
+     * @param value   - value to be associated with the specified key.
+     * @param seconds - expiration time in seconds.
+     * @return - Returns '0' if key already exists else '1'.
+     */
+    Long setnxex(String key, byte[] value, int seconds);
+
     /**
      * Set expiry in data-cache.
      *
@@ -53,4 +76,44 @@ public interface DataCache {
      * @return - Returns true, if the key exists.
      */
     Boolean exists(String key);
+
+    /**
+     * Set hash fields with expiry if key not exists in data-cache, as a single atomic operation.
+     *
+     * @param key     - key with which the specified hash is to be associated.
+     * @param fields  - hash fields to be set.
+     * @param seconds - expiration time in seconds.
+     * @return - Returns '0' if key already exists else '1'.
+     */
+    Long hsetnxex(String key, Map<String, byte[]> fields, int seconds);
+
+    /**
+     * Set and remove hash fields with expiry in data-cache, as a single atomic operation. If the key holds
+     * a value other than a hash, it is replaced.
+     *
+     * @param key           - key with which the specified hash is to be associated.
+     * @param fields        - hash fields to be set.
+     * @param deletedFields - hash fields to be removed.
+     * @param seconds       - expiration time in seconds.
+     * @return - Returns the number of fields set.
+     */
+    Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds);
+
+    /**
+     * Get hash fields from data-cache.
+     *
+     * @param key - key with which the specified hash is to be associated.
+     * @return - Returns the hash fields, empty if the key not exists or does not hold a hash.
+     */
+    Map<String, byte[]> hgetAll(String key);
+
+    /**
+     * Execute the batch write operations in data-cache, pipelined where supported.
+     *
+     * @param batch - batch write operations.
+     */
+    void execute(DataCacheBatch batch);
+
+    /** Close the data-cache, releasing its connections and threads. */
+    void close();
 }
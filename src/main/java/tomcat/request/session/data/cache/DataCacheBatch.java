@@ -0,0 +1,105 @@
+package tomcat.request.session.data.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batch of data-cache write operations, to be sent in a single round trip where supported.
+ */
+public class DataCacheBatch {
+
+    /** Batch operation type. */
+    public enum OperationType {
+        SET,
+        SETEX,
+        HUPDATE,
+        DELETE
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    /** To add set value operation. */
+    public DataCacheBatch set(String key, byte[] value) {
+        this.operations.add(new Operation(OperationType.SET, key, value, null, null, 0));
+        return this;
+    }
+
+    /** To add set value with expiry operation. */
+    public DataCacheBatch setex(String key, byte[] value, int seconds) {
+        this.operations.add(new Operation(OperationType.SETEX, key, value, null, null, seconds));
+        return this;
+    }
+
+    /** To add set and remove hash fields with expiry operation. */
+    public DataCacheBatch hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        this.operations.add(new Operation(OperationType.HUPDATE, key, null, fields, deletedFields, seconds));
+        return this;
+    }
+
+    /** To add delete operation. */
+    public DataCacheBatch delete(String key) {
+        this.operations.add(new Operation(OperationType.DELETE, key, null, null, null, 0));
+        return this;
+    }
+
+    /** To get batch operations. */
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(this.operations);
+    }
+
+    /** To get the number of batch operations. */
+    public int size() {
+        return this.operations.size();
+    }
+
+    /** To check the batch has no operations. */
+    public boolean isEmpty() {
+        return this.operations.isEmpty();
+    }
+
+    /** Batch operation. */
+    public static class Operation {
+        private final OperationType type;
+        private final String key;
+        private final byte[] value;
+        private final Map<String, byte[]> fields;
+        private final Set<String> deletedFields;
+        private final int seconds;
+
+        Operation(OperationType type, String key, byte[] value, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+            this.type = type;
+            this.key = key;
+            this.value = value;
+            this.fields = fields;
+            this.deletedFields = (deletedFields != null) ? deletedFields : Collections.<String>emptySet();
+            this.seconds = seconds;
+        }
+
+        public OperationType getType() {
+            return this.type;
+        }
+
+        public String getKey() {
+            return this.key;
+        }
+
+        public byte[] getValue() {
+            return this.value;
+        }
+
+        public Map<String, byte[]> getFields() {
+            return this.fields;
+        }
+
+        public Set<String> getDeletedFields() {
+            return this.deletedFields;
+        }
+
+        public int getSeconds() {
+            return this.seconds;
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package tomcat.request.session.data.cache;
 
+import tomcat.request.session.data.cache.impl.LocalDataCache;
+import tomcat.request.session.data.cache.impl.MeteredAsyncDataCache;
+import tomcat.request.session.data.cache.impl.MeteredDataCache;
 import tomcat.request.session.data.cache.impl.StandardDataCache;
 import tomcat.request.session.data.cache.impl.redis.RedisCache;
+import tomcat.request.session.metrics.SessionMetrics;
 import tomcat.request.session.model.Config;
 
 /** author: Ranjith Manickam @ 3 Dec' 2018 */
@@ -9,17 +13,36 @@ public class DataCacheFactory {
 
     private final Config config;
     private final int sessionExpiryTime;
+    private final SessionMetrics metrics;
 
     public DataCacheFactory(Config config, int sessionExpiryTime) {
+        this(config, sessionExpiryTime, SessionMetrics.DISABLED);
+    }
+
+    public DataCacheFactory(Config config, int sessionExpiryTime, SessionMetrics metrics) {
         this.config = config;
         this.sessionExpiryTime = sessionExpiryTime;
+        this.metrics = metrics;
     }
 
-    /** To get data cache. */
+    /** To get data cache, recording the latency of each operation if the metrics are enabled. */
     public DataCache getDataCache() {
+        DataCache dataCache = createDataCache();
+        if (!this.metrics.isEnabled()) {
+            return dataCache;
+        }
+        return (dataCache instanceof AsyncDataCache)
+                ? new MeteredAsyncDataCache(dataCache, this.metrics)
+                : new MeteredDataCache(dataCache, this.metrics);
+    }
+
+    private DataCache createDataCache() {
+        if (this.config.getSessionDataCacheLocalEnabled()) {
+            return new LocalDataCache();
+        }
         if (this.config.getLbStickySessionEnabled()) {
-            return new StandardDataCache(this.config, this.sessionExpiryTime);
+            return new StandardDataCache(this.config, this.sessionExpiryTime, this.metrics);
         }
-        return new RedisCache(this.config);
+        return new RedisCache(this.config, this.metrics);
     }
 }
@@ -0,0 +1,10 @@
+package tomcat.request.session.data.cache;
+
+public interface DataCacheInvalidationListener {
+
+    /** To invalidate the key, modified in data-cache. */
+    void invalidate(String key);
+
+    /** To invalidate all the keys, when the invalidations could have been missed. */
+    void invalidateAll();
+}
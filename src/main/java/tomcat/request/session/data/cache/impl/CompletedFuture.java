@@ -0,0 +1,62 @@
+package tomcat.request.session.data.cache.impl;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Future of a value already available, for the data-cache operations completed without a round trip.
+ */
+public class CompletedFuture<T> implements Future<T> {
+
+    private final T value;
+    private final RuntimeException exception;
+
+    private CompletedFuture(T value, RuntimeException exception) {
+        this.value = value;
+        this.exception = exception;
+    }
+
+    /** To get the future completed with the value. */
+    public static <T> CompletedFuture<T> of(T value) {
+        return new CompletedFuture<>(value, null);
+    }
+
+    /** To get the future completed with the failure. */
+    public static <T> CompletedFuture<T> failed(RuntimeException exception) {
+        return new CompletedFuture<>(null, exception);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T get() throws ExecutionException {
+        if (this.exception != null) {
+            throw new ExecutionException(this.exception);
+        }
+        return this.value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+}
@@ -0,0 +1,300 @@
+package tomcat.request.session.data.cache.impl;
+
+import tomcat.request.session.data.cache.AsyncDataCache;
+import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
+import tomcat.request.session.data.cache.DataCacheInvalidationListener;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local in-memory data-cache, for single node development and testing without redis.
+ *
+ * Entries are immutable and replaced atomically, so the reads are lock-free. Expired entries are removed on access
+ * and by a periodic sweep on the writes. The non-blocking operations are completed on the calling thread.
+ *
+ * Stands in for the redis client tracking in tests; the invalidation listener is notified of the modified keys,
+ * as redis notifies the near-cache.
+ */
+public class LocalDataCache implements DataCache, AsyncDataCache {
+
+    private static final int EXPIRY_SWEEP_INTERVAL = 1024;
+    private static final byte[] OK = "OK".getBytes();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger writeCount = new AtomicInteger();
+    private volatile DataCacheInvalidationListener invalidationListener;
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] set(String key, byte[] value) {
+        put(key, new Entry(value, null, 0));
+        return OK;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnx(String key, byte[] value) {
+        return putIfAbsent(key, new Entry(value, null, 0)) ? 1L : 0L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        put(key, new Entry(value, null, getExpiresOn(seconds)));
+        return OK;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        return putIfAbsent(key, new Entry(value, null, getExpiresOn(seconds))) ? 1L : 0L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long expire(String key, int seconds) {
+        while (true) {
+            Entry entry = getEntry(key);
+            if (entry == null) {
+                return 0L;
+            }
+            if (this.entries.replace(key, entry, new Entry(entry.value, entry.fields, getExpiresOn(seconds)))) {
+                invalidate(key);
+                return 1L;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] get(String key) {
+        Entry entry = getEntry(key);
+        return (entry != null) ? entry.value : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long delete(String key) {
+        Entry entry = this.entries.remove(key);
+        if (entry == null) {
+            return 0L;
+        }
+        invalidate(key);
+        return !entry.isExpired(System.currentTimeMillis()) ? 1L : 0L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean exists(String key) {
+        return getEntry(key) != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        return putIfAbsent(key, new Entry(null, new HashMap<>(fields), getExpiresOn(seconds))) ? 1L : 0L;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        while (true) {
+            Entry entry = getEntry(key);
+            Map<String, byte[]> newFields = (entry != null && entry.fields != null)
+                    ? new HashMap<>(entry.fields) : new HashMap<String, byte[]>();
+            newFields.putAll(fields);
+            newFields.keySet().removeAll(deletedFields);
+            Entry newEntry = new Entry(null, newFields, getExpiresOn(seconds));
+            if ((entry == null) ? putIfAbsent(key, newEntry) : replace(key, entry, newEntry)) {
+                return (long) fields.size();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        Entry entry = getEntry(key);
+        return (entry != null && entry.fields != null) ? new HashMap<>(entry.fields) : new HashMap<String, byte[]>();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        for (DataCacheBatch.Operation operation : batch.getOperations()) {
+            switch (operation.getType()) {
+                case SET:
+                    set(operation.getKey(), operation.getValue());
+                    break;
+                case SETEX:
+                    setex(operation.getKey(), operation.getValue(), operation.getSeconds());
+                    break;
+                case HUPDATE:
+                    hupdate(operation.getKey(), operation.getFields(), operation.getDeletedFields(), operation.getSeconds());
+                    break;
+                case DELETE:
+                    delete(operation.getKey());
+                    break;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.entries.clear();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setAsync(String key, byte[] value) {
+        return CompletedFuture.of(set(key, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> setnxAsync(String key, byte[] value) {
+        return CompletedFuture.of(setnx(key, value));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setexAsync(String key, byte[] value, int seconds) {
+        return CompletedFuture.of(setex(key, value, seconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> expireAsync(String key, int seconds) {
+        return CompletedFuture.of(expire(key, seconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> getAsync(String key) {
+        return CompletedFuture.of(get(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> deleteAsync(String key) {
+        return CompletedFuture.of(delete(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Boolean> existsAsync(String key) {
+        return CompletedFuture.of(exists(key));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Map<String, byte[]>> hgetAllAsync(String key) {
+        return CompletedFuture.of(hgetAll(key));
+    }
+
+    /** To set the listener, notified of the modified and expired keys. */
+    public void setInvalidationListener(DataCacheInvalidationListener invalidationListener) {
+        this.invalidationListener = invalidationListener;
+    }
+
+    /** To get the number of entries, including the expired entries not removed yet. */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /** To get the entry, removing it if expired. */
+    private Entry getEntry(String key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            if (this.entries.remove(key, entry)) {
+                invalidate(key);
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private void put(String key, Entry entry) {
+        this.entries.put(key, entry);
+        afterWrite(key);
+    }
+
+    private boolean putIfAbsent(String key, Entry entry) {
+        while (true) {
+            Entry current = this.entries.putIfAbsent(key, entry);
+            if (current == null) {
+                afterWrite(key);
+                return true;
+            }
+            if (!current.isExpired(System.currentTimeMillis())) {
+                return false;
+            }
+            if (this.entries.remove(key, current)) {
+                invalidate(key);
+            }
+        }
+    }
+
+    private boolean replace(String key, Entry entry, Entry newEntry) {
+        if (this.entries.replace(key, entry, newEntry)) {
+            afterWrite(key);
+            return true;
+        }
+        return false;
+    }
+
+    /** To notify the key modification, and to remove the expired entries once in every few writes. */
+    private void afterWrite(String key) {
+        invalidate(key);
+        if (this.writeCount.incrementAndGet() % EXPIRY_SWEEP_INTERVAL != 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getValue().isExpired(now)) {
+                iterator.remove();
+                invalidate(entry.getKey());
+            }
+        }
+    }
+
+    private void invalidate(String key) {
+        DataCacheInvalidationListener listener = this.invalidationListener;
+        if (listener != null) {
+            listener.invalidate(key);
+        }
+    }
+
+    private static long getExpiresOn(int seconds) {
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    /** Cache entry, holding either a value or hash fields. The hash fields are not modified once set. */
+    private static class Entry {
+        private final byte[] value;
+        private final Map<String, byte[]> fields;
+        private final long expiresOn;
+
+        Entry(byte[] value, Map<String, byte[]> fields, long expiresOn) {
+            this.value = value;
+            this.fields = fields;
+            this.expiresOn = expiresOn;
+        }
+
+        /** To check the entry is expired. '0' expiry, for no expiry. */
+        boolean isExpired(long now) {
+            return this.expiresOn > 0 && this.expiresOn <= now;
+        }
+    }
+}
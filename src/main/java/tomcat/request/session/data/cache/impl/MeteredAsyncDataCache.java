@@ -0,0 +1,153 @@
+package tomcat.request.session.data.cache.impl;
+
+import tomcat.request.session.data.cache.AsyncDataCache;
+import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.metrics.Metric;
+import tomcat.request.session.metrics.SessionMetrics;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking data-cache, recording the latency and the failures of each operation of the given data-cache.
+ * The non-blocking operations record the time the caller waited for the result, as the operation overlaps with the
+ * request processing. ex: a prefetched session, loaded before it is first accessed, records no wait time.
+ */
+public class MeteredAsyncDataCache extends MeteredDataCache implements AsyncDataCache {
+
+    private final AsyncDataCache asyncDataCache;
+    private final Metric setAsyncMetric;
+    private final Metric setnxAsyncMetric;
+    private final Metric setexAsyncMetric;
+    private final Metric expireAsyncMetric;
+    private final Metric getAsyncMetric;
+    private final Metric deleteAsyncMetric;
+    private final Metric existsAsyncMetric;
+    private final Metric hgetAllAsyncMetric;
+
+    /**
+     * @param dataCache - data-cache, which supports the non-blocking operations.
+     * @param metrics   - session manager metrics.
+     */
+    public MeteredAsyncDataCache(DataCache dataCache, SessionMetrics metrics) {
+        super(dataCache, metrics);
+        this.asyncDataCache = (AsyncDataCache) dataCache;
+        this.setAsyncMetric = metrics.getMetric(METRIC_PREFIX + "setAsync", SessionMetrics.MICROSECONDS);
+        this.setnxAsyncMetric = metrics.getMetric(METRIC_PREFIX + "setnxAsync", SessionMetrics.MICROSECONDS);
+        this.setexAsyncMetric = metrics.getMetric(METRIC_PREFIX + "setexAsync", SessionMetrics.MICROSECONDS);
+        this.expireAsyncMetric = metrics.getMetric(METRIC_PREFIX + "expireAsync", SessionMetrics.MICROSECONDS);
+        this.getAsyncMetric = metrics.getMetric(METRIC_PREFIX + "getAsync", SessionMetrics.MICROSECONDS);
+        this.deleteAsyncMetric = metrics.getMetric(METRIC_PREFIX + "deleteAsync", SessionMetrics.MICROSECONDS);
+        this.existsAsyncMetric = metrics.getMetric(METRIC_PREFIX + "existsAsync", SessionMetrics.MICROSECONDS);
+        this.hgetAllAsyncMetric = metrics.getMetric(METRIC_PREFIX + "hgetAllAsync", SessionMetrics.MICROSECONDS);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setAsync(String key, byte[] value) {
+        return new MeteredFuture<>(this.asyncDataCache.setAsync(key, value), this.setAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> setnxAsync(String key, byte[] value) {
+        return new MeteredFuture<>(this.asyncDataCache.setnxAsync(key, value), this.setnxAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setexAsync(String key, byte[] value, int seconds) {
+        return new MeteredFuture<>(this.asyncDataCache.setexAsync(key, value, seconds), this.setexAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> expireAsync(String key, int seconds) {
+        return new MeteredFuture<>(this.asyncDataCache.expireAsync(key, seconds), this.expireAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> getAsync(String key) {
+        return new MeteredFuture<>(this.asyncDataCache.getAsync(key), this.getAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> deleteAsync(String key) {
+        return new MeteredFuture<>(this.asyncDataCache.deleteAsync(key), this.deleteAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Boolean> existsAsync(String key) {
+        return new MeteredFuture<>(this.asyncDataCache.existsAsync(key), this.existsAsyncMetric);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Map<String, byte[]>> hgetAllAsync(String key) {
+        return new MeteredFuture<>(this.asyncDataCache.hgetAllAsync(key), this.hgetAllAsyncMetric);
+    }
+
+    /** Future, recording the time waited for the result. */
+    private static class MeteredFuture<T> implements Future<T> {
+
+        private final Future<T> future;
+        private final Metric metric;
+
+        private MeteredFuture(Future<T> future, Metric metric) {
+            this.future = future;
+            this.metric = metric;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.future.cancel(mayInterruptIfRunning);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isCancelled() {
+            return this.future.isCancelled();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isDone() {
+            return this.future.isDone();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            long start = System.nanoTime();
+            try {
+                return this.future.get();
+            } catch (ExecutionException ex) {
+                this.metric.recordError();
+                throw ex;
+            } finally {
+                this.metric.recordTime(start);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            long start = System.nanoTime();
+            try {
+                return this.future.get(timeout, unit);
+            } catch (ExecutionException ex) {
+                this.metric.recordError();
+                throw ex;
+            } finally {
+                this.metric.recordTime(start);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package tomcat.request.session.data.cache.impl;
+
+import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
+import tomcat.request.session.metrics.Metric;
+import tomcat.request.session.metrics.SessionMetrics;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data-cache, recording the latency and the failures of each operation of the given data-cache.
+ * The latency includes the retries, and the near-cache or the local jvm cache hits of the data-cache.
+ */
+public class MeteredDataCache implements DataCache {
+
+    static final String METRIC_PREFIX = "dataCache.";
+
+    private final DataCache dataCache;
+    private final Metric setMetric;
+    private final Metric setnxMetric;
+    private final Metric setexMetric;
+    private final Metric setnxexMetric;
+    private final Metric expireMetric;
+    private final Metric getMetric;
+    private final Metric deleteMetric;
+    private final Metric existsMetric;
+    private final Metric hsetnxexMetric;
+    private final Metric hupdateMetric;
+    private final Metric hgetAllMetric;
+    private final Metric executeMetric;
+
+    public MeteredDataCache(DataCache dataCache, SessionMetrics metrics) {
+        this.dataCache = dataCache;
+        this.setMetric = metrics.getMetric(METRIC_PREFIX + "set", SessionMetrics.MICROSECONDS);
+        this.setnxMetric = metrics.getMetric(METRIC_PREFIX + "setnx", SessionMetrics.MICROSECONDS);
+        this.setexMetric = metrics.getMetric(METRIC_PREFIX + "setex", SessionMetrics.MICROSECONDS);
+        this.setnxexMetric = metrics.getMetric(METRIC_PREFIX + "setnxex", SessionMetrics.MICROSECONDS);
+        this.expireMetric = metrics.getMetric(METRIC_PREFIX + "expire", SessionMetrics.MICROSECONDS);
+        this.getMetric = metrics.getMetric(METRIC_PREFIX + "get", SessionMetrics.MICROSECONDS);
+        this.deleteMetric = metrics.getMetric(METRIC_PREFIX + "delete", SessionMetrics.MICROSECONDS);
+        this.existsMetric = metrics.getMetric(METRIC_PREFIX + "exists", SessionMetrics.MICROSECONDS);
+        this.hsetnxexMetric = metrics.getMetric(METRIC_PREFIX + "hsetnxex", SessionMetrics.MICROSECONDS);
+        this.hupdateMetric = metrics.getMetric(METRIC_PREFIX + "hupdate", SessionMetrics.MICROSECONDS);
+        this.hgetAllMetric = metrics.getMetric(METRIC_PREFIX + "hgetAll", SessionMetrics.MICROSECONDS);
+        this.executeMetric = metrics.getMetric(METRIC_PREFIX + "execute", SessionMetrics.MICROSECONDS);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] set(String key, byte[] value) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.set(key, value);
+        } catch (RuntimeException ex) {
+            this.setMetric.recordError();
+            throw ex;
+        } finally {
+            this.setMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnx(String key, byte[] value) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.setnx(key, value);
+        } catch (RuntimeException ex) {
+            this.setnxMetric.recordError();
+            throw ex;
+        } finally {
+            this.setnxMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.setex(key, value, seconds);
+        } catch (RuntimeException ex) {
+            this.setexMetric.recordError();
+            throw ex;
+        } finally {
+            this.setexMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.setnxex(key, value, seconds);
+        } catch (RuntimeException ex) {
+            this.setnxexMetric.recordError();
+            throw ex;
+        } finally {
+            this.setnxexMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long expire(String key, int seconds) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.expire(key, seconds);
+        } catch (RuntimeException ex) {
+            this.expireMetric.recordError();
+            throw ex;
+        } finally {
+            this.expireMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] get(String key) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.get(key);
+        } catch (RuntimeException ex) {
+            this.getMetric.recordError();
+            throw ex;
+        } finally {
+            this.getMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long delete(String key) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.delete(key);
+        } catch (RuntimeException ex) {
+            this.deleteMetric.recordError();
+            throw ex;
+        } finally {
+            this.deleteMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean exists(String key) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.exists(key);
+        } catch (RuntimeException ex) {
+            this.existsMetric.recordError();
+            throw ex;
+        } finally {
+            this.existsMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.hsetnxex(key, fields, seconds);
+        } catch (RuntimeException ex) {
+            this.hsetnxexMetric.recordError();
+            throw ex;
+        } finally {
+            this.hsetnxexMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.hupdate(key, fields, deletedFields, seconds);
+        } catch (RuntimeException ex) {
+            this.hupdateMetric.recordError();
+            throw ex;
+        } finally {
+            this.hupdateMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        long start = System.nanoTime();
+        try {
+            return this.dataCache.hgetAll(key);
+        } catch (RuntimeException ex) {
+            this.hgetAllMetric.recordError();
+            throw ex;
+        } finally {
+            this.hgetAllMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        long start = System.nanoTime();
+        try {
+            this.dataCache.execute(batch);
+        } catch (RuntimeException ex) {
+            this.executeMetric.recordError();
+            throw ex;
+        } finally {
+            this.executeMetric.recordTime(start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.dataCache.close();
+    }
+}
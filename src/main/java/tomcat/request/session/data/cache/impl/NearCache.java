@@ -0,0 +1,221 @@
+package tomcat.request.session.data.cache.impl;
+
+import tomcat.request.session.data.cache.DataCacheInvalidationListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Near-cache, holding the recently read data-cache values in local jvm.
+ *
+ * Values are cached only while the invalidation source is connected, and are removed on the invalidation of the
+ * key. Only the keys of the tracked prefixes are cached, as the other keys are not invalidated. A read reserves the key before reaching the data-cache, and the invalidation releases the reservation, so a
+ * value read before the concurrent modification is not cached after its invalidation.
+ */
+public class NearCache implements DataCacheInvalidationListener {
+
+    private static final long ENTRY_WEIGHT_OVERHEAD = 64;
+    private static final int LOCK_COUNT = 64;
+    private static final int MAX_RESERVATIONS = 10000;
+
+    private final SegmentedLruCache<Object> values;
+    private final List<String> keyPrefixes;
+    private final ConcurrentMap<String, Object> reservations = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_COUNT];
+    private volatile boolean enabled;
+
+    /**
+     * @param maxEntries  - maximum number of entries. 0, for no limit.
+     * @param maxWeight   - maximum size (in bytes) of the entries. 0, for no limit.
+     * @param expiryTime  - entries not accessed for this duration (in milliseconds) are expired.
+     * @param keyPrefixes - prefixes of the keys tracked by the invalidation source.
+     */
+    public NearCache(long maxEntries, long maxWeight, long expiryTime, List<String> keyPrefixes) {
+        this.values = new SegmentedLruCache<>(maxEntries, maxWeight, expiryTime, new ValueWeigher());
+        this.keyPrefixes = keyPrefixes;
+        for (int i = 0; i < LOCK_COUNT; i++) {
+            this.locks[i] = new Object();
+        }
+    }
+
+    /** To enable or disable the near-cache, as the invalidation source connects and disconnects. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            invalidateAll();
+        }
+    }
+
+    /** To get the cached value, null if not cached. Hash values are copied, as the callers may modify them. */
+    @SuppressWarnings("unchecked")
+    public Object get(String key) {
+        if (!this.enabled || !isTracked(key)) {
+            return null;
+        }
+        Object value = this.values.get(key);
+        return (value instanceof Map) ? new HashMap<>((Map<String, byte[]>) value) : value;
+    }
+
+    /**
+     * To reserve the key, before reading it from data-cache.
+     *
+     * @param key - key to read.
+     * @return - Returns the reservation, null if the near-cache is disabled or the key is not tracked.
+     */
+    public Object reserve(String key) {
+        if (!this.enabled || !isTracked(key)) {
+            return null;
+        }
+        // reservations of the reads never completed are dropped, the keys are just not cached.
+        if (this.reservations.size() >= MAX_RESERVATIONS) {
+            this.reservations.clear();
+        }
+        Object reservation = new Object();
+        this.reservations.put(key, reservation);
+        return reservation;
+    }
+
+    /**
+     * To cache the value read from data-cache, if the key is not invalidated since reserved.
+     *
+     * @param key         - key read.
+     * @param reservation - key reservation, null if not reserved.
+     * @param value       - value read, not cached if null or empty.
+     */
+    public void put(String key, Object reservation, Object value) {
+        if (reservation == null) {
+            return;
+        }
+        synchronized (getLock(key)) {
+            if (this.reservations.remove(key, reservation) && this.enabled && value != null
+                    && !(value instanceof Map && ((Map<?, ?>) value).isEmpty())) {
+                this.values.put(key, (value instanceof Map) ? new HashMap<>((Map<?, ?>) value) : value);
+            }
+        }
+    }
+
+    /** To cache the value of the non-blocking read on its completion, if the key is not invalidated since reserved. */
+    public <T> Future<T> putOnCompletion(String key, Object reservation, Future<T> future) {
+        return (reservation == null) ? future : new NearCachedFuture<>(key, reservation, future);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidate(String key) {
+        synchronized (getLock(key)) {
+            this.reservations.remove(key);
+            this.values.remove(key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateAll() {
+        this.reservations.clear();
+        for (String key : this.values.keys()) {
+            invalidate(key);
+        }
+    }
+
+    /** To get the prefixes of the keys tracked by the invalidation source. */
+    public List<String> getKeyPrefixes() {
+        return this.keyPrefixes;
+    }
+
+    /** To get the number of cache hits. */
+    public long getHitCount() {
+        return this.values.getHitCount();
+    }
+
+    /** To get the number of cache misses. */
+    public long getMissCount() {
+        return this.values.getMissCount();
+    }
+
+    /** To check the key is of a tracked prefix. */
+    private boolean isTracked(String key) {
+        for (String prefix : this.keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object getLock(String key) {
+        return this.locks[(key.hashCode() & 0x7fffffff) % LOCK_COUNT];
+    }
+
+    /** Future of the non-blocking read, caching the value on its completion. */
+    private class NearCachedFuture<T> implements Future<T> {
+        private final String key;
+        private final Object reservation;
+        private final Future<T> future;
+
+        NearCachedFuture(String key, Object reservation, Future<T> future) {
+            this.key = key;
+            this.reservation = reservation;
+            this.future = future;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this.future.cancel(mayInterruptIfRunning);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isCancelled() {
+            return this.future.isCancelled();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean isDone() {
+            return this.future.isDone();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            T value = this.future.get();
+            put(this.key, this.reservation, value);
+            return value;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            T value = this.future.get(timeout, unit);
+            put(this.key, this.reservation, value);
+            return value;
+        }
+    }
+
+    /** Near-cache value weigher, approximates the value size in bytes. */
+    private static class ValueWeigher implements SegmentedLruCache.Weigher<Object> {
+
+        /** {@inheritDoc} */
+        @Override
+        @SuppressWarnings("unchecked")
+        public long weigh(String key, Object value) {
+            long weight = ENTRY_WEIGHT_OVERHEAD + 2L * key.length();
+            if (value instanceof byte[]) {
+                weight += ((byte[]) value).length;
+            } else if (value instanceof Map) {
+                for (Map.Entry<String, byte[]> field : ((Map<String, byte[]>) value).entrySet()) {
+                    weight += ENTRY_WEIGHT_OVERHEAD + 2L * field.getKey().length() + field.getValue().length;
+                }
+            }
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package tomcat.request.session.data.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded local cache, with segmented LRU eviction and expiry on access.
+ *
+ * Keys are spread across independently locked segments. Each segment keeps a probation and a protected LRU list;
+ * new entries enter the probation list and are promoted to the protected list on their next access, so a burst of
+ * one time entries can't evict the frequently accessed ones. Entries are evicted from the probation list first,
+ * when the segment exceeds its entry count or weight (bytes) limit.
+ *
+ * Reads take no lock. The entry is looked up in a concurrent map and its access is recorded in a bounded per-segment
+ * buffer, replayed on the LRU lists by the next write, or by a read that finds the buffer half full and the segment
+ * lock free. Accesses are dropped while the buffer is full, which only makes the LRU order approximate.
+ *
+ * Expiry is tracked per segment by a {@link TimerWheel}, advanced along with the buffer replay and by
+ * {@link #removeExpired()}. Accesses don't touch the wheel; an entry accessed after it was scheduled is re-scheduled
+ * to its new deadline when it fires. Reads treat the entries idle past the expiry duration as absent.
+ */
+public class SegmentedLruCache<V> {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int PROTECTED_PERCENTAGE = 80;
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private final Segment<V>[] segments;
+    private final long expireAfterAccess;
+    private final Weigher<V> weigher;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong expirationCount = new AtomicLong();
+
+    /**
+     * @param maxEntries        - maximum number of entries. 0, for no limit.
+     * @param maxWeight         - maximum total weight of the entries. 0, for no limit.
+     * @param expireAfterAccess - entries not accessed for this duration (in milliseconds) are expired.
+     * @param weigher           - to compute the entry weight.
+     */
+    public SegmentedLruCache(long maxEntries, long maxWeight, long expireAfterAccess, Weigher<V> weigher) {
+        this.expireAfterAccess = expireAfterAccess;
+        this.weigher = weigher;
+        @SuppressWarnings("unchecked")
+        Segment<V>[] segments = (Segment<V>[]) new Segment<?>[SEGMENT_COUNT];
+        this.segments = segments;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            this.segments[i] = new Segment<>(getSegmentLimit(maxEntries), getSegmentLimit(maxWeight), expireAfterAccess);
+        }
+    }
+
+    /** To compute the entry weight. */
+    public interface Weigher<V> {
+        long weigh(String key, V value);
+    }
+
+    /** To get the value and record the access. Returns null, if the entry is not present or expired. */
+    public V get(String key) {
+        long now = System.currentTimeMillis();
+        Segment<V> segment = getSegment(key);
+        Entry<V> entry = segment.data.get(key);
+        if (entry == null || segment.isExpired(entry, now)) {
+            // expired entries are removed on the segment maintenance.
+            this.missCount.incrementAndGet();
+            return null;
+        }
+
+        entry.accessedOn = now;
+        if (segment.recordRead(entry) && segment.lock.tryLock()) {
+            try {
+                maintain(segment, now);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        this.hitCount.incrementAndGet();
+        return entry.value;
+    }
+
+    /** To get the value, without recording the access. */
+    public V peek(String key) {
+        Entry<V> entry = getSegment(key).data.get(key);
+        return (entry == null) ? null : entry.value;
+    }
+
+    /** To check the entry is present. */
+    public boolean containsKey(String key) {
+        return peek(key) != null;
+    }
+
+    /** To add or replace the value. */
+    public void put(String key, V value) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = new Entry<>(key, value, this.weigher.weigh(key, value), now);
+        Segment<V> segment = getSegment(key);
+        segment.lock.lock();
+        try {
+            maintain(segment, now);
+            segment.replaceEntry(entry);
+            this.evictionCount.addAndGet(segment.evict());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /** To remove the value. */
+    public V remove(String key) {
+        Segment<V> segment = getSegment(key);
+        segment.lock.lock();
+        try {
+            Entry<V> entry = segment.removeEntry(key);
+            return (entry == null) ? null : entry.value;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /** To remove the entries, which are not accessed within the expiry duration. */
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        for (Segment<V> segment : this.segments) {
+            segment.lock.lock();
+            try {
+                maintain(segment, now);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    /** To get the snapshot of the keys. */
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (Segment<V> segment : this.segments) {
+            keys.addAll(segment.data.keySet());
+        }
+        return keys;
+    }
+
+    /** To get the number of entries. */
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : this.segments) {
+            size += segment.data.size();
+        }
+        return size;
+    }
+
+    /** To get the total weight of the entries. */
+    public long weightedSize() {
+        long weight = 0;
+        for (Segment<V> segment : this.segments) {
+            segment.lock.lock();
+            try {
+                weight += segment.weight;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    /** To get the number of cache hits. */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /** To get the number of cache misses. */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /** To get the number of entries evicted to stay within the size limits. */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /** To get the number of entries expired. */
+    public long getExpirationCount() {
+        return this.expirationCount.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "SegmentedLruCache{" +
+                "size=" + size() +
+                ", weightedSize=" + weightedSize() +
+                ", hitCount=" + getHitCount() +
+                ", missCount=" + getMissCount() +
+                ", evictionCount=" + getEvictionCount() +
+                ", expirationCount=" + getExpirationCount() +
+                '}';
+    }
+
+    /** To replay the buffered reads and remove the expired entries. The segment lock must be held. */
+    private void maintain(Segment<V> segment, long now) {
+        segment.drainReads();
+        this.expirationCount.addAndGet(segment.expire(now));
+    }
+
+    private Segment<V> getSegment(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return this.segments[hash & (SEGMENT_COUNT - 1)];
+    }
+
+    private static long getSegmentLimit(long limit) {
+        return (limit <= 0) ? Long.MAX_VALUE : Math.max(1, (limit + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+    }
+
+    /**
+     * Cache segment. The entries map is read without the lock; it and the LRU lists are updated under the lock. The
+     * lists are insertion ordered, entries are moved to the tail on access.
+     */
+    private static class Segment<V> {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final long maxEntries;
+        private final long maxWeight;
+        private final long maxProtectedEntries;
+        private final long maxProtectedWeight;
+        private final long expireAfterAccess;
+
+        private final Map<String, Entry<V>> data = new ConcurrentHashMap<>();
+        private final Map<String, Entry<V>> probation = new LinkedHashMap<>();
+        private final Map<String, Entry<V>> protect = new LinkedHashMap<>();
+        private long weight;
+        private long protectedWeight;
+
+        private final TimerWheel wheel = new TimerWheel(System.currentTimeMillis());
+        private final List<TimerWheel.Node> expired = new ArrayList<>();
+
+        private final Queue<Entry<V>> reads = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger readCount = new AtomicInteger();
+
+        Segment(long maxEntries, long maxWeight, long expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+            this.maxProtectedEntries = getProtectedLimit(maxEntries);
+            this.maxProtectedWeight = getProtectedLimit(maxWeight);
+        }
+
+        private static long getProtectedLimit(long limit) {
+            return (limit == Long.MAX_VALUE) ? limit : Math.max(1, limit * PROTECTED_PERCENTAGE / 100);
+        }
+
+        /**
+         * To buffer the read, to be replayed on the LRU lists. The read is dropped if the buffer is full.
+         *
+         * @return - Returns true, if the buffer is half full and should be replayed.
+         */
+        boolean recordRead(Entry<V> entry) {
+            int count = this.readCount.incrementAndGet();
+            if (count > READ_BUFFER_SIZE) {
+                this.readCount.decrementAndGet();
+                return true;
+            }
+            this.reads.add(entry);
+            return count >= READ_BUFFER_SIZE / 2;
+        }
+
+        /** To replay the buffered reads on the LRU lists, skipping the entries removed or replaced meanwhile. */
+        void drainReads() {
+            Entry<V> entry;
+            while ((entry = this.reads.poll()) != null) {
+                this.readCount.decrementAndGet();
+                if (this.data.get(entry.key) == entry) {
+                    recordAccess(entry);
+                }
+            }
+        }
+
+        void addEntry(Entry<V> entry) {
+            entry.protect = false;
+            this.data.put(entry.key, entry);
+            this.probation.put(entry.key, entry);
+            this.weight += entry.weight;
+            this.wheel.schedule(entry, entry.accessedOn + this.expireAfterAccess);
+        }
+
+        /** To add the entry, replacing the entry of the same key. A replaced protected entry stays protected. */
+        void replaceEntry(Entry<V> entry) {
+            Entry<V> replaced = removeEntry(entry.key);
+            addEntry(entry);
+            if (replaced != null && replaced.protect) {
+                recordAccess(entry);
+            }
+        }
+
+        Entry<V> removeEntry(String key) {
+            this.data.remove(key);
+            Entry<V> entry = this.probation.remove(key);
+            if (entry == null) {
+                entry = this.protect.remove(key);
+                if (entry != null) {
+                    this.protectedWeight -= entry.weight;
+                }
+            }
+            if (entry != null) {
+                this.weight -= entry.weight;
+                this.wheel.unschedule(entry);
+            }
+            return entry;
+        }
+
+        /** To move the entry to the protected list tail, demoting the protected list overflow to probation. */
+        void recordAccess(Entry<V> entry) {
+            if (entry.protect) {
+                this.protect.remove(entry.key);
+                this.protect.put(entry.key, entry);
+                return;
+            }
+
+            this.probation.remove(entry.key);
+            entry.protect = true;
+            this.protect.put(entry.key, entry);
+            this.protectedWeight += entry.weight;
+
+            Iterator<Entry<V>> iterator = this.protect.values().iterator();
+            while (this.protect.size() > 1
+                    && (this.protect.size() > this.maxProtectedEntries || this.protectedWeight > this.maxProtectedWeight)) {
+                Entry<V> demoted = iterator.next();
+                iterator.remove();
+                this.protectedWeight -= demoted.weight;
+                demoted.protect = false;
+                this.probation.put(demoted.key, demoted);
+            }
+        }
+
+        boolean isExpired(Entry<V> entry, long now) {
+            return now - entry.accessedOn >= this.expireAfterAccess;
+        }
+
+        /** To remove the entries, whose deadline has elapsed on the timer wheel and not accessed meanwhile. */
+        @SuppressWarnings("unchecked")
+        int expire(long now) {
+            this.wheel.advance(now, this.expired);
+            if (this.expired.isEmpty()) {
+                return 0;
+            }
+
+            int count = 0;
+            for (TimerWheel.Node node : this.expired) {
+                Entry<V> entry = (Entry<V>) node;
+                if (isExpired(entry, now)) {
+                    removeEntry(entry.key);
+                    count++;
+                } else {
+                    this.wheel.schedule(entry, entry.accessedOn + this.expireAfterAccess);
+                }
+            }
+            this.expired.clear();
+            return count;
+        }
+
+        /** To evict the least recently used entries, probation list first, to stay within the limits. */
+        int evict() {
+            int count = 0;
+            while (this.probation.size() + this.protect.size() > this.maxEntries || this.weight > this.maxWeight) {
+                Map<String, Entry<V>> entries = this.probation.isEmpty() ? this.protect : this.probation;
+                if (entries.isEmpty()) {
+                    break;
+                }
+                removeEntry(entries.keySet().iterator().next());
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /** Cache entry. */
+    private static class Entry<V> extends TimerWheel.Node {
+        private final String key;
+        private final V value;
+        private final long weight;
+        private volatile long accessedOn;
+        private boolean protect;
+
+        Entry(String key, V value, long weight, long accessedOn) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.accessedOn = accessedOn;
+        }
+    }
+}
@@ -3,54 +3,94 @@ package tomcat.request.session.data.cache.impl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
 import tomcat.request.session.data.cache.impl.redis.RedisCache;
+import tomcat.request.session.metrics.Gauge;
+import tomcat.request.session.metrics.SessionMetrics;
 import tomcat.request.session.model.Config;
 
 import java.io.Serializable;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** author: Ranjith Manickam @ 3 Dec' 2018 */
 public class StandardDataCache extends RedisCache {
 
-    private boolean processDataSync;
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandardDataCache.class);
 
-    private long expiryJob;
-    private long dataSyncJob;
+    private static final long ENTRY_WEIGHT_OVERHEAD = 64;
+    private static final long MIN_JOB_INTERVAL = TimeUnit.SECONDS.toMillis(1);
 
     private final int sessionExpiryTime;
-    private final long expiryJobTriggerInterval;
-    private final long dataSyncJobTriggerInterval;
-    private final Map<String, SessionData> sessionData;
+    private final int dataSyncBatchSize;
+    private final int journalMaxEntries;
+    private final SegmentedLruCache<SessionData> sessionData;
 
-    private final Executor expiryJobExecutor;
-    private final Executor dataSyncJobExecutor;
+    /** Write-behind journal, keeps the latest pending write of the keys failed to write to redis. */
+    private final ConcurrentMap<String, JournalEntry> journal;
+
+    /** Orders the writes of a key, so a write failed late doesn't replace the journal entry of a later write. */
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    private final ScheduledExecutorService jobExecutor;
 
     public StandardDataCache(Config config, int sessionExpiryTime) {
-        super(config);
+        this(config, sessionExpiryTime, SessionMetrics.DISABLED);
+    }
+
+    public StandardDataCache(Config config, int sessionExpiryTime, SessionMetrics metrics) {
+        this(config, sessionExpiryTime, metrics, null);
+    }
+
+    /** To create the data-cache over the given data-cache, in place of redis. ex: in-process data-cache, for benchmarks. */
+    public StandardDataCache(Config config, int sessionExpiryTime, SessionMetrics metrics, DataCache dataCache) {
+        super(config, metrics, dataCache);
         this.sessionExpiryTime = sessionExpiryTime;
-        this.sessionData = new ConcurrentHashMap<>();
-        this.expiryJob = new Date().getTime();
-        this.dataSyncJob = new Date().getTime();
-        this.processDataSync = false;
-        this.expiryJobTriggerInterval = TimeUnit.MINUTES.toMillis(config.getRedisSessionExpiryJobInterval());
-        this.dataSyncJobTriggerInterval = TimeUnit.MINUTES.toMillis(config.getRedisSessionDataSyncJobInterval());
-        this.expiryJobExecutor = Executors.newSingleThreadExecutor();
-        this.dataSyncJobExecutor = Executors.newSingleThreadExecutor();
+        this.dataSyncBatchSize = Math.max(config.getRedisSessionDataSyncBatchSize(), 1);
+        this.journalMaxEntries = config.getRedisSessionDataSyncJournalMaxEntries();
+        this.sessionData = new SegmentedLruCache<>(config.getLbStickySessionLocalCacheMaxEntries(),
+                config.getLbStickySessionLocalCacheMaxSize() * 1024L * 1024L,
+                TimeUnit.SECONDS.toMillis(sessionExpiryTime + 60),
+                new SessionDataWeigher());
+        this.journal = new ConcurrentHashMap<>();
+        addLocalCacheGauges(metrics, this.sessionData);
+
+        // jobs are scheduled, so that the request threads don't check whether the jobs are due.
+        long expiryJobInterval = Math.max(TimeUnit.MINUTES.toMillis(config.getRedisSessionExpiryJobInterval()), MIN_JOB_INTERVAL);
+        long dataSyncJobInterval = Math.max(TimeUnit.MINUTES.toMillis(config.getRedisSessionDataSyncJobInterval()), MIN_JOB_INTERVAL);
+        this.jobExecutor = Executors.newScheduledThreadPool(2, new JobThreadFactory());
+        this.jobExecutor.scheduleWithFixedDelay(new SessionDataSyncThread(this),
+                dataSyncJobInterval, dataSyncJobInterval, TimeUnit.MILLISECONDS);
+        this.jobExecutor.scheduleWithFixedDelay(new SessionDataExpiryThread(this.sessionData),
+                expiryJobInterval, expiryJobInterval, TimeUnit.MILLISECONDS);
     }
 
     /** {@inheritDoc} */
     @Override
     public byte[] set(String key, byte[] value) {
-        this.sessionData.put(key, new SessionData(value));
+        long version = this.writeVersion.incrementAndGet();
+        SessionData data = new SessionData(value);
+        this.sessionData.put(key, data);
         try {
-            return super.set(key, value);
+            byte[] retValue = super.set(key, value);
+            removeJournalEntry(key, version);
+            return retValue;
         } catch (RuntimeException ex) {
-            this.processDataSync = true;
+            putJournalEntry(key, new JournalEntry(version, data, null, 0), ex);
         }
         return value;
     }
@@ -58,12 +98,51 @@ public class StandardDataCache extends RedisCache {
     /** {@inheritDoc} */
     @Override
     public Long setnx(String key, byte[] value) {
+        long version = this.writeVersion.incrementAndGet();
         Long retValue;
         try {
             retValue = super.setnx(key, value);
         } catch (RuntimeException ex) {
             retValue = this.sessionData.containsKey(key) ? 0L : 1L;
-            this.processDataSync = true;
+            if (retValue == 1L) {
+                putJournalEntry(key, new JournalEntry(version, new SessionData(value), null, 0), ex);
+            }
+        }
+
+        if (retValue == 1L) {
+            this.sessionData.put(key, new SessionData(value));
+        }
+        return retValue;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        long version = this.writeVersion.incrementAndGet();
+        SessionData data = new SessionData(value);
+        this.sessionData.put(key, data);
+        try {
+            byte[] retValue = super.setex(key, value, seconds);
+            removeJournalEntry(key, version);
+            return retValue;
+        } catch (RuntimeException ex) {
+            putJournalEntry(key, new JournalEntry(version, data, null, seconds), ex);
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        long version = this.writeVersion.incrementAndGet();
+        Long retValue;
+        try {
+            retValue = super.setnxex(key, value, seconds);
+        } catch (RuntimeException ex) {
+            retValue = this.sessionData.containsKey(key) ? 0L : 1L;
+            if (retValue == 1L) {
+                putJournalEntry(key, new JournalEntry(version, new SessionData(value), null, seconds), ex);
+            }
         }
 
         if (retValue == 1L) {
@@ -75,37 +154,49 @@ public class StandardDataCache extends RedisCache {
     /** {@inheritDoc} */
     @Override
     public Long expire(String key, int seconds) {
+        long version = this.writeVersion.incrementAndGet();
         try {
             return super.expire(key, seconds);
         } catch (RuntimeException ex) {
-            this.processDataSync = true;
+            JournalEntry entry = this.journal.get(key);
+            SessionData data = (entry != null) ? entry.getData() : this.sessionData.peek(key);
+            if (data != null) {
+                Set<String> deletedFields = (entry != null) ? entry.getDeletedFields() : null;
+                putJournalEntry(key, new JournalEntry(version, data, deletedFields, seconds), ex);
+            }
         }
         return null;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     * If the key is not in the local cache and has a pending journal write, the pending value is returned, as redis
+     * has the value before the failed write.
+     */
     @Override
     public byte[] get(String key) {
-        handleSessionData();
-        if (this.sessionData.containsKey(key)) {
-            return this.sessionData.get(key).getValue();
+        SessionData data = this.sessionData.get(key);
+        if (data != null) {
+            return data.getValue();
         }
-        try {
-            return super.get(key);
-        } catch (RuntimeException ex) {
-            this.processDataSync = true;
-            throw ex;
+        JournalEntry entry = this.journal.get(key);
+        if (entry != null) {
+            return (entry.getData() != null) ? entry.getData().getValue() : null;
         }
+        return super.get(key);
     }
 
     /** {@inheritDoc} */
     @Override
     public Long delete(String key) {
+        long version = this.writeVersion.incrementAndGet();
         Object value = this.sessionData.remove(key);
         try {
-            return super.delete(key);
+            Long retValue = super.delete(key);
+            removeJournalEntry(key, version);
+            return retValue;
         } catch (RuntimeException ex) {
-            this.processDataSync = true;
+            putJournalEntry(key, new JournalEntry(version, null, null, 0), ex);
         }
         return (value == null) ? 0L : 1L;
     }
@@ -113,50 +204,442 @@ public class StandardDataCache extends RedisCache {
     /** {@inheritDoc} */
     @Override
     public Boolean exists(String key) {
-        return this.sessionData.containsKey(key);
+        if (this.sessionData.containsKey(key)) {
+            return true;
+        }
+        try {
+            return super.exists(key);
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        long version = this.writeVersion.incrementAndGet();
+        Long retValue;
+        try {
+            retValue = super.hsetnxex(key, fields, seconds);
+        } catch (RuntimeException ex) {
+            retValue = this.sessionData.containsKey(key) ? 0L : 1L;
+            if (retValue == 1L) {
+                putJournalEntry(key, new JournalEntry(version, new SessionData(new HashMap<>(fields)), null, seconds), ex);
+            }
+        }
+
+        if (retValue == 1L) {
+            this.sessionData.put(key, new SessionData(new HashMap<>(fields)));
+        }
+        return retValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     * If the key has a pending journal write, its fields are written as well, so the fields changed while redis was
+     * not reachable are not lost. The local hash is updated only when it is present; otherwise it is invalidated, as
+     * the update has only the changed fields.
+     */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        long version = this.writeVersion.incrementAndGet();
+        SessionData data = this.sessionData.peek(key);
+        boolean cached = (data != null && data.getFields() != null);
+        if (cached) {
+            Map<String, byte[]> hashFields = new HashMap<>(data.getFields());
+            hashFields.putAll(fields);
+            hashFields.keySet().removeAll(deletedFields);
+            this.sessionData.put(key, new SessionData(hashFields));
+        } else {
+            this.sessionData.remove(key);
+        }
+
+        JournalEntry entry = this.journal.get(key);
+        Map<String, byte[]> pendingFields = new HashMap<>();
+        Set<String> pendingDeletedFields = new HashSet<>(deletedFields);
+        if (entry != null && entry.getData() != null && entry.getData().getFields() != null) {
+            pendingFields.putAll(entry.getData().getFields());
+        }
+        if (entry != null && entry.getDeletedFields() != null) {
+            pendingDeletedFields.addAll(entry.getDeletedFields());
+        }
+        pendingFields.putAll(fields);
+        pendingFields.keySet().removeAll(deletedFields);
+        pendingDeletedFields.removeAll(pendingFields.keySet());
+
+        try {
+            Long retValue;
+            if (entry == null) {
+                retValue = super.hupdate(key, fields, deletedFields, seconds);
+            } else {
+                retValue = super.hupdate(key, pendingFields, pendingDeletedFields, seconds);
+                this.journal.remove(key, entry);
+            }
+            return retValue;
+        } catch (RuntimeException ex) {
+            // removed fields are kept until the next successful write, to remove them from redis as well.
+            putJournalEntry(key, new JournalEntry(version, new SessionData(pendingFields), pendingDeletedFields, seconds), ex);
+        } finally {
+            if (!cached) {
+                // the hash read by a concurrent hgetAll, before this update was written, is dropped.
+                this.sessionData.remove(key);
+            }
+        }
+        return (long) fields.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     * If the key is not in the local cache and has a pending journal write, the pending fields are applied over the
+     * hash read from redis, as the journal keeps only the fields changed since the last successful write.
+     */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        SessionData data = this.sessionData.get(key);
+        if (data != null) {
+            return (data.getFields() != null) ? new HashMap<>(data.getFields()) : new HashMap<String, byte[]>();
+        }
+
+        JournalEntry entry = this.journal.get(key);
+        if (entry != null && entry.getData() == null) {
+            return new HashMap<>();
+        }
+        Map<String, byte[]> fields = super.hgetAll(key);
+        if (entry != null && entry.getData().getFields() != null) {
+            fields = (fields != null) ? new HashMap<>(fields) : new HashMap<String, byte[]>();
+            if (entry.getDeletedFields() != null) {
+                fields.keySet().removeAll(entry.getDeletedFields());
+            }
+            fields.putAll(entry.getData().getFields());
+        }
+        if (fields != null && !fields.isEmpty()) {
+            this.sessionData.put(key, new SessionData(new HashMap<>(fields)));
+        }
+        return fields;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.jobExecutor.shutdownNow();
+        super.close();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setAsync(final String key, final byte[] value) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return set(key, value);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> setnxAsync(final String key, final byte[] value) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return setnx(key, value);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setexAsync(final String key, final byte[] value, final int seconds) {
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return setex(key, value, seconds);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> expireAsync(final String key, final int seconds) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return expire(key, seconds);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> getAsync(String key) {
+        SessionData data = this.sessionData.get(key);
+        if (data != null) {
+            return CompletedFuture.of(data.getValue());
+        }
+        JournalEntry entry = this.journal.get(key);
+        if (entry != null) {
+            return CompletedFuture.of((entry.getData() != null) ? entry.getData().getValue() : null);
+        }
+        return super.getAsync(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> deleteAsync(final String key) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return delete(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Boolean> existsAsync(final String key) {
+        if (this.sessionData.containsKey(key)) {
+            return CompletedFuture.of(true);
+        }
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return exists(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Map<String, byte[]>> hgetAllAsync(final String key) {
+        SessionData data = this.sessionData.get(key);
+        if (data != null) {
+            return CompletedFuture.<Map<String, byte[]>>of((data.getFields() != null) ? new HashMap<>(data.getFields()) : new HashMap<String, byte[]>());
+        }
+        return submit(new Callable<Map<String, byte[]>>() {
+            @Override
+            public Map<String, byte[]> call() {
+                return hgetAll(key);
+            }
+        });
+    }
+
+    /** To add the sticky-session local cache size, hit, miss, eviction and expiration gauges. */
+    private static void addLocalCacheGauges(SessionMetrics metrics, final SegmentedLruCache<SessionData> sessionData) {
+        metrics.addGauge(new Gauge("localCache.size") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return sessionData.size();
+            }
+        });
+        metrics.addGauge(new Gauge("localCache.weightedSize") {
+            /** Approximate size of the cached session data, in bytes. */
+            @Override
+            public double getValue() {
+                return sessionData.weightedSize();
+            }
+        });
+        metrics.addGauge(new Gauge("localCache.hits") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return sessionData.getHitCount();
+            }
+        });
+        metrics.addGauge(new Gauge("localCache.misses") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return sessionData.getMissCount();
+            }
+        });
+        metrics.addGauge(new Gauge("localCache.evictions") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return sessionData.getEvictionCount();
+            }
+        });
+        metrics.addGauge(new Gauge("localCache.expirations") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return sessionData.getExpirationCount();
+            }
+        });
+    }
+
+    /**
+     * To record the pending write of the key in the journal, unless a later write of the key is already recorded.
+     * If the journal is full, the write failure is raised, as the write can't be replayed.
+     *
+     * @param key   - key failed to write to redis.
+     * @param entry - pending write.
+     * @param ex    - write failure.
+     */
+    private void putJournalEntry(String key, JournalEntry entry, RuntimeException ex) {
+        while (true) {
+            JournalEntry current = this.journal.get(key);
+            if (current == null) {
+                if (this.journalMaxEntries > 0 && this.journal.size() >= this.journalMaxEntries) {
+                    LOGGER.warn("Session data sync journal is full, session [{}] write is not retried..", key);
+                    throw ex;
+                }
+                if (this.journal.putIfAbsent(key, entry) == null) {
+                    return;
+                }
+            } else if (current.getVersion() > entry.getVersion() || this.journal.replace(key, current, entry)) {
+                return;
+            }
+        }
+    }
+
+    /** To remove the pending write of the key from the journal, unless a later write of the key is recorded. */
+    private void removeJournalEntry(String key, long version) {
+        JournalEntry current = this.journal.get(key);
+        while (current != null && current.getVersion() <= version && !this.journal.remove(key, current)) {
+            current = this.journal.get(key);
+        }
+    }
+
+    /**
+     * To replay the write-behind journal to redis, in pipelined batches. Each batch is sent after the previous one
+     * is acknowledged; the replay stops on the first failure and resumes on the next data sync job.
+     */
+    private void syncSessionData() {
+        if (this.journal.isEmpty()) {
+            return;
+        }
+
+        int count = 0;
+        List<String> keys = new ArrayList<>(this.dataSyncBatchSize);
+        List<JournalEntry> entries = new ArrayList<>(this.dataSyncBatchSize);
+        for (Map.Entry<String, JournalEntry> journalEntry : this.journal.entrySet()) {
+            keys.add(journalEntry.getKey());
+            entries.add(journalEntry.getValue());
+            if (keys.size() >= this.dataSyncBatchSize) {
+                count += syncSessionData(keys, entries);
+                keys.clear();
+                entries.clear();
+            }
+        }
+        count += syncSessionData(keys, entries);
+        LOGGER.info("Session data sync completed, {} pending writes replayed, {} remaining", count, this.journal.size());
+    }
+
+    /** To replay the journal entries batch to redis. */
+    private int syncSessionData(List<String> keys, List<JournalEntry> entries) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+
+        DataCacheBatch batch = new DataCacheBatch();
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            JournalEntry entry = entries.get(i);
+            SessionData data = entry.getData();
+            if (data == null) {
+                batch.delete(key);
+            } else if (data.getFields() != null) {
+                batch.hupdate(key, data.getFields(), entry.getDeletedFields(), entry.getSeconds());
+            } else if (entry.getSeconds() > 0) {
+                batch.setex(key, data.getValue(), entry.getSeconds());
+            } else {
+                batch.set(key, data.getValue());
+            }
+        }
+        super.execute(batch);
+
+        // entries re-written meanwhile are kept, to be replayed with their latest data.
+        for (int i = 0; i < keys.size(); i++) {
+            this.journal.remove(keys.get(i), entries.get(i));
+        }
+        return keys.size();
     }
 
     /** Session data. */
     private static class SessionData implements Serializable {
         private byte[] value;
-        private long lastAccessedOn;
+        private Map<String, byte[]> fields;
 
         SessionData(byte[] value) {
             this.value = value;
-            updatedLastAccessedOn();
         }
 
-        void updatedLastAccessedOn() {
-            this.lastAccessedOn = new Date().getTime();
+        SessionData(Map<String, byte[]> fields) {
+            this.fields = fields;
         }
 
         byte[] getValue() {
-            updatedLastAccessedOn();
             return this.value;
         }
 
-        long getLastAccessedOn() {
-            return this.lastAccessedOn;
+        Map<String, byte[]> getFields() {
+            return this.fields;
         }
     }
 
-    /** To handle session data. */
-    private synchronized void handleSessionData() {
-        // redis sync
-        long now = new Date().getTime();
+    /** Write-behind journal entry. Session data is null, for the deleted keys. */
+    private static class JournalEntry {
+        private final long version;
+        private final SessionData data;
+        private final Set<String> deletedFields;
+        private final int seconds;
+
+        JournalEntry(long version, SessionData data, Set<String> deletedFields, int seconds) {
+            this.version = version;
+            this.data = data;
+            this.deletedFields = deletedFields;
+            this.seconds = seconds;
+        }
+
+        long getVersion() {
+            return this.version;
+        }
 
-        long difference = now - this.dataSyncJob;
-        if (this.processDataSync && difference >= this.dataSyncJobTriggerInterval) {
-            this.dataSyncJobExecutor.execute(new SessionDataSyncThread(this, this.sessionData, this.sessionExpiryTime));
-            this.dataSyncJob = (this.processDataSync) ? new Date().getTime() : this.dataSyncJob;
-            this.processDataSync = false;
+        SessionData getData() {
+            return this.data;
         }
 
-        // session expiry
-        difference = now - this.expiryJob;
-        if (difference >= this.expiryJobTriggerInterval) {
-            this.expiryJobExecutor.execute(new SessionDataExpiryThread(this.sessionData, this.sessionExpiryTime));
-            this.expiryJob = new Date().getTime();
+        Set<String> getDeletedFields() {
+            return this.deletedFields;
+        }
+
+        int getSeconds() {
+            return this.seconds;
+        }
+    }
+
+    /** Session data weigher, which approximates the session data size in bytes. */
+    private static class SessionDataWeigher implements SegmentedLruCache.Weigher<SessionData> {
+
+        /** {@inheritDoc} */
+        @Override
+        public long weigh(String key, SessionData data) {
+            long weight = ENTRY_WEIGHT_OVERHEAD + 2L * key.length();
+            if (data.getValue() != null) {
+                weight += data.getValue().length;
+            }
+            if (data.getFields() != null) {
+                for (Map.Entry<String, byte[]> field : data.getFields().entrySet()) {
+                    weight += ENTRY_WEIGHT_OVERHEAD + 2L * field.getKey().length() + field.getValue().length;
+                }
+            }
+            return weight;
+        }
+    }
+
+    /** Session data job thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class JobThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-session-data-job-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
@@ -165,30 +648,19 @@ public class StandardDataCache extends RedisCache {
 
         private final Logger LOGGER = LoggerFactory.getLogger(SessionDataSyncThread.class);
 
-        private final DataCache dataCache;
-        private final int sessionExpiryTime;
-        private final Map<String, SessionData> sessionData;
+        private final StandardDataCache dataCache;
 
-        SessionDataSyncThread(DataCache dataCache, Map<String, SessionData> sessionData, int sessionExpiryTime) {
+        SessionDataSyncThread(StandardDataCache dataCache) {
             this.dataCache = dataCache;
-            this.sessionData = sessionData;
-            this.sessionExpiryTime = sessionExpiryTime;
         }
 
         /** {@inheritDoc} */
         @Override
         public void run() {
             try {
-                for (String key : this.sessionData.keySet()) {
-                    SessionData data = this.sessionData.get(key);
-                    if (data == null) {
-                        continue;
-                    }
-                    this.dataCache.set(key, data.getValue());
-                    this.dataCache.expire(key, this.sessionExpiryTime);
-                }
+                this.dataCache.syncSessionData();
             } catch (Exception ex) {
-                LOGGER.error("Error processing session data expiry thread", ex);
+                LOGGER.error("Error processing session data sync thread", ex);
             }
         }
     }
@@ -198,29 +670,18 @@ public class StandardDataCache extends RedisCache {
 
         private final Logger LOGGER = LoggerFactory.getLogger(SessionDataExpiryThread.class);
 
-        private final long expiry;
-        private final Map<String, SessionData> sessionData;
+        private final SegmentedLruCache<SessionData> sessionData;
 
-        SessionDataExpiryThread(Map<String, SessionData> sessionData, int sessionExpiryTime) {
+        SessionDataExpiryThread(SegmentedLruCache<SessionData> sessionData) {
             this.sessionData = sessionData;
-            this.expiry = TimeUnit.SECONDS.toMillis(sessionExpiryTime + 60);
         }
 
         /** {@inheritDoc} */
         @Override
         public void run() {
             try {
-                for (String key : this.sessionData.keySet()) {
-                    SessionData data = this.sessionData.get(key);
-                    if (data == null) {
-                        continue;
-                    }
-
-                    long difference = new Date().getTime() - data.getLastAccessedOn();
-                    if (difference >= this.expiry) {
-                        this.sessionData.remove(key);
-                    }
-                }
+                this.sessionData.removeExpired();
+                LOGGER.debug("Session data local cache stats: {}", this.sessionData);
             } catch (Exception ex) {
                 LOGGER.error("Error processing session data expiry thread", ex);
             }
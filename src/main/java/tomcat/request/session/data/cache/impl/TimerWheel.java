@@ -0,0 +1,125 @@
+package tomcat.request.session.data.cache.impl;
+
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel. Nodes are scheduled into a bucket by their deadline, with each level spanning a wider
+ * time range at a coarser resolution. On advance, only the buckets whose time has elapsed are visited; nodes not
+ * yet due are re-scheduled into a finer level, so scheduling, cancelling and expiry are O(1) amortized.
+ *
+ * Times are in milliseconds. Not thread safe, callers must synchronize.
+ */
+class TimerWheel {
+
+    /** Number of buckets per level. */
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+    /** Bucket duration per level, as power of two milliseconds: ~1 sec, ~1 min, ~70 min, ~37 hours, ~6 days. */
+    private static final int[] SHIFTS = {10, 16, 22, 27, 29};
+
+    private final Node[][] wheel;
+    private long time;
+
+    TimerWheel(long time) {
+        this.time = time;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            this.wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                Node sentinel = new Node();
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                this.wheel[i][j] = sentinel;
+            }
+        }
+    }
+
+    /** To schedule the node, replacing its current schedule. */
+    void schedule(Node node, long deadline) {
+        unschedule(node);
+        node.deadline = deadline;
+
+        long duration = deadline - this.time;
+        for (int i = 0; i < BUCKETS.length - 1; i++) {
+            if (duration < (1L << SHIFTS[i + 1])) {
+                long ticks = deadline >>> SHIFTS[i];
+                link(this.wheel[i][(int) (ticks & (BUCKETS[i] - 1))], node);
+                return;
+            }
+        }
+        link(this.wheel[BUCKETS.length - 1][0], node);
+    }
+
+    /** To remove the node schedule. */
+    void unschedule(Node node) {
+        if (node.next != null) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /** To advance the wheel to the given time and collect the nodes whose deadline has elapsed. */
+    void advance(long now, List<Node> expired) {
+        long previous = this.time;
+        if (now - previous <= 0) {
+            return;
+        }
+        this.time = now;
+
+        for (int i = 0; i < BUCKETS.length; i++) {
+            long previousTicks = previous >>> SHIFTS[i];
+            long delta = (now >>> SHIFTS[i]) - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(i, previousTicks, delta, expired);
+        }
+    }
+
+    /**
+     * To visit the elapsed buckets of the level, including the current tick bucket, so its nodes are moved to a
+     * finer level before their deadline.
+     */
+    private void expire(int level, long previousTicks, long delta, List<Node> expired) {
+        Node[] buckets = this.wheel[level];
+        int mask = buckets.length - 1;
+        int start = (int) (previousTicks & mask);
+        int end = start + (int) Math.min(delta + 1, buckets.length);
+
+        for (int i = start; i < end; i++) {
+            Node sentinel = buckets[i & mask];
+            Node node = sentinel.next;
+            sentinel.next = sentinel;
+            sentinel.prev = sentinel;
+
+            while (node != sentinel) {
+                Node next = node.next;
+                node.prev = null;
+                node.next = null;
+
+                if (node.deadline - this.time <= 0) {
+                    expired.add(node);
+                } else {
+                    schedule(node, node.deadline);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private void link(Node sentinel, Node node) {
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /** Timer wheel node. */
+    static class Node {
+        private Node prev;
+        private Node next;
+        private long deadline;
+    }
+}
@@ -1,88 +1,517 @@
 package tomcat.request.session.data.cache.impl.redis;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPoolConfig;
+import tomcat.request.session.data.cache.AsyncDataCache;
 import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
+import tomcat.request.session.data.cache.impl.CompletedFuture;
+import tomcat.request.session.data.cache.impl.NearCache;
+import tomcat.request.session.metrics.Gauge;
+import tomcat.request.session.metrics.Metric;
+import tomcat.request.session.metrics.SessionMetrics;
 import tomcat.request.session.model.Config;
 import tomcat.request.session.model.Config.RedisConfigType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
-public class RedisCache implements DataCache {
+public class RedisCache implements DataCache, AsyncDataCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCache.class);
+
+    private static final int ASYNC_QUEUE_SIZE = 1000;
+    private static final long ASYNC_THREAD_KEEP_ALIVE_TIME = 60000L;
 
     private DataCache dataCache;
+    private RedisCircuitBreaker circuitBreaker;
+
+    /** Non-blocking data-cache, if supported by the redis manager. */
+    private AsyncDataCache asyncDataCache;
+
+    /** Executes the non-blocking operations on the blocking redis managers. */
+    private ExecutorService asyncExecutor;
+
+    /** Recently read values, invalidated by redis client tracking. Null, if disabled. */
+    private NearCache nearCache;
+    private RedisInvalidationListener invalidationListener;
 
     public RedisCache(Config config) {
-        initialize(config);
+        this(config, SessionMetrics.DISABLED);
+    }
+
+    public RedisCache(Config config, SessionMetrics metrics) {
+        this(config, metrics, null);
+    }
+
+    /**
+     * To create the redis cache over the given data-cache, in place of the redis managers.
+     * ex: in-process data-cache, to benchmark the data-cache without redis.
+     */
+    protected RedisCache(Config config, SessionMetrics metrics, DataCache dataCache) {
+        initialize(config, metrics, dataCache);
     }
 
     /** {@inheritDoc} */
     @Override
     public byte[] set(String key, byte[] value) {
-        return this.dataCache.set(key, value);
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        byte[] retVal = this.dataCache.set(key, value);
+        this.circuitBreaker.onSuccess();
+        return retVal;
     }
 
     /** {@inheritDoc} */
     @Override
     public Long setnx(String key, byte[] value) {
-        return this.dataCache.setnx(key, value);
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.setnx(key, value);
+        this.circuitBreaker.onSuccess();
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        byte[] retVal = this.dataCache.setex(key, value, seconds);
+        this.circuitBreaker.onSuccess();
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.setnxex(key, value, seconds);
+        this.circuitBreaker.onSuccess();
+        return retVal;
     }
 
     /** {@inheritDoc} */
     @Override
     public Long expire(String key, int seconds) {
-        return this.dataCache.expire(key, seconds);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.expire(key, seconds);
+        this.circuitBreaker.onSuccess();
+        return retVal;
     }
 
     /** {@inheritDoc} */
     @Override
     public byte[] get(String key) {
-        return this.dataCache.get(key);
+        Object nearValue = getNearValue(key);
+        if (nearValue instanceof byte[]) {
+            return (byte[]) nearValue;
+        }
+
+        Object reservation = reserve(key);
+        byte[] retVal = null;
+        try {
+            this.circuitBreaker.beforeCall();
+            retVal = this.dataCache.get(key);
+            this.circuitBreaker.onSuccess();
+        } finally {
+            putNearValue(key, reservation, retVal);
+        }
+        return retVal;
     }
 
     /** {@inheritDoc} */
     @Override
     public Long delete(String key) {
-        return this.dataCache.delete(key);
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.delete(key);
+        this.circuitBreaker.onSuccess();
+        return retVal;
     }
 
     /** {@inheritDoc} */
     @Override
     public Boolean exists(String key) {
-        return this.dataCache.exists(key);
+        if (getNearValue(key) != null) {
+            return true;
+        }
+        this.circuitBreaker.beforeCall();
+        Boolean retVal = this.dataCache.exists(key);
+        this.circuitBreaker.onSuccess();
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.hsetnxex(key, fields, seconds);
+        this.circuitBreaker.onSuccess();
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        invalidate(key);
+        this.circuitBreaker.beforeCall();
+        Long retVal = this.dataCache.hupdate(key, fields, deletedFields, seconds);
+        this.circuitBreaker.onSuccess();
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, byte[]> hgetAll(String key) {
+        Object nearValue = getNearValue(key);
+        if (nearValue instanceof Map) {
+            return (Map<String, byte[]>) nearValue;
+        }
+
+        Object reservation = reserve(key);
+        Map<String, byte[]> retVal = null;
+        try {
+            this.circuitBreaker.beforeCall();
+            retVal = this.dataCache.hgetAll(key);
+            this.circuitBreaker.onSuccess();
+        } finally {
+            putNearValue(key, reservation, retVal);
+        }
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        for (DataCacheBatch.Operation operation : batch.getOperations()) {
+            invalidate(operation.getKey());
+        }
+        this.circuitBreaker.beforeCall();
+        this.dataCache.execute(batch);
+        this.circuitBreaker.onSuccess();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // the queued operations still complete, failing once the redis manager is closed.
+        this.asyncExecutor.shutdown();
+        this.circuitBreaker.shutdown();
+        if (this.invalidationListener != null) {
+            this.invalidationListener.shutdown();
+        }
+        this.dataCache.close();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setAsync(final String key, final byte[] value) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.setAsync(key, value);
+        }
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return set(key, value);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> setnxAsync(final String key, final byte[] value) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.setnxAsync(key, value);
+        }
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return setnx(key, value);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setexAsync(final String key, final byte[] value, final int seconds) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.setexAsync(key, value, seconds);
+        }
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return setex(key, value, seconds);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> expireAsync(final String key, final int seconds) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.expireAsync(key, seconds);
+        }
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return expire(key, seconds);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> getAsync(final String key) {
+        Object nearValue = getNearValue(key);
+        if (nearValue instanceof byte[]) {
+            return CompletedFuture.of((byte[]) nearValue);
+        }
+        if (useAsyncDataCache()) {
+            return putNearValue(key, reserve(key), this.asyncDataCache.getAsync(key));
+        }
+        return submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return get(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> deleteAsync(final String key) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.deleteAsync(key);
+        }
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return delete(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Boolean> existsAsync(final String key) {
+        if (useAsyncDataCache()) {
+            return this.asyncDataCache.existsAsync(key);
+        }
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return exists(key);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Future<Map<String, byte[]>> hgetAllAsync(final String key) {
+        Object nearValue = getNearValue(key);
+        if (nearValue instanceof Map) {
+            return CompletedFuture.of((Map<String, byte[]>) nearValue);
+        }
+        if (useAsyncDataCache()) {
+            return putNearValue(key, reserve(key), this.asyncDataCache.hgetAllAsync(key));
+        }
+        return submit(new Callable<Map<String, byte[]>>() {
+            @Override
+            public Map<String, byte[]> call() {
+                return hgetAll(key);
+            }
+        });
+    }
+
+    /** To get the near-cache value, null if not cached. */
+    private Object getNearValue(String key) {
+        return (this.nearCache != null) ? this.nearCache.get(key) : null;
+    }
+
+    /** To reserve the key in near-cache, before reading it from redis. */
+    private Object reserve(String key) {
+        return (this.nearCache != null) ? this.nearCache.reserve(key) : null;
     }
 
-    private void initialize(Config config) {
+    private void putNearValue(String key, Object reservation, Object value) {
+        if (this.nearCache != null) {
+            this.nearCache.put(key, reservation, value);
+        }
+    }
+
+    private <T> Future<T> putNearValue(String key, Object reservation, Future<T> future) {
+        return (this.nearCache != null) ? this.nearCache.putOnCompletion(key, reservation, future) : future;
+    }
+
+    /** To invalidate the key in near-cache, before modifying it in redis. */
+    private void invalidate(String key) {
+        if (this.nearCache != null) {
+            this.nearCache.invalidate(key);
+        }
+    }
+
+    /** To check the non-blocking operations are supported by the redis manager, and the circuit is not open. */
+    private boolean useAsyncDataCache() {
+        return this.asyncDataCache != null && this.circuitBreaker.getState() != RedisCircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * To execute the blocking operation asynchronously. If the executor queue is full, the operation is executed
+     * on the calling thread.
+     *
+     * @param operation - blocking data-cache operation.
+     * @return - Returns the future of the operation result.
+     */
+    protected <T> Future<T> submit(Callable<T> operation) {
+        FutureTask<T> task = new FutureTask<>(operation);
+        this.asyncExecutor.execute(task);
+        return task;
+    }
+
+    private void initialize(Config config, SessionMetrics metrics, DataCache dataCache) {
         Collection<?> nodes = getJedisNodes(config.getRedisHosts(), config.getRedisConfigType());
         JedisPoolConfig poolConfig = getPoolConfig(config);
+        this.circuitBreaker = new RedisCircuitBreaker(config.getRedisCircuitBreakerEnabled(),
+                config.getRedisCircuitBreakerFailureThreshold(),
+                config.getRedisCircuitBreakerOpenTime(),
+                config.getRedisRetryBackoffBaseTime(),
+                config.getRedisRetryBackoffMaxTime(),
+                metrics.getMetric("redis.retries", SessionMetrics.MICROSECONDS));
+        this.dataCache = (dataCache != null) ? dataCache : getRedisManager(config, nodes, poolConfig,
+                metrics.getMetric("redis.poolWait", SessionMetrics.MICROSECONDS));
+        if (this.dataCache instanceof RedisCircuitBreaker.Probe) {
+            this.circuitBreaker.setProbe((RedisCircuitBreaker.Probe) this.dataCache);
+        }
+        metrics.addGauge(new Gauge("redis.circuitState") {
+            /** Circuit state ordinal, 0 - closed, 1 - open, 2 - half-open. */
+            @Override
+            public double getValue() {
+                return circuitBreaker.getState().ordinal();
+            }
+        });
+
+        if (this.dataCache instanceof AsyncDataCache) {
+            this.asyncDataCache = (AsyncDataCache) this.dataCache;
+        }
+        // each blocking operation holds a pooled connection, so the threads are limited to the pool size.
+        int threads = Math.max(config.getRedisMaxActive(), 1);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, ASYNC_THREAD_KEEP_ALIVE_TIME,
+                TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(ASYNC_QUEUE_SIZE),
+                new AsyncThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        this.asyncExecutor = executor;
+
+        if (config.getRedisNearCacheEnabled() && dataCache == null) {
+            if (config.getRedisConfigType() != RedisConfigType.DEFAULT) {
+                LOGGER.warn("Redis near-cache is supported in standalone mode only, near-cache disabled..");
+                return;
+            }
+            this.nearCache = new NearCache(config.getRedisNearCacheMaxEntries(),
+                    config.getRedisNearCacheMaxSize() * 1024L * 1024L,
+                    config.getRedisNearCacheExpiryTime(),
+                    Arrays.asList(config.getRedisNearCacheKeyPrefixes().replaceAll("\\s", "").split(",")));
+            this.invalidationListener = new RedisInvalidationListener(((List<String>) nodes).get(0),
+                    Integer.parseInt(((List<String>) nodes).get(1)),
+                    config.getRedisPassword(),
+                    config.getRedisTimeout(),
+                    this.nearCache);
+            this.invalidationListener.start();
+            addNearCacheGauges(metrics, this.nearCache);
+        }
+    }
+
+    /** To add the near-cache hit and miss gauges. */
+    private static void addNearCacheGauges(SessionMetrics metrics, final NearCache nearCache) {
+        metrics.addGauge(new Gauge("nearCache.hits") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return nearCache.getHitCount();
+            }
+        });
+        metrics.addGauge(new Gauge("nearCache.misses") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                return nearCache.getMissCount();
+            }
+        });
+        metrics.addGauge(new Gauge("nearCache.hitRatio") {
+            /** {@inheritDoc} */
+            @Override
+            public double getValue() {
+                long hits = nearCache.getHitCount();
+                long total = hits + nearCache.getMissCount();
+                return (total == 0) ? 0 : (double) hits / total;
+            }
+        });
+    }
+
+    /** To get the redis manager, as per the redis config type. */
+    @SuppressWarnings("unchecked")
+    private DataCache getRedisManager(Config config, Collection<?> nodes, JedisPoolConfig poolConfig, Metric poolWaitMetric) {
+        RedisReadRouter readRouter = new RedisReadRouter(RedisReadRouter.ReadPolicy.of(config.getRedisReadPolicy()),
+                config.getRedisReadPolicyConsistencyWindow());
         switch (config.getRedisConfigType()) {
             case CLUSTER:
-                this.dataCache = new RedisClusterManager((Set<HostAndPort>) nodes,
+                return new RedisClusterManager((Set<HostAndPort>) nodes,
                         config.getRedisPassword(),
                         config.getRedisTimeout(),
-                        poolConfig);
-                break;
+                        poolConfig,
+                        config.getRedisClusterHashTagsEnabled(),
+                        readRouter,
+                        this.circuitBreaker,
+                        poolWaitMetric);
             case SENTINEL:
-                this.dataCache = new RedisSentinelManager((Set<String>) nodes,
+                return new RedisSentinelManager((Set<String>) nodes,
                         config.getRedisSentinelMaster(),
                         config.getRedisPassword(),
                         config.getRedisDatabase(),
                         config.getRedisTimeout(),
-                        poolConfig);
-                break;
+                        poolConfig,
+                        readRouter,
+                        this.circuitBreaker,
+                        poolWaitMetric);
             default:
-                this.dataCache = new RedisStandardManager(((List<String>) nodes).get(0),
+                if (config.getRedisMultiplexedEnabled()) {
+                    return new RedisMultiplexedManager(((List<String>) nodes).get(0),
+                            Integer.parseInt(((List<String>) nodes).get(1)),
+                            config.getRedisPassword(),
+                            config.getRedisDatabase(),
+                            config.getRedisTimeout(),
+                            config.getRedisMultiplexedConnections(),
+                            this.circuitBreaker);
+                }
+                return new RedisStandardManager(((List<String>) nodes).get(0),
                         Integer.parseInt(((List<String>) nodes).get(1)),
                         config.getRedisPassword(),
                         config.getRedisDatabase(),
                         config.getRedisTimeout(),
-                        poolConfig);
-                break;
+                        poolConfig,
+                        this.circuitBreaker,
+                        poolWaitMetric);
         }
     }
 
@@ -142,4 +571,18 @@ public class RedisCache implements DataCache {
         }
         return nodes;
     }
+
+    /** Data-cache async operation thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class AsyncThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-data-cache-async-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
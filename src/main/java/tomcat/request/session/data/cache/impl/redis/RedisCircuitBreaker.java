@@ -0,0 +1,208 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import tomcat.request.session.metrics.Metric;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis circuit breaker, shared by all the data-cache operations.
+ *
+ * Closed: operations are executed, and the failed attempts are retried with exponential backoff and jitter. After
+ * the configured number of consecutive failed attempts, the circuit opens.
+ * Open: operations fail fast without reaching redis, while a background probe checks redis after the open time.
+ * The open time doubles on each failed probe.
+ * Half-open: after a successful probe, operations are executed again; the first success closes the circuit and
+ * the first failure opens it again.
+ */
+class RedisCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private static final long MAX_OPEN_TIME = 30000L;
+    private static final String REDIS_CONN_FAILED_RETRY_MSG = "Redis connection failed, retrying...";
+
+    /** Circuit state. */
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /** To check redis is reachable. */
+    interface Probe {
+        boolean ping();
+    }
+
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openTime;
+    private final long backoffBaseTime;
+    private final long backoffMaxTime;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final ScheduledExecutorService probeExecutor;
+
+    /** Records the wait time before each retry, and the operations failed after the retries. */
+    private final Metric retryMetric;
+
+    private volatile State state = State.CLOSED;
+    private long currentOpenTime;
+    private Probe probe;
+
+    /**
+     * @param enabled          - true, to open the circuit on the consecutive failures.
+     * @param failureThreshold - number of consecutive failed attempts, to open the circuit.
+     * @param openTime         - time (in milliseconds) to wait before the first probe, once opened.
+     * @param backoffBaseTime  - wait time (in milliseconds) before the first retry.
+     * @param backoffMaxTime   - maximum wait time (in milliseconds) between the retries.
+     * @param retryMetric      - metric, to record the retries.
+     */
+    RedisCircuitBreaker(boolean enabled, int failureThreshold, long openTime, long backoffBaseTime, long backoffMaxTime,
+                        Metric retryMetric) {
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openTime = Math.max(openTime, 1);
+        this.currentOpenTime = this.openTime;
+        this.backoffBaseTime = Math.max(backoffBaseTime, 1);
+        this.backoffMaxTime = Math.max(backoffMaxTime, this.backoffBaseTime);
+        this.probeExecutor = enabled ? Executors.newSingleThreadScheduledExecutor(new ProbeThreadFactory()) : null;
+        this.retryMetric = retryMetric;
+    }
+
+    /** To set the probe, used to check redis while the circuit is open. */
+    void setProbe(Probe probe) {
+        this.probe = probe;
+    }
+
+    /** To get the circuit state. */
+    State getState() {
+        return this.state;
+    }
+
+    /** To check the operation can be executed. Fails fast, while the circuit is open. */
+    void beforeCall() {
+        if (this.state == State.OPEN) {
+            throw new JedisConnectionException("Redis circuit is open, failing fast");
+        }
+    }
+
+    /** To record the successful operation. */
+    void onSuccess() {
+        if (this.failures.get() != 0) {
+            this.failures.set(0);
+        }
+        if (this.state != State.CLOSED) {
+            close();
+        }
+    }
+
+    /**
+     * To record the failed attempt and to wait before the next attempt.
+     *
+     * @param tries      - failed attempts of the operation.
+     * @param maxRetries - maximum attempts of the operation.
+     * @param ex         - redis exception.
+     * @throws RuntimeException - the exception, if the attempts are exhausted or the circuit is open.
+     */
+    void onFailure(int tries, int maxRetries, RuntimeException ex) {
+        LOGGER.error(REDIS_CONN_FAILED_RETRY_MSG + tries);
+        if (this.enabled && (this.state == State.HALF_OPEN || this.failures.incrementAndGet() >= this.failureThreshold)) {
+            open();
+        }
+        if (tries >= maxRetries || this.state == State.OPEN) {
+            this.retryMetric.recordError();
+            throw ex;
+        }
+        try {
+            long backoffTime = getBackoffTime(tries);
+            this.retryMetric.record(TimeUnit.MILLISECONDS.toMicros(backoffTime));
+            Thread.sleep(backoffTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ex;
+        }
+    }
+
+    /** To stop the background probe. An open circuit is not probed anymore. */
+    synchronized void shutdown() {
+        if (this.probeExecutor != null) {
+            this.probeExecutor.shutdownNow();
+        }
+    }
+
+    /** To get the wait time before the next attempt; exponential, with jitter to spread the concurrent retries. */
+    long getBackoffTime(int tries) {
+        long backoffTime = this.backoffBaseTime << Math.min(tries - 1, 30);
+        backoffTime = (backoffTime <= 0) ? this.backoffMaxTime : Math.min(backoffTime, this.backoffMaxTime);
+        long halfTime = backoffTime / 2;
+        return halfTime + ThreadLocalRandom.current().nextLong(backoffTime - halfTime + 1);
+    }
+
+    private synchronized void open() {
+        if (this.state == State.OPEN) {
+            return;
+        }
+        this.state = State.OPEN;
+        LOGGER.warn("Redis circuit opened, operations fail fast for " + this.currentOpenTime + " ms..");
+        if (!this.probeExecutor.isShutdown()) {
+            this.probeExecutor.schedule(new ProbeTask(), this.currentOpenTime, TimeUnit.MILLISECONDS);
+        }
+        this.currentOpenTime = Math.min(this.currentOpenTime * 2, MAX_OPEN_TIME);
+    }
+
+    private synchronized void close() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.state = State.CLOSED;
+        this.currentOpenTime = this.openTime;
+        LOGGER.info("Redis circuit closed..");
+    }
+
+    /** Redis probe task, moves the open circuit to half-open once redis is reachable. */
+    private class ProbeTask implements Runnable {
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            boolean reachable;
+            try {
+                reachable = probe != null && probe.ping();
+            } catch (RuntimeException ex) {
+                reachable = false;
+            }
+
+            synchronized (RedisCircuitBreaker.this) {
+                if (reachable) {
+                    state = State.HALF_OPEN;
+                    failures.set(0);
+                    LOGGER.info("Redis is reachable, circuit half-opened..");
+                } else if (!probeExecutor.isShutdown()) {
+                    probeExecutor.schedule(this, currentOpenTime, TimeUnit.MILLISECONDS);
+                    currentOpenTime = Math.min(currentOpenTime * 2, MAX_OPEN_TIME);
+                }
+            }
+        }
+    }
+
+    /** Redis probe thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class ProbeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-circuit-probe-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,41 +1,81 @@
 package tomcat.request.session.data.cache.impl.redis;
 
 import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Protocol;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
 import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import tomcat.request.session.data.cache.DataCacheBatch;
+import tomcat.request.session.metrics.Metric;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 class RedisClusterManager extends RedisManager {
 
-    private final JedisCluster cluster;
+    private final SlotAwareJedisCluster cluster;
+    private final boolean hashTagsEnabled;
+    private final RedisReadRouter readRouter;
+    private final Set<Jedis> readOnlyConnections = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Jedis, Boolean>()));
+    private volatile SlotNodes[] slots;
 
     private static final int NUM_RETRIES = 30;
     private static final int DEFAULT_MAX_RE_DIRECTIONS = 5;
-    private static final long FAILURE_WAIT_TIME = 4000L;
+    private static final String PROBE_KEY = "redis-session-manager-probe";
 
     RedisClusterManager(Set<HostAndPort> nodes,
                         String password,
                         int timeout,
-                        JedisPoolConfig poolConfig) {
-        super(null, FAILURE_WAIT_TIME);
-        this.cluster = new JedisCluster(nodes, timeout, Protocol.DEFAULT_TIMEOUT, DEFAULT_MAX_RE_DIRECTIONS, password, poolConfig);
+                        JedisPoolConfig poolConfig,
+                        boolean hashTagsEnabled,
+                        RedisReadRouter readRouter,
+                        RedisCircuitBreaker circuitBreaker,
+                        Metric poolWaitMetric) {
+        super(null, circuitBreaker, poolWaitMetric);
+        this.cluster = new SlotAwareJedisCluster(nodes, timeout, Protocol.DEFAULT_TIMEOUT, DEFAULT_MAX_RE_DIRECTIONS, password, poolConfig);
+        this.hashTagsEnabled = hashTagsEnabled;
+        this.readRouter = readRouter;
+        this.readRouter.start(new Runnable() {
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                refreshSlotNodes();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean ping() {
+        return this.cluster.exists(PROBE_KEY) != null;
     }
 
     /** {@inheritDoc} */
     @Override
     public byte[] set(String key, byte[] value) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         String retVal = null;
         do {
             tries++;
             try {
-                retVal = this.cluster.set(key.getBytes(), value);
+                retVal = this.cluster.set(getKey(key), value);
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -47,13 +87,14 @@ class RedisClusterManager extends RedisManager {
     /** {@inheritDoc} */
     @Override
     public Long setnx(String key, byte[] value) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
             try {
-                retVal = this.cluster.setnx(key.getBytes(), value);
+                retVal = this.cluster.setnx(getKey(key), value);
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -62,16 +103,56 @@ class RedisClusterManager extends RedisManager {
         return retVal;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        onWrite(key);
+        int tries = 0;
+        boolean retry = true;
+        String retVal = null;
+        do {
+            tries++;
+            try {
+                retVal = this.cluster.setex(getKey(key), seconds, value);
+                retry = false;
+            } catch (JedisRedirectionException | JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return (retVal != null) ? retVal.getBytes() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        onWrite(key);
+        SetParams params = SetParams.setParams().nx().ex(seconds);
+        int tries = 0;
+        boolean retry = true;
+        String retVal = null;
+        do {
+            tries++;
+            try {
+                retVal = this.cluster.set(getKey(key), value, params);
+                retry = false;
+            } catch (JedisRedirectionException | JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return (retVal != null) ? 1L : 0L;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Long expire(String key, int seconds) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
             try {
-                retVal = this.cluster.expire(key, seconds);
+                retVal = this.cluster.expire(getKey(key), seconds);
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -89,7 +170,9 @@ class RedisClusterManager extends RedisManager {
         do {
             tries++;
             try {
-                retVal = this.cluster.get(key.getBytes());
+                try (Jedis replica = getReplica(key, tries)) {
+                    retVal = (replica != null) ? replica.get(getKey(key)) : this.cluster.get(getKey(key));
+                }
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -101,13 +184,14 @@ class RedisClusterManager extends RedisManager {
     /** {@inheritDoc} */
     @Override
     public Long delete(String key) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
             try {
-                retVal = this.cluster.del(key);
+                retVal = this.cluster.del(getKey(key));
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -125,7 +209,9 @@ class RedisClusterManager extends RedisManager {
         do {
             tries++;
             try {
-                retVal = this.cluster.exists(key);
+                try (Jedis replica = getReplica(key, tries)) {
+                    retVal = (replica != null) ? replica.exists(getKey(key)) : this.cluster.exists(getKey(key));
+                }
                 retry = false;
             } catch (JedisRedirectionException | JedisConnectionException ex) {
                 handleException(tries, ex);
@@ -133,4 +219,337 @@ class RedisClusterManager extends RedisManager {
         } while (retry && tries <= NUM_RETRIES);
         return retVal;
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        onWrite(key);
+        List<byte[]> keys = Collections.singletonList(getKey(key));
+        List<byte[]> args = getHashUpdateArgs(fields, Collections.<String>emptySet(), seconds);
+
+        int tries = 0;
+        boolean retry = true;
+        Long retVal = null;
+        do {
+            tries++;
+            try {
+                retVal = (Long) this.cluster.eval(HASH_CREATE_SCRIPT, keys, args);
+                retry = false;
+            } catch (JedisRedirectionException | JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        onWrite(key);
+        List<byte[]> keys = Collections.singletonList(getKey(key));
+        List<byte[]> args = getHashUpdateArgs(fields, deletedFields, seconds);
+
+        int tries = 0;
+        boolean retry = true;
+        Long retVal = null;
+        do {
+            tries++;
+            try {
+                retVal = (Long) this.cluster.eval(HASH_UPDATE_SCRIPT, keys, args);
+                retry = false;
+            } catch (JedisRedirectionException | JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        int tries = 0;
+        boolean retry = true;
+        Map<byte[], byte[]> retVal = null;
+        do {
+            tries++;
+            try {
+                try (Jedis replica = getReplica(key, tries)) {
+                    retVal = (replica != null) ? replica.hgetAll(getKey(key)) : this.cluster.hgetAll(getKey(key));
+                }
+                retry = false;
+            } catch (JedisRedirectionException | JedisConnectionException ex) {
+                handleException(tries, ex);
+            } catch (JedisDataException ex) {
+                if (!isWrongTypeException(ex)) {
+                    throw ex;
+                }
+                retry = false;
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return getHashFields(retVal);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The operations are grouped by the node serving their slot, and each node group is pipelined on a single
+     * connection, so the batch takes one round trip per node. Operations redirected by a resharding are executed
+     * again one by one, after refreshing the slot cache.
+     */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (DataCacheBatch.Operation operation : batch.getOperations()) {
+            onWrite(operation.getKey());
+        }
+
+        int tries = 0;
+        boolean retry = true;
+        List<DataCacheBatch.Operation> redirected = Collections.emptyList();
+        do {
+            tries++;
+            Map<String, NodeBatch> nodeBatches = new LinkedHashMap<>();
+            try {
+                for (DataCacheBatch.Operation operation : batch.getOperations()) {
+                    byte[] key = getKey(operation.getKey());
+                    Jedis jedis = this.cluster.getConnectionFromSlot(JedisClusterCRC16.getSlot(key));
+                    String node = jedis.getClient().getHost() + ":" + jedis.getClient().getPort();
+                    NodeBatch nodeBatch = nodeBatches.get(node);
+                    if (nodeBatch == null) {
+                        nodeBatches.put(node, new NodeBatch(jedis));
+                    } else {
+                        jedis.close();
+                    }
+                    nodeBatches.get(node).add(key, operation);
+                }
+
+                redirected = new ArrayList<>();
+                for (NodeBatch nodeBatch : nodeBatches.values()) {
+                    redirected.addAll(nodeBatch.execute());
+                }
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                this.cluster.renewSlotCache();
+                handleException(tries, ex);
+            } finally {
+                for (NodeBatch nodeBatch : nodeBatches.values()) {
+                    nodeBatch.jedis.close();
+                }
+            }
+        } while (retry && tries <= NUM_RETRIES);
+
+        if (!redirected.isEmpty()) {
+            this.cluster.renewSlotCache();
+            for (DataCacheBatch.Operation operation : redirected) {
+                execute(operation);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.readRouter.shutdown();
+        this.cluster.close();
+    }
+
+    /** To get the key, wrapped in a hash tag if enabled, so the keys derived from the same id share the slot. */
+    private byte[] getKey(String key) {
+        if (this.hashTagsEnabled && key.indexOf('{') < 0) {
+            key = "{" + key + "}";
+        }
+        return key.getBytes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void onWrite(String key) {
+        this.readRouter.onWrite(key);
+    }
+
+    /**
+     * To get a replica connection to read the key from, as per the read policy.
+     *
+     * @param key   - key to read.
+     * @param tries - read attempt, the retries are read from the master.
+     * @return - Returns the replica connection, null to read from the master.
+     */
+    private Jedis getReplica(String key, int tries) {
+        SlotNodes[] slots = this.slots;
+        if (slots == null || tries > 1) {
+            return null;
+        }
+        SlotNodes slotNodes = slots[JedisClusterCRC16.getSlot(getKey(key))];
+        if (slotNodes == null) {
+            return null;
+        }
+        RedisReadRouter.Node node = this.readRouter.select(key, slotNodes.master, slotNodes.replicas);
+        if (node == slotNodes.master) {
+            return null;
+        }
+
+        Jedis jedis = getResource(node.getPool());
+        if (this.readOnlyConnections.add(jedis)) {
+            try {
+                // replicas serve the reads of their slots only in read-only mode.
+                jedis.readonly();
+            } catch (RuntimeException ex) {
+                this.readOnlyConnections.remove(jedis);
+                jedis.close();
+                throw ex;
+            }
+        }
+        return jedis;
+    }
+
+    /** To refresh the master and replica nodes of the slots, and the node latencies. */
+    @SuppressWarnings("unchecked")
+    private void refreshSlotNodes() {
+        Map<String, JedisPool> pools = this.cluster.getClusterNodes();
+        List<Object> slotInfos = null;
+        for (JedisPool pool : pools.values()) {
+            try (Jedis jedis = pool.getResource()) {
+                slotInfos = jedis.clusterSlots();
+                break;
+            } catch (JedisException ex) {
+                // try the next node.
+            }
+        }
+        if (slotInfos == null) {
+            return;
+        }
+
+        SlotNodes[] newSlots = new SlotNodes[JedisCluster.HASHSLOTS];
+        Map<String, RedisReadRouter.Node> nodes = new HashMap<>();
+        for (Object slotInfo : slotInfos) {
+            List<Object> info = (List<Object>) slotInfo;
+            RedisReadRouter.Node master = getNode(nodes, pools, (List<Object>) info.get(2));
+            if (master == null) {
+                continue;
+            }
+            List<RedisReadRouter.Node> replicas = new ArrayList<>();
+            for (int i = 3; i < info.size(); i++) {
+                RedisReadRouter.Node replica = getNode(nodes, pools, (List<Object>) info.get(i));
+                if (replica != null) {
+                    replicas.add(replica);
+                }
+            }
+
+            SlotNodes slotNodes = new SlotNodes(master, replicas);
+            for (int slot = ((Long) info.get(0)).intValue(); slot <= ((Long) info.get(1)).intValue(); slot++) {
+                newSlots[slot] = slotNodes;
+            }
+        }
+
+        for (RedisReadRouter.Node node : nodes.values()) {
+            node.measureLatency();
+        }
+        this.slots = newSlots;
+    }
+
+    private static RedisReadRouter.Node getNode(Map<String, RedisReadRouter.Node> nodes,
+                                                Map<String, JedisPool> pools,
+                                                List<Object> hostInfo) {
+        String address = new String((byte[]) hostInfo.get(0)) + ":" + hostInfo.get(1);
+        RedisReadRouter.Node node = nodes.get(address);
+        if (node == null && pools.containsKey(address)) {
+            node = new RedisReadRouter.Node(address, pools.get(address));
+            nodes.put(address, node);
+        }
+        return node;
+    }
+
+    /** To execute the operation through the cluster client, which follows the redirections. */
+    private void execute(DataCacheBatch.Operation operation) {
+        switch (operation.getType()) {
+            case SET:
+                set(operation.getKey(), operation.getValue());
+                break;
+            case SETEX:
+                setex(operation.getKey(), operation.getValue(), operation.getSeconds());
+                break;
+            case HUPDATE:
+                hupdate(operation.getKey(), operation.getFields(), operation.getDeletedFields(), operation.getSeconds());
+                break;
+            case DELETE:
+                delete(operation.getKey());
+                break;
+        }
+    }
+
+    /** Master and replica nodes of a slot. */
+    private static class SlotNodes {
+        private final RedisReadRouter.Node master;
+        private final List<RedisReadRouter.Node> replicas;
+
+        SlotNodes(RedisReadRouter.Node master, List<RedisReadRouter.Node> replicas) {
+            this.master = master;
+            this.replicas = replicas;
+        }
+    }
+
+    /** Operations of a batch served by the same node. */
+    private static class NodeBatch {
+        private final Jedis jedis;
+        private final List<byte[]> keys = new ArrayList<>();
+        private final List<DataCacheBatch.Operation> operations = new ArrayList<>();
+
+        NodeBatch(Jedis jedis) {
+            this.jedis = jedis;
+        }
+
+        void add(byte[] key, DataCacheBatch.Operation operation) {
+            this.keys.add(key);
+            this.operations.add(operation);
+        }
+
+        /** To pipeline the operations. Returns the operations redirected to another node. */
+        List<DataCacheBatch.Operation> execute() {
+            Pipeline pipeline = this.jedis.pipelined();
+            for (int i = 0; i < this.operations.size(); i++) {
+                byte[] key = this.keys.get(i);
+                DataCacheBatch.Operation operation = this.operations.get(i);
+                switch (operation.getType()) {
+                    case SET:
+                        pipeline.set(key, operation.getValue());
+                        break;
+                    case SETEX:
+                        pipeline.setex(key, operation.getSeconds(), operation.getValue());
+                        break;
+                    case HUPDATE:
+                        pipeline.eval(HASH_UPDATE_SCRIPT, Collections.singletonList(key),
+                                getHashUpdateArgs(operation.getFields(), operation.getDeletedFields(), operation.getSeconds()));
+                        break;
+                    case DELETE:
+                        pipeline.del(key);
+                        break;
+                }
+            }
+
+            List<Object> results = pipeline.syncAndReturnAll();
+            List<DataCacheBatch.Operation> redirected = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i) instanceof JedisRedirectionException) {
+                    redirected.add(this.operations.get(i));
+                }
+            }
+            return redirected;
+        }
+    }
+
+    /** Cluster client, exposing the slot cache refresh for the pipelined operations. */
+    private static class SlotAwareJedisCluster extends JedisCluster {
+
+        SlotAwareJedisCluster(Set<HostAndPort> nodes, int connectionTimeout, int soTimeout, int maxAttempts,
+                              String password, JedisPoolConfig poolConfig) {
+            super(nodes, connectionTimeout, soTimeout, maxAttempts, password, poolConfig);
+        }
+
+        /** To refresh the slot to node mapping. */
+        void renewSlotCache() {
+            this.connectionHandler.renewSlotCache();
+        }
+    }
 }
@@ -0,0 +1,206 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.RedisInputStream;
+import redis.clients.jedis.util.RedisOutputStream;
+import tomcat.request.session.data.cache.impl.NearCache;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis invalidation listener, to invalidate the near-cache keys modified in redis.
+ *
+ * A dedicated connection enables the redis client tracking in broadcast mode, redirected to itself, and subscribes
+ * to the invalidation channel; redis then publishes the keys of the tracked prefixes modified by any client. Keys of
+ * the other prefixes, ex: keys of the other applications sharing the redis, are not published to this node. The near-cache is enabled
+ * only while the connection is up, and is cleared when the connection breaks, as the invalidations are missed
+ * until reconnected.
+ */
+class RedisInvalidationListener implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisInvalidationListener.class);
+
+    private static final long RECONNECT_WAIT_TIME = 1000L;
+    private static final String INVALIDATION_CHANNEL = "__redis__:invalidate";
+    private static final String MESSAGE = "message";
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int timeout;
+    private final NearCache nearCache;
+
+    private volatile Socket socket;
+    private RedisOutputStream outputStream;
+    private RedisInputStream inputStream;
+    private volatile boolean stopped;
+    private Thread listener;
+
+    /**
+     * @param host      - redis host.
+     * @param port      - redis port.
+     * @param password  - redis password, null if not required.
+     * @param timeout   - connection timeout in milliseconds.
+     * @param nearCache - near-cache, to invalidate.
+     */
+    RedisInvalidationListener(String host, int port, String password, int timeout, NearCache nearCache) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.timeout = timeout;
+        this.nearCache = nearCache;
+    }
+
+    /** To start listening to the invalidations. */
+    void start() {
+        this.listener = new Thread(this, "redis-near-cache-invalidation");
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    /** To stop listening to the invalidations. The connection is closed, which ends the blocked read. */
+    void shutdown() {
+        this.stopped = true;
+        if (this.listener != null) {
+            this.listener.interrupt();
+        }
+        Socket socket = this.socket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                // skip
+            }
+        }
+    }
+
+    /** Listens to the invalidations, reconnecting on failures. */
+    @Override
+    public void run() {
+        while (!this.stopped && !Thread.currentThread().isInterrupted()) {
+            try {
+                connect();
+                this.nearCache.setEnabled(true);
+                LOGGER.info("Redis near-cache enabled..");
+                listen();
+            } catch (JedisConnectionException ex) {
+                if (this.stopped) {
+                    return;
+                }
+                LOGGER.error("Redis near-cache invalidation connection failed, near-cache disabled..", ex);
+            } catch (JedisDataException ex) {
+                // client tracking requires redis 6 or later, and the tracked prefixes must not overlap.
+                LOGGER.error("Redis client tracking is not enabled, near-cache disabled..", ex);
+                return;
+            } finally {
+                this.nearCache.setEnabled(false);
+                close();
+            }
+
+            try {
+                Thread.sleep(RECONNECT_WAIT_TIME);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void connect() {
+        this.socket = new Socket();
+        if (this.stopped) {
+            throw new JedisConnectionException("Redis near-cache invalidation listener is stopped");
+        }
+        try {
+            this.socket.setKeepAlive(true);
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(new InetSocketAddress(this.host, this.port), this.timeout);
+            this.socket.setSoTimeout(this.timeout);
+            this.outputStream = new RedisOutputStream(this.socket.getOutputStream());
+            this.inputStream = new RedisInputStream(this.socket.getInputStream());
+        } catch (IOException ex) {
+            throw new JedisConnectionException(ex);
+        }
+
+        if (this.password != null) {
+            call(Protocol.Command.AUTH, this.password.getBytes());
+        }
+        Long clientId = (Long) call(Protocol.Command.CLIENT, "ID".getBytes());
+        List<byte[]> args = new ArrayList<>();
+        args.add("TRACKING".getBytes());
+        args.add("ON".getBytes());
+        args.add("REDIRECT".getBytes());
+        args.add(String.valueOf(clientId).getBytes());
+        args.add("BCAST".getBytes());
+        for (String prefix : this.nearCache.getKeyPrefixes()) {
+            args.add("PREFIX".getBytes());
+            args.add(prefix.getBytes());
+        }
+        args.add("NOLOOP".getBytes());
+        call(Protocol.Command.CLIENT, args.toArray(new byte[args.size()][]));
+        call(Protocol.Command.SUBSCRIBE, INVALIDATION_CHANNEL.getBytes());
+
+        // invalidations are awaited indefinitely, the broken connection is detected by the keep-alive.
+        try {
+            this.socket.setSoTimeout(0);
+        } catch (IOException ex) {
+            throw new JedisConnectionException(ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void listen() {
+        while (!this.stopped && !Thread.currentThread().isInterrupted()) {
+            Object reply = Protocol.read(this.inputStream);
+            if (!(reply instanceof List)) {
+                continue;
+            }
+            List<Object> message = (List<Object>) reply;
+            if (message.size() < 3 || !MESSAGE.equals(new String((byte[]) message.get(0)))) {
+                continue;
+            }
+
+            Object keys = message.get(2);
+            if (keys == null) {
+                // redis flushed the database, or the tracking table is full.
+                this.nearCache.invalidateAll();
+            } else if (keys instanceof List) {
+                for (Object key : (List<Object>) keys) {
+                    this.nearCache.invalidate(new String((byte[]) key));
+                }
+            } else {
+                this.nearCache.invalidate(new String((byte[]) keys));
+            }
+        }
+    }
+
+    private Object call(ProtocolCommand command, byte[]... args) {
+        try {
+            Protocol.sendCommand(this.outputStream, command, args);
+            this.outputStream.flush();
+        } catch (IOException ex) {
+            throw new JedisConnectionException(ex);
+        }
+        return Protocol.read(this.inputStream);
+    }
+
+    private void close() {
+        if (this.socket == null) {
+            return;
+        }
+        try {
+            this.socket.close();
+        } catch (IOException ex) {
+            // skip
+        }
+        this.socket = null;
+    }
+}
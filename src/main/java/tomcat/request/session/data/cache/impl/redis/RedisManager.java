@@ -1,37 +1,81 @@
 package tomcat.request.session.data.cache.impl.redis;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.SetParams;
 import redis.clients.jedis.util.Pool;
 import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
+import tomcat.request.session.metrics.Metric;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
-abstract class RedisManager implements DataCache {
+abstract class RedisManager implements DataCache, RedisCircuitBreaker.Probe {
 
     private static final int NUM_RETRIES = 3;
-    private static final Logger LOGGER = LoggerFactory.getLogger(RedisManager.class);
 
-    private static final String REDIS_CONN_FAILED_RETRY_MSG = "Jedis connection failed, retrying...";
+    private static final String REDIS_WRONG_TYPE_ERROR_PREFIX = "WRONGTYPE";
+
+    /**
+     * Hash update script.
+     * KEYS[1] - hash key, ARGV[1] - expiry seconds, ARGV[2] - number of fields to set,
+     * followed by the field/value pairs to set and the fields to remove.
+     */
+    static final byte[] HASH_UPDATE_SCRIPT = ("if redis.call('TYPE', KEYS[1]).ok ~= 'hash' then redis.call('DEL', KEYS[1]) end "
+            + "local count = tonumber(ARGV[2]) "
+            + "for i = 3, 2 + (count * 2), 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+            + "for i = 3 + (count * 2), #ARGV do redis.call('HDEL', KEYS[1], ARGV[i]) end "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[1]) "
+            + "return count").getBytes();
+
+    /**
+     * Hash create script, sets the hash fields with expiry only if the key not exists.
+     * KEYS[1] - hash key, ARGV[1] - expiry seconds, ARGV[2] - number of fields to set, followed by the field/value pairs.
+     */
+    static final byte[] HASH_CREATE_SCRIPT = ("if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end "
+            + "local count = tonumber(ARGV[2]) "
+            + "for i = 3, 2 + (count * 2), 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[1]) "
+            + "return 1").getBytes();
 
     private final Pool<Jedis> pool;
-    private final long failureWaitTime;
+    private final RedisCircuitBreaker circuitBreaker;
 
-    RedisManager(Pool<Jedis> pool, long failureWaitTime) {
+    /** Records the time waited to borrow a connection from the pool. */
+    private final Metric poolWaitMetric;
+
+    RedisManager(Pool<Jedis> pool, RedisCircuitBreaker circuitBreaker, Metric poolWaitMetric) {
         this.pool = pool;
-        this.failureWaitTime = failureWaitTime;
+        this.circuitBreaker = circuitBreaker;
+        this.poolWaitMetric = poolWaitMetric;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean ping() {
+        try (Jedis jedis = getResource(this.pool)) {
+            return jedis.ping() != null;
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     public byte[] set(String key, byte[] value) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         String retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(this.pool)) {
                 retVal = jedis.set(key.getBytes(), value);
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -44,12 +88,13 @@ abstract class RedisManager implements DataCache {
     /** {@inheritDoc} */
     @Override
     public Long setnx(String key, byte[] value) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(this.pool)) {
                 retVal = jedis.setnx(key.getBytes(), value);
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -59,15 +104,55 @@ abstract class RedisManager implements DataCache {
         return retVal;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        onWrite(key);
+        int tries = 0;
+        boolean retry = true;
+        String retVal = null;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(this.pool)) {
+                retVal = jedis.setex(key.getBytes(), seconds, value);
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return (retVal != null) ? retVal.getBytes() : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        onWrite(key);
+        SetParams params = SetParams.setParams().nx().ex(seconds);
+        int tries = 0;
+        boolean retry = true;
+        String retVal = null;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(this.pool)) {
+                retVal = jedis.set(key.getBytes(), value, params);
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return (retVal != null) ? 1L : 0L;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Long expire(String key, int seconds) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(this.pool)) {
                 retVal = jedis.expire(key, seconds);
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -85,7 +170,7 @@ abstract class RedisManager implements DataCache {
         byte[] retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(getReadPool(key, tries))) {
                 retVal = jedis.get(key.getBytes());
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -98,12 +183,13 @@ abstract class RedisManager implements DataCache {
     /** {@inheritDoc} */
     @Override
     public Long delete(String key) {
+        onWrite(key);
         int tries = 0;
         boolean retry = true;
         Long retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(this.pool)) {
                 retVal = jedis.del(key);
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -121,7 +207,7 @@ abstract class RedisManager implements DataCache {
         Boolean retVal = null;
         do {
             tries++;
-            try (Jedis jedis = this.pool.getResource()) {
+            try (Jedis jedis = getResource(getReadPool(key, tries))) {
                 retVal = jedis.exists(key);
                 retry = false;
             } catch (JedisConnectionException ex) {
@@ -131,21 +217,202 @@ abstract class RedisManager implements DataCache {
         return retVal;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        onWrite(key);
+        List<byte[]> keys = Collections.singletonList(key.getBytes());
+        List<byte[]> args = getHashUpdateArgs(fields, Collections.<String>emptySet(), seconds);
+
+        int tries = 0;
+        boolean retry = true;
+        Long retVal = null;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(this.pool)) {
+                retVal = (Long) jedis.eval(HASH_CREATE_SCRIPT, keys, args);
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        onWrite(key);
+        List<byte[]> keys = Collections.singletonList(key.getBytes());
+        List<byte[]> args = getHashUpdateArgs(fields, deletedFields, seconds);
+
+        int tries = 0;
+        boolean retry = true;
+        Long retVal = null;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(this.pool)) {
+                retVal = (Long) jedis.eval(HASH_UPDATE_SCRIPT, keys, args);
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return retVal;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        int tries = 0;
+        boolean retry = true;
+        Map<byte[], byte[]> retVal = null;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(getReadPool(key, tries))) {
+                retVal = jedis.hgetAll(key.getBytes());
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            } catch (JedisDataException ex) {
+                if (!isWrongTypeException(ex)) {
+                    throw ex;
+                }
+                retry = false;
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return getHashFields(retVal);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (DataCacheBatch.Operation operation : batch.getOperations()) {
+            onWrite(operation.getKey());
+        }
+
+        int tries = 0;
+        boolean retry = true;
+        do {
+            tries++;
+            try (Jedis jedis = getResource(this.pool)) {
+                Pipeline pipeline = jedis.pipelined();
+                for (DataCacheBatch.Operation operation : batch.getOperations()) {
+                    byte[] key = operation.getKey().getBytes();
+                    switch (operation.getType()) {
+                        case SET:
+                            pipeline.set(key, operation.getValue());
+                            break;
+                        case SETEX:
+                            pipeline.setex(key, operation.getSeconds(), operation.getValue());
+                            break;
+                        case HUPDATE:
+                            pipeline.eval(HASH_UPDATE_SCRIPT, Collections.singletonList(key),
+                                    getHashUpdateArgs(operation.getFields(), operation.getDeletedFields(), operation.getSeconds()));
+                            break;
+                        case DELETE:
+                            pipeline.del(key);
+                            break;
+                    }
+                }
+                pipeline.sync();
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.pool.close();
+    }
+
+    /**
+     * To get hash update script arguments.
+     *
+     * @param fields        - hash fields to be set.
+     * @param deletedFields - hash fields to be removed.
+     * @param seconds       - expiration time in seconds.
+     * @return - Returns the script arguments.
+     */
+    static List<byte[]> getHashUpdateArgs(Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        List<byte[]> args = new ArrayList<>(2 + (fields.size() * 2) + deletedFields.size());
+        args.add(String.valueOf(seconds).getBytes());
+        args.add(String.valueOf(fields.size()).getBytes());
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            args.add(field.getKey().getBytes());
+            args.add(field.getValue());
+        }
+        for (String field : deletedFields) {
+            args.add(field.getBytes());
+        }
+        return args;
+    }
+
+    /**
+     * To get hash fields.
+     *
+     * @param fields - raw hash fields.
+     * @return - Returns the hash fields keyed by field name.
+     */
+    static Map<String, byte[]> getHashFields(Map<byte[], byte[]> fields) {
+        Map<String, byte[]> hashFields = new HashMap<>();
+        if (fields != null) {
+            for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+                hashFields.put(new String(field.getKey()), field.getValue());
+            }
+        }
+        return hashFields;
+    }
+
     /**
-     * To handle jedis exception.
+     * To check the data exception is raised for operation against a key holding the wrong kind of value.
+     *
+     * @param ex - jedis data exception.
+     * @return - Returns true, if the key holds the wrong kind of value.
+     */
+    static boolean isWrongTypeException(JedisDataException ex) {
+        return ex.getMessage() != null && ex.getMessage().startsWith(REDIS_WRONG_TYPE_ERROR_PREFIX);
+    }
+
+    /**
+     * To handle jedis exception. Waits with exponential backoff before the next attempt, the exception is raised
+     * if the attempts are exhausted or the circuit is open.
      *
      * @param tries - exception occurred in tries.
      * @param ex    - jedis exception.
      */
     void handleException(int tries, RuntimeException ex) {
-        LOGGER.error(REDIS_CONN_FAILED_RETRY_MSG + tries);
-        if (tries == NUM_RETRIES) {
-            throw ex;
-        }
+        this.circuitBreaker.onFailure(tries, NUM_RETRIES, ex);
+    }
+
+    /**
+     * To get the pool to read the key from.
+     *
+     * @param key   - key to read.
+     * @param tries - read attempt.
+     * @return - Returns the pool, to read the key from.
+     */
+    Pool<Jedis> getReadPool(String key, int tries) {
+        return this.pool;
+    }
+
+    /** To borrow a connection from the pool, recording the time waited for it. */
+    Jedis getResource(Pool<Jedis> pool) {
+        long start = System.nanoTime();
         try {
-            Thread.sleep(this.failureWaitTime);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            return pool.getResource();
+        } finally {
+            this.poolWaitMetric.recordTime(start);
         }
     }
+
+    /** To record the key write, before it is written. */
+    void onWrite(String key) {
+    }
 }
@@ -0,0 +1,186 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.RedisInputStream;
+import redis.clients.jedis.util.RedisOutputStream;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Redis connection shared by the concurrent callers.
+ *
+ * Commands are written to the socket in the order they are sent, without waiting for the replies of the previous
+ * commands, and a reader thread completes the pending responses in the same order as the replies arrive. Once
+ * broken, the connection fails its pending responses and is not reused.
+ *
+ * The reader waits for the replies up to the connection timeout. If no reply arrives within the timeout while
+ * responses are pending, the peer is considered dead and the connection is broken; an idle connection sends a PING
+ * instead, so a dead peer is detected even when no caller is waiting.
+ */
+class RedisMultiplexedConnection implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisMultiplexedConnection.class);
+
+    private final Socket socket;
+    private final RedisOutputStream outputStream;
+    private final RedisInputStream inputStream;
+    private final Queue<RedisResponse<?>> responses = new ArrayDeque<>();
+    private volatile boolean broken;
+
+    /**
+     * To open the connection, authenticate and select the database.
+     *
+     * @param host     - redis host.
+     * @param port     - redis port.
+     * @param password - redis password, null if not required.
+     * @param database - redis database.
+     * @param timeout  - connection timeout in milliseconds.
+     * @param name     - reader thread name.
+     */
+    RedisMultiplexedConnection(String host, int port, String password, int database, int timeout, String name) {
+        this.socket = new Socket();
+        try {
+            this.socket.setReuseAddress(true);
+            this.socket.setKeepAlive(true);
+            this.socket.setTcpNoDelay(true);
+            this.socket.connect(new InetSocketAddress(host, port), timeout);
+            this.socket.setSoTimeout(timeout);
+            this.outputStream = new RedisOutputStream(this.socket.getOutputStream());
+            this.inputStream = new RedisInputStream(this.socket.getInputStream());
+
+            if (password != null) {
+                call(Protocol.Command.AUTH, password.getBytes());
+            }
+            if (database != Protocol.DEFAULT_DATABASE) {
+                call(Protocol.Command.SELECT, Protocol.toByteArray(database));
+            }
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw (ex instanceof RuntimeException) ? (RuntimeException) ex : new JedisConnectionException(ex);
+        }
+
+        Thread reader = new Thread(this, name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * To send the command.
+     *
+     * @param response - pending response, to be completed with the command reply.
+     * @param command  - redis command.
+     * @param args     - command arguments.
+     * @return - Returns the pending response.
+     */
+    <T> RedisResponse<T> send(RedisResponse<T> response, ProtocolCommand command, byte[]... args) {
+        synchronized (this.responses) {
+            if (this.broken) {
+                throw new JedisConnectionException("Redis connection is broken");
+            }
+            response.setConnection(this);
+            this.responses.add(response);
+            try {
+                Protocol.sendCommand(this.outputStream, command, args);
+                this.outputStream.flush();
+            } catch (IOException | JedisConnectionException ex) {
+                fail(new JedisConnectionException(ex));
+            }
+        }
+        return response;
+    }
+
+    /** To check the connection is broken. */
+    boolean isBroken() {
+        return this.broken;
+    }
+
+    /** To close the connection, failing the pending responses. */
+    void close() {
+        fail(new JedisConnectionException("Redis connection is closed"));
+    }
+
+    /** Reads the replies and completes the pending responses in order. */
+    @Override
+    public void run() {
+        while (!this.broken) {
+            Object reply;
+            JedisDataException error = null;
+            try {
+                reply = Protocol.read(this.inputStream);
+            } catch (JedisConnectionException ex) {
+                if (ex.getCause() instanceof SocketTimeoutException && sendHeartbeat()) {
+                    continue;
+                }
+                if (!this.broken) {
+                    LOGGER.error("Redis connection failed..", ex);
+                }
+                fail(ex);
+                return;
+            } catch (JedisDataException ex) {
+                reply = null;
+                error = ex;
+            }
+
+            RedisResponse<?> response;
+            synchronized (this.responses) {
+                response = this.responses.poll();
+            }
+            if (response == null) {
+                continue;
+            }
+            if (error != null) {
+                response.completeError(error);
+            } else {
+                response.complete(reply);
+            }
+        }
+    }
+
+    /**
+     * To send the heartbeat on the idle connection, whose read is timed out.
+     *
+     * @return - Returns false, if responses are pending, so their replies are not received within the timeout.
+     */
+    private boolean sendHeartbeat() {
+        synchronized (this.responses) {
+            if (this.broken || !this.responses.isEmpty()) {
+                return false;
+            }
+            // no reply is pending, so the timed out read has not consumed any reply data.
+            send(new RedisResponse<>(RedisResponse.BYTES), Protocol.Command.PING);
+            return true;
+        }
+    }
+
+    private void call(ProtocolCommand command, byte[]... args) throws IOException {
+        Protocol.sendCommand(this.outputStream, command, args);
+        this.outputStream.flush();
+        Protocol.read(this.inputStream);
+    }
+
+    /** To close the broken connection, failing the pending responses. */
+    void fail(JedisConnectionException ex) {
+        synchronized (this.responses) {
+            this.broken = true;
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                // skip
+            }
+            RedisResponse<?> response;
+            while ((response = this.responses.poll()) != null) {
+                response.fail(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import tomcat.request.session.data.cache.AsyncDataCache;
+import tomcat.request.session.data.cache.DataCache;
+import tomcat.request.session.data.cache.DataCacheBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis data-cache, sharing a few multiplexed connections between all the callers instead of a connection pool.
+ *
+ * Commands of the concurrent callers are pipelined on the shared connections, so the callers don't wait for a free
+ * connection. The non-blocking operations return the pending response, without waiting for the reply.
+ */
+class RedisMultiplexedManager implements DataCache, AsyncDataCache, RedisCircuitBreaker.Probe {
+
+    private static final int NUM_RETRIES = 3;
+    private static final byte[] NX = "NX".getBytes();
+    private static final byte[] EX = "EX".getBytes();
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int database;
+    private final int timeout;
+    private final RedisMultiplexedConnection[] connections;
+    private final AtomicInteger counter = new AtomicInteger();
+    private final RedisCircuitBreaker circuitBreaker;
+    private volatile boolean closed;
+
+    RedisMultiplexedManager(String host, int port, String password, int database, int timeout, int connections,
+                            RedisCircuitBreaker circuitBreaker) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.database = database;
+        this.timeout = timeout;
+        this.connections = new RedisMultiplexedConnection[Math.max(1, connections)];
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Pings on a new connection, so the probe doesn't depend on the shared connections, which may be stuck on a dead
+     * peer.
+     */
+    @Override
+    public boolean ping() {
+        RedisMultiplexedConnection connection = new RedisMultiplexedConnection(this.host, this.port, this.password,
+                this.database, this.timeout, "redis-connection-probe");
+        try {
+            return connection.send(new RedisResponse<>(RedisResponse.BYTES), Protocol.Command.PING).await(this.timeout) != null;
+        } finally {
+            connection.close();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setAsync(String key, byte[] value) {
+        return send(RedisResponse.BYTES, Protocol.Command.SET, key.getBytes(), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> setnxAsync(String key, byte[] value) {
+        return send(RedisResponse.LONG, Protocol.Command.SETNX, key.getBytes(), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> setexAsync(String key, byte[] value, int seconds) {
+        return send(RedisResponse.BYTES, Protocol.Command.SETEX, key.getBytes(), Protocol.toByteArray(seconds), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> expireAsync(String key, int seconds) {
+        return send(RedisResponse.LONG, Protocol.Command.EXPIRE, key.getBytes(), Protocol.toByteArray(seconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<byte[]> getAsync(String key) {
+        return send(RedisResponse.BYTES, Protocol.Command.GET, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Long> deleteAsync(String key) {
+        return send(RedisResponse.LONG, Protocol.Command.DEL, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Boolean> existsAsync(String key) {
+        return send(RedisResponse.BOOLEAN, Protocol.Command.EXISTS, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Future<Map<String, byte[]>> hgetAllAsync(String key) {
+        return send(RedisResponse.HASH_FIELDS, Protocol.Command.HGETALL, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] set(String key, byte[] value) {
+        return call(RedisResponse.BYTES, Protocol.Command.SET, key.getBytes(), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnx(String key, byte[] value) {
+        return call(RedisResponse.LONG, Protocol.Command.SETNX, key.getBytes(), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] setex(String key, byte[] value, int seconds) {
+        return call(RedisResponse.BYTES, Protocol.Command.SETEX, key.getBytes(), Protocol.toByteArray(seconds), value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long setnxex(String key, byte[] value, int seconds) {
+        return call(RedisResponse.CREATED, Protocol.Command.SET, key.getBytes(), value,
+                NX, EX, Protocol.toByteArray(seconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long expire(String key, int seconds) {
+        return call(RedisResponse.LONG, Protocol.Command.EXPIRE, key.getBytes(), Protocol.toByteArray(seconds));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] get(String key) {
+        return call(RedisResponse.BYTES, Protocol.Command.GET, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long delete(String key) {
+        return call(RedisResponse.LONG, Protocol.Command.DEL, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Boolean exists(String key) {
+        return call(RedisResponse.BOOLEAN, Protocol.Command.EXISTS, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+        return call(RedisResponse.LONG, Protocol.Command.EVAL, getScriptArgs(RedisManager.HASH_CREATE_SCRIPT, key,
+                RedisManager.getHashUpdateArgs(fields, Collections.<String>emptySet(), seconds)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        return call(RedisResponse.LONG, Protocol.Command.EVAL, getScriptArgs(RedisManager.HASH_UPDATE_SCRIPT, key,
+                RedisManager.getHashUpdateArgs(fields, deletedFields, seconds)));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, byte[]> hgetAll(String key) {
+        return call(RedisResponse.HASH_FIELDS, Protocol.Command.HGETALL, key.getBytes());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void execute(DataCacheBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int tries = 0;
+        boolean retry = true;
+        do {
+            tries++;
+            try {
+                RedisMultiplexedConnection connection = getConnection();
+                List<RedisResponse<?>> responses = new ArrayList<>(batch.size());
+                for (DataCacheBatch.Operation operation : batch.getOperations()) {
+                    byte[] key = operation.getKey().getBytes();
+                    switch (operation.getType()) {
+                        case SET:
+                            responses.add(connection.send(new RedisResponse<>(RedisResponse.BYTES),
+                                    Protocol.Command.SET, key, operation.getValue()));
+                            break;
+                        case SETEX:
+                            responses.add(connection.send(new RedisResponse<>(RedisResponse.BYTES),
+                                    Protocol.Command.SETEX, key, Protocol.toByteArray(operation.getSeconds()), operation.getValue()));
+                            break;
+                        case HUPDATE:
+                            responses.add(connection.send(new RedisResponse<>(RedisResponse.LONG), Protocol.Command.EVAL,
+                                    getScriptArgs(RedisManager.HASH_UPDATE_SCRIPT, operation.getKey(),
+                                            RedisManager.getHashUpdateArgs(operation.getFields(), operation.getDeletedFields(), operation.getSeconds()))));
+                            break;
+                        case DELETE:
+                            responses.add(connection.send(new RedisResponse<>(RedisResponse.LONG), Protocol.Command.DEL, key));
+                            break;
+                    }
+                }
+                for (RedisResponse<?> response : responses) {
+                    try {
+                        response.await(this.timeout);
+                    } catch (JedisDataException ex) {
+                        // same as the pipeline sync, the command errors are not raised.
+                    }
+                }
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The connection sockets are closed, which stops their reader threads.
+     */
+    @Override
+    public void close() {
+        synchronized (this.connections) {
+            this.closed = true;
+            for (RedisMultiplexedConnection connection : this.connections) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    /** To send the command and wait for the response, retrying on the connection failures. */
+    private <T> T call(RedisResponse.Builder<T> builder, ProtocolCommand command, byte[]... args) {
+        int tries = 0;
+        boolean retry = true;
+        T retVal = null;
+        do {
+            tries++;
+            try {
+                retVal = getConnection().send(new RedisResponse<>(builder), command, args).await(this.timeout);
+                retry = false;
+            } catch (JedisConnectionException ex) {
+                handleException(tries, ex);
+            }
+        } while (retry && tries <= NUM_RETRIES);
+        return retVal;
+    }
+
+    /** To send the command, without waiting for the response. */
+    private <T> RedisResponse<T> send(RedisResponse.Builder<T> builder, ProtocolCommand command, byte[]... args) {
+        RedisResponse<T> response = new RedisResponse<>(builder);
+        try {
+            getConnection().send(response, command, args);
+        } catch (JedisConnectionException ex) {
+            response.fail(ex);
+        }
+        return response;
+    }
+
+    /** To get the next connection in round robin, reconnecting if broken. */
+    private RedisMultiplexedConnection getConnection() {
+        int index = (this.counter.getAndIncrement() & Integer.MAX_VALUE) % this.connections.length;
+        RedisMultiplexedConnection connection = this.connections[index];
+        if (connection != null && !connection.isBroken()) {
+            return connection;
+        }
+
+        synchronized (this.connections) {
+            if (this.closed) {
+                throw new JedisConnectionException("Redis data-cache is closed");
+            }
+            connection = this.connections[index];
+            if (connection == null || connection.isBroken()) {
+                connection = new RedisMultiplexedConnection(this.host, this.port, this.password, this.database,
+                        this.timeout, "redis-connection-reader-" + index);
+                this.connections[index] = connection;
+            }
+            return connection;
+        }
+    }
+
+    /** To get script command arguments. */
+    private static byte[][] getScriptArgs(byte[] script, String key, List<byte[]> scriptArgs) {
+        List<byte[]> args = new ArrayList<>(3 + scriptArgs.size());
+        args.add(script);
+        args.add(Protocol.toByteArray(1));
+        args.add(key.getBytes());
+        args.addAll(scriptArgs);
+        return args.toArray(new byte[args.size()][]);
+    }
+
+    /**
+     * To handle redis connection exception. Waits with exponential backoff before the next attempt, the exception
+     * is raised if the attempts are exhausted or the circuit is open.
+     *
+     * @param tries - exception occurred in tries.
+     * @param ex    - redis connection exception.
+     */
+    private void handleException(int tries, RuntimeException ex) {
+        this.circuitBreaker.onFailure(tries, NUM_RETRIES, ex);
+    }
+}
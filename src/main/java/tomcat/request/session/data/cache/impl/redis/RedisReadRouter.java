@@ -0,0 +1,194 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.util.Pool;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis read router, to route the reads to the master or to the replicas as per the read policy.
+ *
+ * A key written from this node is read from the master until the consistency window has passed, so the session
+ * modified by a request is read back as written, even if the replicas lag behind. The replica topology and the
+ * node latencies are refreshed by a background thread.
+ */
+class RedisReadRouter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisReadRouter.class);
+
+    private static final long REFRESH_INTERVAL = 5000L;
+
+    /** Read policy. */
+    enum ReadPolicy {
+        MASTER,
+        PREFER_REPLICA,
+        NEAREST;
+
+        /** To get the read policy, ex: 'prefer-replica'. Defaults to master, if not valid. */
+        static ReadPolicy of(String policy) {
+            try {
+                return valueOf(policy.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                LOGGER.warn("Invalid redis read policy: " + policy + ", reading from master..");
+                return MASTER;
+            }
+        }
+    }
+
+    /** Redis node, serving the reads. */
+    static class Node {
+        private final String address;
+        private final Pool<Jedis> pool;
+        private volatile long latency = Long.MAX_VALUE;
+
+        Node(String address, Pool<Jedis> pool) {
+            this.address = address;
+            this.pool = pool;
+        }
+
+        String getAddress() {
+            return this.address;
+        }
+
+        Pool<Jedis> getPool() {
+            return this.pool;
+        }
+
+        /** To measure the node round trip time. */
+        void measureLatency() {
+            long start = System.nanoTime();
+            try (Jedis jedis = this.pool.getResource()) {
+                jedis.ping();
+                this.latency = System.nanoTime() - start;
+            } catch (RuntimeException ex) {
+                this.latency = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private final ReadPolicy policy;
+    private final long consistencyWindow;
+    private final ConcurrentMap<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param policy            - read policy.
+     * @param consistencyWindow - time (in milliseconds) a key written from this node is read from the master.
+     */
+    RedisReadRouter(ReadPolicy policy, long consistencyWindow) {
+        this.policy = policy;
+        this.consistencyWindow = consistencyWindow;
+    }
+
+    /** To check the reads are routed to the replicas. */
+    boolean isEnabled() {
+        return this.policy != ReadPolicy.MASTER;
+    }
+
+    /** To record the key write, so the key is read from the master within the consistency window. */
+    void onWrite(String key) {
+        if (isEnabled()) {
+            this.recentWrites.put(key, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * To select the node to read the key from.
+     *
+     * @param key      - key to read.
+     * @param master   - master node.
+     * @param replicas - replica nodes.
+     * @return - Returns the replica node, or the master node.
+     */
+    Node select(String key, Node master, List<Node> replicas) {
+        if (!isEnabled() || replicas.isEmpty() || isRecentlyWritten(key)) {
+            return master;
+        }
+
+        if (this.policy == ReadPolicy.PREFER_REPLICA) {
+            return replicas.get(ThreadLocalRandom.current().nextInt(replicas.size()));
+        }
+
+        Node nearest = master;
+        for (Node replica : replicas) {
+            if (replica.latency < nearest.latency) {
+                nearest = replica;
+            }
+        }
+        return nearest;
+    }
+
+    /** To start refreshing the replica topology periodically. */
+    void start(final Runnable refreshTask) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(new RefreshThreadFactory());
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                try {
+                    refreshTask.run();
+                } catch (RuntimeException ex) {
+                    LOGGER.error("Error occurred while refreshing the redis replicas..", ex);
+                }
+                removeExpiredWrites();
+            }
+        }, 0, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /** To stop refreshing the replica topology, waiting for the refresh in progress. */
+    void shutdown() {
+        if (this.executor == null) {
+            return;
+        }
+        this.executor.shutdownNow();
+        try {
+            this.executor.awaitTermination(REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isRecentlyWritten(String key) {
+        Long writtenOn = this.recentWrites.get(key);
+        return writtenOn != null && System.currentTimeMillis() - writtenOn < this.consistencyWindow;
+    }
+
+    private void removeExpiredWrites() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Long>> iterator = this.recentWrites.entrySet().iterator(); iterator.hasNext(); ) {
+            if (now - iterator.next().getValue() >= this.consistencyWindow) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Replica refresh thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class RefreshThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-replica-refresh-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
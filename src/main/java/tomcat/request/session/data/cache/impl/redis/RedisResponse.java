@@ -0,0 +1,213 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending redis command response, completed by the connection reader when the reply arrives.
+ */
+class RedisResponse<T> implements Future<T> {
+
+    /** To build the response value from the raw reply. */
+    abstract static class Builder<T> {
+        abstract T build(Object reply);
+
+        /** To build the response value from the error reply. By default, the error is raised. */
+        T buildError(JedisDataException ex) {
+            throw ex;
+        }
+    }
+
+    static final Builder<byte[]> BYTES = new Builder<byte[]>() {
+        @Override
+        byte[] build(Object reply) {
+            return (byte[]) reply;
+        }
+    };
+
+    static final Builder<Long> LONG = new Builder<Long>() {
+        @Override
+        Long build(Object reply) {
+            return (Long) reply;
+        }
+    };
+
+    /** Conditional set reply, '1' if the value is set else '0'. */
+    static final Builder<Long> CREATED = new Builder<Long>() {
+        @Override
+        Long build(Object reply) {
+            return (reply != null) ? 1L : 0L;
+        }
+    };
+
+    static final Builder<Boolean> BOOLEAN = new Builder<Boolean>() {
+        @Override
+        Boolean build(Object reply) {
+            return (reply == null) ? null : (Long) reply > 0;
+        }
+    };
+
+    static final Builder<Map<byte[], byte[]>> HASH = new Builder<Map<byte[], byte[]>>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        Map<byte[], byte[]> build(Object reply) {
+            List<byte[]> values = (List<byte[]>) reply;
+            Map<byte[], byte[]> hash = new HashMap<>();
+            for (int i = 0; values != null && i + 1 < values.size(); i += 2) {
+                hash.put(values.get(i), values.get(i + 1));
+            }
+            return hash;
+        }
+    };
+
+    /** Hash fields keyed by field name, empty if the key does not hold a hash. */
+    static final Builder<Map<String, byte[]>> HASH_FIELDS = new Builder<Map<String, byte[]>>() {
+        @Override
+        Map<String, byte[]> build(Object reply) {
+            return RedisManager.getHashFields(HASH.build(reply));
+        }
+
+        @Override
+        Map<String, byte[]> buildError(JedisDataException ex) {
+            if (!RedisManager.isWrongTypeException(ex)) {
+                throw ex;
+            }
+            return build(null);
+        }
+    };
+
+    private final Builder<T> builder;
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile T value;
+    private volatile RuntimeException exception;
+    private volatile RedisMultiplexedConnection connection;
+
+    RedisResponse(Builder<T> builder) {
+        this.builder = builder;
+    }
+
+    /** To set the connection, the command is sent on. */
+    void setConnection(RedisMultiplexedConnection connection) {
+        this.connection = connection;
+    }
+
+    /** To complete the response with the reply. */
+    void complete(Object reply) {
+        try {
+            this.value = this.builder.build(reply);
+        } catch (RuntimeException ex) {
+            this.exception = ex;
+        }
+        this.latch.countDown();
+    }
+
+    /** To complete the response with the error reply. */
+    void completeError(JedisDataException ex) {
+        try {
+            this.value = this.builder.buildError(ex);
+        } catch (RuntimeException e) {
+            this.exception = e;
+        }
+        this.latch.countDown();
+    }
+
+    /** To complete the response with the failure. */
+    void fail(RuntimeException ex) {
+        this.exception = ex;
+        this.latch.countDown();
+    }
+
+    /**
+     * To wait for the response.
+     *
+     * @param timeout - maximum time to wait in milliseconds.
+     * @return - Returns the response value.
+     * @throws JedisException - if the command failed or the response is not received within the timeout. On the
+     *                        timeout, the connection is failed.
+     */
+    T await(long timeout) {
+        try {
+            if (!this.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                JedisConnectionException ex =
+                        new JedisConnectionException("Redis response not received within " + timeout + " ms");
+                failConnection(ex);
+                throw ex;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JedisConnectionException("Interrupted while waiting for the redis response", ex);
+        }
+        if (this.exception != null) {
+            throw this.exception;
+        }
+        return this.value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isDone() {
+        return this.latch.getCount() == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        this.latch.await();
+        return getValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     * On the timeout, the connection is failed.
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!this.latch.await(timeout, unit)) {
+            failConnection(new JedisConnectionException(
+                    "Redis response not received within " + unit.toMillis(timeout) + " ms"));
+            throw new TimeoutException();
+        }
+        return getValue();
+    }
+
+    /**
+     * To fail the connection, whose reply is not received within the timeout. The replies are matched to the
+     * commands in order, so the connection is closed and its pending responses are failed, instead of waiting
+     * on a possibly dead peer; the next command opens a new connection.
+     */
+    private void failConnection(JedisConnectionException ex) {
+        RedisMultiplexedConnection connection = this.connection;
+        if (connection != null) {
+            connection.fail(ex);
+        }
+    }
+
+    private T getValue() throws ExecutionException {
+        if (this.exception != null) {
+            throw new ExecutionException(this.exception);
+        }
+        return this.value;
+    }
+}
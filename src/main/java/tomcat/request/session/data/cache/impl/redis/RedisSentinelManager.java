@@ -1,21 +1,150 @@
 package tomcat.request.session.data.cache.impl.redis;
 
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.Pool;
+import tomcat.request.session.metrics.Metric;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /** author: Ranjith Manickam @ 3 Dec' 2018 */
 class RedisSentinelManager extends RedisManager {
 
-    private static final long FAILURE_WAIT_TIME = 2000L;
+    private final JedisSentinelPool pool;
+    private final Set<String> nodes;
+    private final String masterName;
+    private final String password;
+    private final int database;
+    private final int timeout;
+    private final JedisPoolConfig poolConfig;
+    private final RedisReadRouter readRouter;
+
+    private volatile RedisReadRouter.Node master;
+    private volatile List<RedisReadRouter.Node> replicas = Collections.emptyList();
 
     RedisSentinelManager(Set<String> nodes,
                          String masterName,
                          String password,
                          int database,
                          int timeout,
-                         JedisPoolConfig poolConfig) {
-        super(new JedisSentinelPool(masterName, nodes, poolConfig, timeout, password, database), FAILURE_WAIT_TIME);
+                         JedisPoolConfig poolConfig,
+                         RedisReadRouter readRouter,
+                         RedisCircuitBreaker circuitBreaker,
+                         Metric poolWaitMetric) {
+        this(new JedisSentinelPool(masterName, nodes, poolConfig, timeout, password, database),
+                nodes, masterName, password, database, timeout, poolConfig, readRouter, circuitBreaker, poolWaitMetric);
+    }
+
+    private RedisSentinelManager(JedisSentinelPool pool,
+                                 Set<String> nodes,
+                                 String masterName,
+                                 String password,
+                                 int database,
+                                 int timeout,
+                                 JedisPoolConfig poolConfig,
+                                 RedisReadRouter readRouter,
+                                 RedisCircuitBreaker circuitBreaker,
+                                 Metric poolWaitMetric) {
+        super(pool, circuitBreaker, poolWaitMetric);
+        this.pool = pool;
+        this.nodes = nodes;
+        this.masterName = masterName;
+        this.password = password;
+        this.database = database;
+        this.timeout = timeout;
+        this.poolConfig = poolConfig;
+        this.readRouter = readRouter;
+        this.master = new RedisReadRouter.Node(pool.getCurrentHostMaster().toString(), pool);
+        this.readRouter.start(new Runnable() {
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                refreshReplicas();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    Pool<Jedis> getReadPool(String key, int tries) {
+        // retries are read from the master, the replica may be down.
+        if (tries > 1) {
+            return this.pool;
+        }
+        return this.readRouter.select(key, this.master, this.replicas).getPool();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    void onWrite(String key) {
+        this.readRouter.onWrite(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        this.readRouter.shutdown();
+        for (RedisReadRouter.Node replica : this.replicas) {
+            replica.getPool().close();
+        }
+        super.close();
+    }
+
+    /** To refresh the master replicas from the sentinels, and the node latencies. */
+    private void refreshReplicas() {
+        List<Map<String, String>> replicaInfos = null;
+        for (String node : this.nodes) {
+            HostAndPort sentinel = HostAndPort.parseString(node);
+            try (Jedis jedis = new Jedis(sentinel.getHost(), sentinel.getPort(), this.timeout)) {
+                replicaInfos = jedis.sentinelSlaves(this.masterName);
+                break;
+            } catch (JedisException ex) {
+                // try the next sentinel.
+            }
+        }
+        if (replicaInfos == null) {
+            return;
+        }
+
+        Map<String, RedisReadRouter.Node> currentReplicas = new HashMap<>();
+        for (RedisReadRouter.Node replica : this.replicas) {
+            currentReplicas.put(replica.getAddress(), replica);
+        }
+
+        List<RedisReadRouter.Node> newReplicas = new ArrayList<>();
+        for (Map<String, String> replicaInfo : replicaInfos) {
+            String flags = String.valueOf(replicaInfo.get("flags"));
+            if (flags.contains("s_down") || flags.contains("o_down") || flags.contains("disconnected")
+                    || !"ok".equals(replicaInfo.get("master-link-status"))) {
+                continue;
+            }
+
+            String address = replicaInfo.get("ip") + ":" + replicaInfo.get("port");
+            RedisReadRouter.Node replica = currentReplicas.remove(address);
+            if (replica == null) {
+                replica = new RedisReadRouter.Node(address, new JedisPool(this.poolConfig, replicaInfo.get("ip"),
+                        Integer.parseInt(replicaInfo.get("port")), this.timeout, this.password, this.database));
+            }
+            replica.measureLatency();
+            newReplicas.add(replica);
+        }
+
+        RedisReadRouter.Node newMaster = new RedisReadRouter.Node(this.pool.getCurrentHostMaster().toString(), this.pool);
+        newMaster.measureLatency();
+        this.master = newMaster;
+        this.replicas = newReplicas;
+
+        for (RedisReadRouter.Node replica : currentReplicas.values()) {
+            replica.getPool().destroy();
+        }
     }
 }
@@ -0,0 +1,274 @@
+package tomcat.request.session.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session attribute profiler. For one in the sample rate number of session saves, each session attribute is
+ * serialized on its own, to measure its serialized size and serialization time per attribute name.
+ *
+ * The attributes of the largest mean serialized size are reported through JMX, and logged periodically. Attributes
+ * not accessed after the session is loaded are not serialized again, only their stored size is recorded. Sizes are
+ * recorded uncompressed, as the compression is applied only on write to data cache.
+ */
+public class AttributeProfiler implements AttributeProfilerMBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttributeProfiler.class);
+
+    /** Maximum number of attribute names profiled, the attributes seen after the limit are not profiled. */
+    private static final int MAX_ATTRIBUTES = 1000;
+
+    private final SerializationUtil serializer;
+    private final int sampleRate;
+    private final int topAttributes;
+    private final ConcurrentMap<String, AttributeStats> attributes = new ConcurrentHashMap<>();
+    private final AtomicLong sampledSaves = new AtomicLong();
+    private final ScheduledExecutorService logExecutor;
+
+    private long loggedSaves;
+
+    /**
+     * @param serializer    - session serializer, to serialize the attributes.
+     * @param sampleRate    - one in this number of session saves is profiled.
+     * @param topAttributes - number of attributes reported.
+     * @param logInterval   - time (in seconds) between the logged summaries. 0, to disable the summary.
+     */
+    public AttributeProfiler(SerializationUtil serializer, int sampleRate, int topAttributes, int logInterval) {
+        this.serializer = serializer;
+        this.sampleRate = Math.max(sampleRate, 1);
+        this.topAttributes = Math.max(topAttributes, 1);
+        if (logInterval > 0) {
+            this.logExecutor = Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory());
+            this.logExecutor.scheduleWithFixedDelay(new Runnable() {
+                /** {@inheritDoc} */
+                @Override
+                public void run() {
+                    logSummary();
+                }
+            }, logInterval, logInterval, TimeUnit.SECONDS);
+        } else {
+            this.logExecutor = null;
+        }
+    }
+
+    /** To check the session save is sampled for profiling. */
+    public boolean isSampled() {
+        return this.sampleRate == 1 || ThreadLocalRandom.current().nextInt(this.sampleRate) == 0;
+    }
+
+    /** To profile the session attributes. The profiling errors are recorded, and never fail the session save. */
+    public void profile(Session session) {
+        this.sampledSaves.incrementAndGet();
+        Enumeration<String> names;
+        try {
+            names = session.getAttributeNames();
+        } catch (IllegalStateException ex) {
+            // session invalidated.
+            return;
+        }
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            AttributeStats stats = getStats(name);
+            if (stats == null) {
+                continue;
+            }
+
+            // the session may be invalidated meanwhile.
+            try {
+                byte[] data = session.getSerializedAttribute(name);
+                if (data != null) {
+                    stats.record(this.serializer.getUncompressedLength(data), -1, null);
+                    continue;
+                }
+                Object value = session.getAttribute(name);
+                if (value == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                data = this.serializer.serializeSessionAttribute(value);
+                stats.record(data.length, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start), value.getClass().getName());
+            } catch (IOException | RuntimeException ex) {
+                stats.errors.incrementAndGet();
+                LOGGER.debug("Error occurred while profiling the session attribute [" + name + "]..", ex);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSampleRate() {
+        return this.sampleRate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSampledSaves() {
+        return this.sampledSaves.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String[] getTopAttributes() {
+        List<AttributeStats> top = getTop();
+        String[] rows = new String[top.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = top.get(i).toString();
+        }
+        return rows;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        this.attributes.clear();
+        this.sampledSaves.set(0);
+    }
+
+    /** To stop the periodic summary. */
+    public void shutdown() {
+        if (this.logExecutor != null) {
+            this.logExecutor.shutdownNow();
+        }
+    }
+
+    /** To get the attribute stats, null if the attribute limit is reached. */
+    private AttributeStats getStats(String name) {
+        AttributeStats stats = this.attributes.get(name);
+        if (stats != null || this.attributes.size() >= MAX_ATTRIBUTES) {
+            return stats;
+        }
+        AttributeStats newStats = new AttributeStats(name);
+        stats = this.attributes.putIfAbsent(name, newStats);
+        return (stats != null) ? stats : newStats;
+    }
+
+    /** To get the attributes of the largest mean serialized size. */
+    private List<AttributeStats> getTop() {
+        List<AttributeStats> top = new ArrayList<>(this.attributes.values());
+        Collections.sort(top, new Comparator<AttributeStats>() {
+            /** {@inheritDoc} */
+            @Override
+            public int compare(AttributeStats stats1, AttributeStats stats2) {
+                return Long.compare(stats2.getMeanSize(), stats1.getMeanSize());
+            }
+        });
+        return (top.size() > this.topAttributes) ? top.subList(0, this.topAttributes) : top;
+    }
+
+    /** To log the top attributes, if any session save is profiled since the last summary. */
+    private void logSummary() {
+        long saves = this.sampledSaves.get();
+        if (saves == this.loggedSaves) {
+            return;
+        }
+        this.loggedSaves = saves;
+
+        StringBuilder summary = new StringBuilder("Session attributes of the largest mean serialized size, from ")
+                .append(saves).append(" profiled session saves:");
+        for (AttributeStats stats : getTop()) {
+            summary.append("\n  ").append(stats);
+        }
+        LOGGER.info(summary.toString());
+    }
+
+    /** Profiled sizes and serialization times of a session attribute. */
+    private static class AttributeStats {
+
+        private final String name;
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong totalSize = new AtomicLong();
+        private final AtomicLong maxSize = new AtomicLong();
+        private final AtomicLong timeSamples = new AtomicLong();
+        private final AtomicLong totalTime = new AtomicLong();
+        private final AtomicLong maxTime = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile String type;
+
+        private AttributeStats(String name) {
+            this.name = name;
+        }
+
+        /**
+         * To record the attribute sample.
+         *
+         * @param size - serialized size in bytes.
+         * @param time - serialization time in microseconds, negative if the attribute is not serialized.
+         * @param type - attribute class name, null if the attribute is not serialized.
+         */
+        private void record(long size, long time, String type) {
+            this.samples.incrementAndGet();
+            this.totalSize.addAndGet(size);
+            updateMax(this.maxSize, size);
+            if (time >= 0) {
+                this.timeSamples.incrementAndGet();
+                this.totalTime.addAndGet(time);
+                updateMax(this.maxTime, time);
+            }
+            if (type != null) {
+                this.type = type;
+            }
+        }
+
+        private long getMeanSize() {
+            long count = this.samples.get();
+            return (count == 0) ? 0 : this.totalSize.get() / count;
+        }
+
+        private long getMeanTime() {
+            long count = this.timeSamples.get();
+            return (count == 0) ? 0 : this.totalTime.get() / count;
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long currentMax;
+            while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+                // retry.
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return this.name +
+                    " [type=" + ((this.type != null) ? this.type : "-") +
+                    ", samples=" + this.samples.get() +
+                    ", meanSize=" + getMeanSize() + " bytes" +
+                    ", maxSize=" + this.maxSize.get() + " bytes" +
+                    ", meanTime=" + getMeanTime() + " us" +
+                    ", maxTime=" + this.maxTime.get() + " us" +
+                    ", errors=" + this.errors.get() + "]";
+        }
+    }
+
+    /** Attribute profiler thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class ProfilerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-session-attribute-profiler-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
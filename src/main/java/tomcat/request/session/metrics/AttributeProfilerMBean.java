@@ -0,0 +1,16 @@
+package tomcat.request.session.metrics;
+
+public interface AttributeProfilerMBean {
+
+    /** To get the sample rate, one in this number of session saves is profiled. */
+    int getSampleRate();
+
+    /** To get the number of profiled session saves. */
+    long getSampledSaves();
+
+    /** To get the attributes of the largest mean serialized size, largest first. */
+    String[] getTopAttributes();
+
+    /** To clear the profiled attributes. */
+    void reset();
+}
@@ -0,0 +1,41 @@
+package tomcat.request.session.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class Counter implements CounterMBean {
+
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /** To increment the count by one. */
+    public void increment() {
+        this.count.incrementAndGet();
+    }
+
+    /** To increment the count by the given amount. */
+    public void increment(long amount) {
+        this.count.addAndGet(amount);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        this.count.set(0);
+    }
+}
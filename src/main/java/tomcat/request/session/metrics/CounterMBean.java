@@ -0,0 +1,13 @@
+package tomcat.request.session.metrics;
+
+public interface CounterMBean {
+
+    /** To get the counter name. */
+    String getName();
+
+    /** To get the count. */
+    long getCount();
+
+    /** To clear the count. */
+    void reset();
+}
@@ -0,0 +1,19 @@
+package tomcat.request.session.metrics;
+
+/**
+ * Gauge, reporting the current value of a state on each read. ex: redis circuit state.
+ */
+public abstract class Gauge implements GaugeMBean {
+
+    private final String name;
+
+    protected Gauge(String name) {
+        this.name = name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,10 @@
+package tomcat.request.session.metrics;
+
+public interface GaugeMBean {
+
+    /** To get the gauge name. */
+    String getName();
+
+    /** To get the current value. */
+    double getValue();
+}
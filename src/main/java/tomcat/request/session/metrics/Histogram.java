@@ -0,0 +1,122 @@
+package tomcat.request.session.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram, recording the values (ex: latencies in microseconds, sizes in bytes) into log-linear buckets.
+ *
+ * Values below 128 are recorded exactly; larger values are recorded into 64 buckets per power of two, so the
+ * percentiles are accurate within ~1.6%. Recording is lock-free, from any number of threads.
+ */
+public class Histogram {
+
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** To record the value, negative values are recorded as 0. */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        this.buckets.incrementAndGet(getBucket(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+
+        long currentMax;
+        while (value > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax, value)) {
+            // retry.
+        }
+    }
+
+    /** To add the values recorded by the other histogram. */
+    public void add(Histogram other) {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.addAndGet(i, other.buckets.get(i));
+        }
+        this.count.addAndGet(other.count.get());
+        this.sum.addAndGet(other.sum.get());
+
+        long currentMax;
+        long otherMax = other.max.get();
+        while (otherMax > (currentMax = this.max.get()) && !this.max.compareAndSet(currentMax, otherMax)) {
+            // retry.
+        }
+    }
+
+    /** To clear the recorded values. Values recorded concurrently with the reset may be partially cleared. */
+    public void reset() {
+        for (int i = 0; i < this.buckets.length(); i++) {
+            this.buckets.set(i, 0);
+        }
+        this.count.set(0);
+        this.sum.set(0);
+        this.max.set(0);
+    }
+
+    /** To get the number of values recorded. */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /** To get the sum of the recorded values. */
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    /** To get the mean of the recorded values. */
+    public double getMean() {
+        long recorded = this.count.get();
+        return (recorded == 0) ? 0 : (double) this.sum.get() / recorded;
+    }
+
+    /** To get the maximum of the recorded values. */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * To get the value percentile.
+     *
+     * @param percentile - percentile, ex: 99.9
+     * @return - Returns the value, which the given percentage of the recorded values are below.
+     */
+    public long getPercentile(double percentile) {
+        long recorded = this.count.get();
+        if (recorded == 0) {
+            return 0;
+        }
+        long target = Math.max((long) Math.ceil(recorded * percentile / 100.0), 1);
+        long total = 0;
+        for (int i = 0; i < this.buckets.length(); i++) {
+            total += this.buckets.get(i);
+            if (total >= target) {
+                return Math.min(getBucketUpperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    private static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Math.min(63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS, MAX_SHIFT);
+        int subBucket = (int) Math.min(value >> shift, 2 * SUB_BUCKETS - 1) - SUB_BUCKETS;
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
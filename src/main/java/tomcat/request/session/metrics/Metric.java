@@ -0,0 +1,117 @@
+package tomcat.request.session.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metric, recording the operation latencies or the payload sizes into a histogram, along with the failed operations.
+ */
+public class Metric implements MetricMBean {
+
+    private final String name;
+    private final String unit;
+    private final Histogram histogram = new Histogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    public Metric(String name, String unit) {
+        this.name = name;
+        this.unit = unit;
+    }
+
+    /** To record the value. */
+    public void record(long value) {
+        this.histogram.record(value);
+    }
+
+    /**
+     * To record the operation latency in microseconds.
+     *
+     * @param startTime - operation start time, from {@link System#nanoTime()}.
+     */
+    public void recordTime(long startTime) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+    }
+
+    /** To record the failed operation. */
+    public void recordError() {
+        this.errors.incrementAndGet();
+    }
+
+    /** To get the histogram of the recorded values. */
+    public Histogram getHistogram() {
+        return this.histogram;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getUnit() {
+        return this.unit;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCount() {
+        return this.histogram.getCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getErrorCount() {
+        return this.errors.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSum() {
+        return this.histogram.getSum();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getMean() {
+        return this.histogram.getMean();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMax() {
+        return this.histogram.getMax();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getP50() {
+        return this.histogram.getPercentile(50);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getP90() {
+        return this.histogram.getPercentile(90);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getP99() {
+        return this.histogram.getPercentile(99);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getP999() {
+        return this.histogram.getPercentile(99.9);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        this.histogram.reset();
+        this.errors.set(0);
+    }
+}
@@ -0,0 +1,40 @@
+package tomcat.request.session.metrics;
+
+public interface MetricMBean {
+
+    /** To get the metric name. */
+    String getName();
+
+    /** To get the unit of the recorded values, ex: microseconds, bytes. */
+    String getUnit();
+
+    /** To get the number of values recorded. */
+    long getCount();
+
+    /** To get the number of failed operations. */
+    long getErrorCount();
+
+    /** To get the sum of the recorded values. */
+    long getSum();
+
+    /** To get the mean of the recorded values. */
+    double getMean();
+
+    /** To get the maximum of the recorded values. */
+    long getMax();
+
+    /** To get the 50th percentile of the recorded values. */
+    long getP50();
+
+    /** To get the 90th percentile of the recorded values. */
+    long getP90();
+
+    /** To get the 99th percentile of the recorded values. */
+    long getP99();
+
+    /** To get the 99.9th percentile of the recorded values. */
+    long getP999();
+
+    /** To clear the recorded values and the error count. */
+    void reset();
+}
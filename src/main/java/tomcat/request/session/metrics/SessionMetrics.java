@@ -0,0 +1,224 @@
+package tomcat.request.session.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Session manager metrics, published as MBeans next to the session manager MBean.
+ * ex: Catalina:type=RedisSessionMetrics,host=localhost,context=/app,name=dataCache.get
+ *
+ * Metrics record the latencies or the sizes into histograms, counters record the number of events, and gauges report
+ * the current value of a state. If disabled, nothing is recorded or published.
+ */
+public class SessionMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionMetrics.class);
+
+    public static final String MICROSECONDS = "microseconds";
+    public static final String BYTES = "bytes";
+
+    private static final String DEFAULT_DOMAIN = "Catalina";
+    private static final String OBJECT_NAME_TYPE = "type=RedisSessionMetrics";
+
+    private static final Metric DISABLED_METRIC = new Metric("disabled", "") {
+        /** {@inheritDoc} */
+        @Override
+        public void record(long value) {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void recordTime(long startTime) {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void recordError() {
+        }
+    };
+
+    private static final Counter DISABLED_COUNTER = new Counter("disabled") {
+        /** {@inheritDoc} */
+        @Override
+        public void increment(long amount) {
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void increment() {
+        }
+    };
+
+    /** Disabled metrics, ex: for the data-cache created without the session manager. */
+    public static final SessionMetrics DISABLED = new SessionMetrics(false);
+
+    private final boolean enabled;
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> mbeans = new ConcurrentHashMap<>();
+    private final List<ObjectName> objectNames = new ArrayList<>();
+
+    /** Object name prefix of the metrics, null if the metrics are not published. */
+    private String objectNamePrefix;
+
+    public SessionMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** To check the metrics are recorded. */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * To get the metric, the metric is created on first use.
+     *
+     * @param name - metric name, ex: dataCache.get
+     * @param unit - unit of the recorded values, ex: microseconds.
+     * @return - Returns the metric, which doesn't record any value if the metrics are disabled.
+     */
+    public Metric getMetric(String name, String unit) {
+        if (!this.enabled) {
+            return DISABLED_METRIC;
+        }
+        Metric metric = this.metrics.get(name);
+        if (metric != null) {
+            return metric;
+        }
+        Metric newMetric = new Metric(name, unit);
+        metric = this.metrics.putIfAbsent(name, newMetric);
+        if (metric != null) {
+            return metric;
+        }
+        onCreate(name, newMetric);
+        return newMetric;
+    }
+
+    /**
+     * To get the counter, the counter is created on first use.
+     *
+     * @param name - counter name, ex: session.saved
+     * @return - Returns the counter, which doesn't count if the metrics are disabled.
+     */
+    public Counter getCounter(String name) {
+        if (!this.enabled) {
+            return DISABLED_COUNTER;
+        }
+        Counter counter = this.counters.get(name);
+        if (counter != null) {
+            return counter;
+        }
+        Counter newCounter = new Counter(name);
+        counter = this.counters.putIfAbsent(name, newCounter);
+        if (counter != null) {
+            return counter;
+        }
+        onCreate(name, newCounter);
+        return newCounter;
+    }
+
+    /** To add the gauge, ignored if the metrics are disabled or a gauge with the same name is added already. */
+    public void addGauge(Gauge gauge) {
+        if (this.enabled && this.gauges.putIfAbsent(gauge.getName(), gauge) == null) {
+            onCreate(gauge.getName(), gauge);
+        }
+    }
+
+    /**
+     * To add the MBean, published along with the metrics even if the metrics are disabled. ex: attribute profiler.
+     *
+     * @param name  - MBean name, ex: attributeProfiler
+     * @param mbean - standard MBean.
+     */
+    public void addMBean(String name, Object mbean) {
+        if (this.mbeans.putIfAbsent(name, mbean) == null) {
+            onCreate(name, mbean);
+        }
+    }
+
+    /** To get the metrics created so far. */
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(this.metrics.values());
+    }
+
+    /** To get the counters created so far. */
+    public Collection<Counter> getCounters() {
+        return Collections.unmodifiableCollection(this.counters.values());
+    }
+
+    /** To get the gauges added so far. */
+    public Collection<Gauge> getGauges() {
+        return Collections.unmodifiableCollection(this.gauges.values());
+    }
+
+    /**
+     * To publish the metrics as MBeans, the metrics created later are published on creation.
+     *
+     * @param domain        - MBean domain of the session manager.
+     * @param keyProperties - MBean key properties of the session manager, ex: type=Manager,host=localhost,context=/app
+     */
+    public synchronized void register(String domain, String keyProperties) {
+        if (this.objectNamePrefix != null) {
+            return;
+        }
+        int index = (keyProperties != null) ? keyProperties.indexOf(',') : -1;
+        this.objectNamePrefix = ((domain != null) ? domain : DEFAULT_DOMAIN) + ":" + OBJECT_NAME_TYPE
+                + ((index >= 0) ? keyProperties.substring(index) : "");
+        for (Metric metric : this.metrics.values()) {
+            register(metric.getName(), metric);
+        }
+        for (Counter counter : this.counters.values()) {
+            register(counter.getName(), counter);
+        }
+        for (Gauge gauge : this.gauges.values()) {
+            register(gauge.getName(), gauge);
+        }
+        for (Map.Entry<String, Object> mbean : this.mbeans.entrySet()) {
+            register(mbean.getKey(), mbean.getValue());
+        }
+    }
+
+    /** To remove the published MBeans. */
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : this.objectNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException ex) {
+                LOGGER.warn("Error occurred while unregistering the session metrics MBean [" + objectName + "]..", ex);
+            }
+        }
+        this.objectNames.clear();
+        this.objectNamePrefix = null;
+    }
+
+    /** To publish the MBean created after the metrics are published. */
+    private synchronized void onCreate(String name, Object mbean) {
+        if (this.objectNamePrefix != null) {
+            register(name, mbean);
+        }
+    }
+
+    private void register(String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(this.objectNamePrefix + ",name=" + name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            this.objectNames.add(objectName);
+        } catch (JMException ex) {
+            LOGGER.warn("Error occurred while registering the session metrics MBean [" + name + "]..", ex);
+        }
+    }
+}
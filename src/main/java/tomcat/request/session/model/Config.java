@@ -7,6 +7,7 @@ import java.io.Serializable;
 
 import static tomcat.request.session.annotation.Property.PropertyType.BOOLEAN;
 import static tomcat.request.session.annotation.Property.PropertyType.INTEGER;
+import static tomcat.request.session.annotation.Property.PropertyType.LONG;
 
 /** author: Ranjith Manickam @ 5 Feb' 2020 */
 public class Config implements Serializable {
@@ -82,6 +83,120 @@ public class Config implements Serializable {
     @Property(name = "redis.sso.timeout", type = INTEGER, defaultValue = "0")
     private Integer redisSSOTimeout;
 
+    @Property(name = "session.hash.storage.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionHashStorageEnabled;
+
+    @Property(name = "session.attribute.lazy-load.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionAttributeLazyLoadEnabled;
+
+    @Property(name = "session.attributes.hash.algorithm", defaultValue = "MD5")
+    private String sessionAttributesHashAlgorithm;
+
+    @Property(name = "session.codec", defaultValue = "JAVA")
+    private String sessionCodec;
+
+    @Property(name = "session.codec.attribute.serializers")
+    private String sessionCodecAttributeSerializers;
+
+    @Property(name = "session.compression.codec", defaultValue = "NONE")
+    private String sessionCompressionCodec;
+
+    @Property(name = "session.compression.threshold", type = INTEGER, defaultValue = "1024")
+    private Integer sessionCompressionThreshold;
+
+    @Property(name = "lb.sticky-session.local-cache.max-entries", type = INTEGER, defaultValue = "100000")
+    private Integer lbStickySessionLocalCacheMaxEntries;
+
+    @Property(name = "lb.sticky-session.local-cache.max-size", type = INTEGER, defaultValue = "256")
+    private Integer lbStickySessionLocalCacheMaxSize;
+
+    @Property(name = "redis.session.data-sync.batch.size", type = INTEGER, defaultValue = "100")
+    private Integer redisSessionDataSyncBatchSize;
+
+    @Property(name = "session.persistence.async.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionPersistenceAsyncEnabled;
+
+    @Property(name = "session.persistence.async.threads", type = INTEGER, defaultValue = "4")
+    private Integer sessionPersistenceAsyncThreads;
+
+    @Property(name = "session.persistence.async.queue.size", type = INTEGER, defaultValue = "10000")
+    private Integer sessionPersistenceAsyncQueueSize;
+
+    @Property(name = "session.persistence.async.sync-fallback.enabled", type = BOOLEAN, defaultValue = "true")
+    private Boolean sessionPersistenceAsyncSyncFallbackEnabled;
+
+    @Property(name = "redis.multiplexed.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean redisMultiplexedEnabled;
+
+    @Property(name = "redis.multiplexed.connections", type = INTEGER, defaultValue = "2")
+    private Integer redisMultiplexedConnections;
+
+    @Property(name = "session.data-cache.local.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionDataCacheLocalEnabled;
+
+    @Property(name = "session.prefetch.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionPrefetchEnabled;
+
+    @Property(name = "redis.circuit-breaker.enabled", type = BOOLEAN, defaultValue = "true")
+    private Boolean redisCircuitBreakerEnabled;
+
+    @Property(name = "redis.circuit-breaker.failure-threshold", type = INTEGER, defaultValue = "10")
+    private Integer redisCircuitBreakerFailureThreshold;
+
+    @Property(name = "redis.circuit-breaker.open-time", type = LONG, defaultValue = "1000")
+    private Long redisCircuitBreakerOpenTime;
+
+    @Property(name = "redis.retry.backoff.base-time", type = LONG, defaultValue = "100")
+    private Long redisRetryBackoffBaseTime;
+
+    @Property(name = "redis.retry.backoff.max-time", type = LONG, defaultValue = "2000")
+    private Long redisRetryBackoffMaxTime;
+
+    @Property(name = "redis.cluster.hash-tags.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean redisClusterHashTagsEnabled;
+
+    @Property(name = "redis.read-policy", defaultValue = "master")
+    private String redisReadPolicy;
+
+    @Property(name = "redis.read-policy.consistency-window", type = LONG, defaultValue = "1000")
+    private Long redisReadPolicyConsistencyWindow;
+
+    @Property(name = "redis.near-cache.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean redisNearCacheEnabled;
+
+    @Property(name = "redis.near-cache.max-entries", type = INTEGER, defaultValue = "10000")
+    private Integer redisNearCacheMaxEntries;
+
+    @Property(name = "redis.near-cache.max-size", type = INTEGER, defaultValue = "64")
+    private Integer redisNearCacheMaxSize;
+
+    @Property(name = "redis.near-cache.expiry-time", type = LONG, defaultValue = "60000")
+    private Long redisNearCacheExpiryTime;
+
+    @Property(name = "redis.near-cache.key-prefixes", defaultValue = "0,1,2,3,4,5,6,7,8,9,A,B,C,D,E,F")
+    private String redisNearCacheKeyPrefixes;
+
+    @Property(name = "session.id.collision-check.enabled", type = BOOLEAN, defaultValue = "true")
+    private Boolean sessionIdCollisionCheckEnabled;
+
+    @Property(name = "session.expiry.refresh-threshold", type = INTEGER, defaultValue = "0")
+    private Integer sessionExpiryRefreshThreshold;
+
+    @Property(name = "session.metrics.enabled", type = BOOLEAN, defaultValue = "false")
+    private Boolean sessionMetricsEnabled;
+
+    @Property(name = "session.attribute-profiler.sample-rate", type = INTEGER, defaultValue = "0")
+    private Integer sessionAttributeProfilerSampleRate;
+
+    @Property(name = "session.attribute-profiler.top-attributes", type = INTEGER, defaultValue = "10")
+    private Integer sessionAttributeProfilerTopAttributes;
+
+    @Property(name = "session.attribute-profiler.log-interval", type = INTEGER, defaultValue = "300")
+    private Integer sessionAttributeProfilerLogInterval;
+
+    @Property(name = "redis.session.data-sync.journal.max-entries", type = INTEGER, defaultValue = "100000")
+    private Integer redisSessionDataSyncJournalMaxEntries;
+
     public Config() {
     }
 
@@ -104,7 +219,45 @@ public class Config implements Serializable {
                   Integer redisSessionExpiryJobInterval,
                   Integer redisSessionDataSyncJobInterval,
                   String sessionPersistentPolicies,
-                  Integer redisSSOTimeout) {
+                  Integer redisSSOTimeout,
+                  Boolean sessionHashStorageEnabled,
+                  Boolean sessionAttributeLazyLoadEnabled,
+                  String sessionAttributesHashAlgorithm,
+                  String sessionCodec,
+                  String sessionCodecAttributeSerializers,
+                  String sessionCompressionCodec,
+                  Integer sessionCompressionThreshold,
+                  Integer lbStickySessionLocalCacheMaxEntries,
+                  Integer lbStickySessionLocalCacheMaxSize,
+                  Integer redisSessionDataSyncBatchSize,
+                  Boolean sessionPersistenceAsyncEnabled,
+                  Integer sessionPersistenceAsyncThreads,
+                  Integer sessionPersistenceAsyncQueueSize,
+                  Boolean sessionPersistenceAsyncSyncFallbackEnabled,
+                  Boolean redisMultiplexedEnabled,
+                  Integer redisMultiplexedConnections,
+                  Boolean sessionDataCacheLocalEnabled,
+                  Boolean sessionPrefetchEnabled,
+                  Boolean redisCircuitBreakerEnabled,
+                  Integer redisCircuitBreakerFailureThreshold,
+                  Long redisCircuitBreakerOpenTime,
+                  Long redisRetryBackoffBaseTime,
+                  Long redisRetryBackoffMaxTime,
+                  Boolean redisClusterHashTagsEnabled,
+                  String redisReadPolicy,
+                  Long redisReadPolicyConsistencyWindow,
+                  Boolean redisNearCacheEnabled,
+                  Integer redisNearCacheMaxEntries,
+                  Integer redisNearCacheMaxSize,
+                  Long redisNearCacheExpiryTime,
+                  String redisNearCacheKeyPrefixes,
+                  Boolean sessionIdCollisionCheckEnabled,
+                  Integer sessionExpiryRefreshThreshold,
+                  Boolean sessionMetricsEnabled,
+                  Integer sessionAttributeProfilerSampleRate,
+                  Integer sessionAttributeProfilerTopAttributes,
+                  Integer sessionAttributeProfilerLogInterval,
+                  Integer redisSessionDataSyncJournalMaxEntries) {
         this.redisHosts = redisHosts;
         this.redisClusterEnabled = redisClusterEnabled;
         this.redisSentinelEnabled = redisSentinelEnabled;
@@ -125,6 +278,44 @@ public class Config implements Serializable {
         this.redisSessionDataSyncJobInterval = redisSessionDataSyncJobInterval;
         this.sessionPersistentPolicies = sessionPersistentPolicies;
         this.redisSSOTimeout = redisSSOTimeout;
+        this.sessionHashStorageEnabled = sessionHashStorageEnabled;
+        this.sessionAttributeLazyLoadEnabled = sessionAttributeLazyLoadEnabled;
+        this.sessionAttributesHashAlgorithm = sessionAttributesHashAlgorithm;
+        this.sessionCodec = sessionCodec;
+        this.sessionCodecAttributeSerializers = sessionCodecAttributeSerializers;
+        this.sessionCompressionCodec = sessionCompressionCodec;
+        this.sessionCompressionThreshold = sessionCompressionThreshold;
+        this.lbStickySessionLocalCacheMaxEntries = lbStickySessionLocalCacheMaxEntries;
+        this.lbStickySessionLocalCacheMaxSize = lbStickySessionLocalCacheMaxSize;
+        this.redisSessionDataSyncBatchSize = redisSessionDataSyncBatchSize;
+        this.sessionPersistenceAsyncEnabled = sessionPersistenceAsyncEnabled;
+        this.sessionPersistenceAsyncThreads = sessionPersistenceAsyncThreads;
+        this.sessionPersistenceAsyncQueueSize = sessionPersistenceAsyncQueueSize;
+        this.sessionPersistenceAsyncSyncFallbackEnabled = sessionPersistenceAsyncSyncFallbackEnabled;
+        this.redisMultiplexedEnabled = redisMultiplexedEnabled;
+        this.redisMultiplexedConnections = redisMultiplexedConnections;
+        this.sessionDataCacheLocalEnabled = sessionDataCacheLocalEnabled;
+        this.sessionPrefetchEnabled = sessionPrefetchEnabled;
+        this.redisCircuitBreakerEnabled = redisCircuitBreakerEnabled;
+        this.redisCircuitBreakerFailureThreshold = redisCircuitBreakerFailureThreshold;
+        this.redisCircuitBreakerOpenTime = redisCircuitBreakerOpenTime;
+        this.redisRetryBackoffBaseTime = redisRetryBackoffBaseTime;
+        this.redisRetryBackoffMaxTime = redisRetryBackoffMaxTime;
+        this.redisClusterHashTagsEnabled = redisClusterHashTagsEnabled;
+        this.redisReadPolicy = redisReadPolicy;
+        this.redisReadPolicyConsistencyWindow = redisReadPolicyConsistencyWindow;
+        this.redisNearCacheEnabled = redisNearCacheEnabled;
+        this.redisNearCacheMaxEntries = redisNearCacheMaxEntries;
+        this.redisNearCacheMaxSize = redisNearCacheMaxSize;
+        this.redisNearCacheExpiryTime = redisNearCacheExpiryTime;
+        this.redisNearCacheKeyPrefixes = redisNearCacheKeyPrefixes;
+        this.sessionIdCollisionCheckEnabled = sessionIdCollisionCheckEnabled;
+        this.sessionExpiryRefreshThreshold = sessionExpiryRefreshThreshold;
+        this.sessionMetricsEnabled = sessionMetricsEnabled;
+        this.sessionAttributeProfilerSampleRate = sessionAttributeProfilerSampleRate;
+        this.sessionAttributeProfilerTopAttributes = sessionAttributeProfilerTopAttributes;
+        this.sessionAttributeProfilerLogInterval = sessionAttributeProfilerLogInterval;
+        this.redisSessionDataSyncJournalMaxEntries = redisSessionDataSyncJournalMaxEntries;
     }
 
     /** To get 'redis.hosts' value. */
@@ -227,6 +418,196 @@ public class Config implements Serializable {
         return redisSSOTimeout;
     }
 
+    /** To get 'session.hash.storage.enabled' value. */
+    public Boolean getSessionHashStorageEnabled() {
+        return sessionHashStorageEnabled;
+    }
+
+    /** To get 'session.attribute.lazy-load.enabled' value. */
+    public Boolean getSessionAttributeLazyLoadEnabled() {
+        return sessionAttributeLazyLoadEnabled;
+    }
+
+    /** To get 'session.attributes.hash.algorithm' value. */
+    public String getSessionAttributesHashAlgorithm() {
+        return sessionAttributesHashAlgorithm;
+    }
+
+    /** To get 'session.codec' value. */
+    public String getSessionCodec() {
+        return sessionCodec;
+    }
+
+    /** To get 'session.codec.attribute.serializers' value. */
+    public String getSessionCodecAttributeSerializers() {
+        return sessionCodecAttributeSerializers;
+    }
+
+    /** To get 'session.compression.codec' value. */
+    public String getSessionCompressionCodec() {
+        return sessionCompressionCodec;
+    }
+
+    /** To get 'session.compression.threshold' value. */
+    public Integer getSessionCompressionThreshold() {
+        return sessionCompressionThreshold;
+    }
+
+    /** To get 'lb.sticky-session.local-cache.max-entries' value. */
+    public Integer getLbStickySessionLocalCacheMaxEntries() {
+        return lbStickySessionLocalCacheMaxEntries;
+    }
+
+    /** To get 'lb.sticky-session.local-cache.max-size' value. */
+    public Integer getLbStickySessionLocalCacheMaxSize() {
+        return lbStickySessionLocalCacheMaxSize;
+    }
+
+    /** To get 'redis.session.data-sync.batch.size' value. */
+    public Integer getRedisSessionDataSyncBatchSize() {
+        return redisSessionDataSyncBatchSize;
+    }
+
+    /** To get 'session.persistence.async.enabled' value. */
+    public Boolean getSessionPersistenceAsyncEnabled() {
+        return sessionPersistenceAsyncEnabled;
+    }
+
+    /** To get 'session.persistence.async.threads' value. */
+    public Integer getSessionPersistenceAsyncThreads() {
+        return sessionPersistenceAsyncThreads;
+    }
+
+    /** To get 'session.persistence.async.queue.size' value. */
+    public Integer getSessionPersistenceAsyncQueueSize() {
+        return sessionPersistenceAsyncQueueSize;
+    }
+
+    /** To get 'session.persistence.async.sync-fallback.enabled' value. */
+    public Boolean getSessionPersistenceAsyncSyncFallbackEnabled() {
+        return sessionPersistenceAsyncSyncFallbackEnabled;
+    }
+
+    /** To get 'redis.multiplexed.enabled' value. */
+    public Boolean getRedisMultiplexedEnabled() {
+        return redisMultiplexedEnabled;
+    }
+
+    /** To get 'redis.multiplexed.connections' value. */
+    public Integer getRedisMultiplexedConnections() {
+        return redisMultiplexedConnections;
+    }
+
+    /** To get 'session.data-cache.local.enabled' value. */
+    public Boolean getSessionDataCacheLocalEnabled() {
+        return sessionDataCacheLocalEnabled;
+    }
+
+    /** To get 'session.prefetch.enabled' value. */
+    public Boolean getSessionPrefetchEnabled() {
+        return sessionPrefetchEnabled;
+    }
+
+    /** To get 'redis.circuit-breaker.enabled' value. */
+    public Boolean getRedisCircuitBreakerEnabled() {
+        return redisCircuitBreakerEnabled;
+    }
+
+    /** To get 'redis.circuit-breaker.failure-threshold' value. */
+    public Integer getRedisCircuitBreakerFailureThreshold() {
+        return redisCircuitBreakerFailureThreshold;
+    }
+
+    /** To get 'redis.circuit-breaker.open-time' value. */
+    public Long getRedisCircuitBreakerOpenTime() {
+        return redisCircuitBreakerOpenTime;
+    }
+
+    /** To get 'redis.retry.backoff.base-time' value. */
+    public Long getRedisRetryBackoffBaseTime() {
+        return redisRetryBackoffBaseTime;
+    }
+
+    /** To get 'redis.retry.backoff.max-time' value. */
+    public Long getRedisRetryBackoffMaxTime() {
+        return redisRetryBackoffMaxTime;
+    }
+
+    /** To get 'redis.cluster.hash-tags.enabled' value. */
+    public Boolean getRedisClusterHashTagsEnabled() {
+        return redisClusterHashTagsEnabled;
+    }
+
+    /** To get 'redis.read-policy' value. */
+    public String getRedisReadPolicy() {
+        return redisReadPolicy;
+    }
+
+    /** To get 'redis.read-policy.consistency-window' value. */
+    public Long getRedisReadPolicyConsistencyWindow() {
+        return redisReadPolicyConsistencyWindow;
+    }
+
+    /** To get 'redis.near-cache.enabled' value. */
+    public Boolean getRedisNearCacheEnabled() {
+        return redisNearCacheEnabled;
+    }
+
+    /** To get 'redis.near-cache.max-entries' value. */
+    public Integer getRedisNearCacheMaxEntries() {
+        return redisNearCacheMaxEntries;
+    }
+
+    /** To get 'redis.near-cache.max-size' value. */
+    public Integer getRedisNearCacheMaxSize() {
+        return redisNearCacheMaxSize;
+    }
+
+    /** To get 'redis.near-cache.expiry-time' value. */
+    public Long getRedisNearCacheExpiryTime() {
+        return redisNearCacheExpiryTime;
+    }
+
+    /** To get 'redis.near-cache.key-prefixes' value. */
+    public String getRedisNearCacheKeyPrefixes() {
+        return redisNearCacheKeyPrefixes;
+    }
+
+    /** To get 'session.id.collision-check.enabled' value. */
+    public Boolean getSessionIdCollisionCheckEnabled() {
+        return sessionIdCollisionCheckEnabled;
+    }
+
+    /** To get 'session.expiry.refresh-threshold' value. */
+    public Integer getSessionExpiryRefreshThreshold() {
+        return sessionExpiryRefreshThreshold;
+    }
+
+    /** To get 'session.metrics.enabled' value. */
+    public Boolean getSessionMetricsEnabled() {
+        return sessionMetricsEnabled;
+    }
+
+    /** To get 'session.attribute-profiler.sample-rate' value. */
+    public Integer getSessionAttributeProfilerSampleRate() {
+        return sessionAttributeProfilerSampleRate;
+    }
+
+    /** To get 'session.attribute-profiler.top-attributes' value. */
+    public Integer getSessionAttributeProfilerTopAttributes() {
+        return sessionAttributeProfilerTopAttributes;
+    }
+
+    /** To get 'session.attribute-profiler.log-interval' value. */
+    public Integer getSessionAttributeProfilerLogInterval() {
+        return sessionAttributeProfilerLogInterval;
+    }
+
+    /** To get 'redis.session.data-sync.journal.max-entries' value. */
+    public Integer getRedisSessionDataSyncJournalMaxEntries() {
+        return redisSessionDataSyncJournalMaxEntries;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -251,6 +632,44 @@ public class Config implements Serializable {
                 ", redisSessionDataSyncJobInterval=" + redisSessionDataSyncJobInterval +
                 ", sessionPersistentPolicies='" + sessionPersistentPolicies + '\'' +
                 ", redisSSOTimeout='" + redisSSOTimeout + '\'' +
+                ", sessionHashStorageEnabled=" + sessionHashStorageEnabled +
+                ", sessionAttributeLazyLoadEnabled=" + sessionAttributeLazyLoadEnabled +
+                ", sessionAttributesHashAlgorithm='" + sessionAttributesHashAlgorithm + '\'' +
+                ", sessionCodec='" + sessionCodec + '\'' +
+                ", sessionCodecAttributeSerializers='" + sessionCodecAttributeSerializers + '\'' +
+                ", sessionCompressionCodec='" + sessionCompressionCodec + '\'' +
+                ", sessionCompressionThreshold=" + sessionCompressionThreshold +
+                ", lbStickySessionLocalCacheMaxEntries=" + lbStickySessionLocalCacheMaxEntries +
+                ", lbStickySessionLocalCacheMaxSize=" + lbStickySessionLocalCacheMaxSize +
+                ", redisSessionDataSyncBatchSize=" + redisSessionDataSyncBatchSize +
+                ", sessionPersistenceAsyncEnabled=" + sessionPersistenceAsyncEnabled +
+                ", sessionPersistenceAsyncThreads=" + sessionPersistenceAsyncThreads +
+                ", sessionPersistenceAsyncQueueSize=" + sessionPersistenceAsyncQueueSize +
+                ", sessionPersistenceAsyncSyncFallbackEnabled=" + sessionPersistenceAsyncSyncFallbackEnabled +
+                ", redisMultiplexedEnabled=" + redisMultiplexedEnabled +
+                ", redisMultiplexedConnections=" + redisMultiplexedConnections +
+                ", sessionDataCacheLocalEnabled=" + sessionDataCacheLocalEnabled +
+                ", sessionPrefetchEnabled=" + sessionPrefetchEnabled +
+                ", redisCircuitBreakerEnabled=" + redisCircuitBreakerEnabled +
+                ", redisCircuitBreakerFailureThreshold=" + redisCircuitBreakerFailureThreshold +
+                ", redisCircuitBreakerOpenTime=" + redisCircuitBreakerOpenTime +
+                ", redisRetryBackoffBaseTime=" + redisRetryBackoffBaseTime +
+                ", redisRetryBackoffMaxTime=" + redisRetryBackoffMaxTime +
+                ", redisClusterHashTagsEnabled=" + redisClusterHashTagsEnabled +
+                ", redisReadPolicy='" + redisReadPolicy + '\'' +
+                ", redisReadPolicyConsistencyWindow=" + redisReadPolicyConsistencyWindow +
+                ", redisNearCacheEnabled=" + redisNearCacheEnabled +
+                ", redisNearCacheMaxEntries=" + redisNearCacheMaxEntries +
+                ", redisNearCacheMaxSize=" + redisNearCacheMaxSize +
+                ", redisNearCacheExpiryTime=" + redisNearCacheExpiryTime +
+                ", redisNearCacheKeyPrefixes='" + redisNearCacheKeyPrefixes + '\'' +
+                ", sessionIdCollisionCheckEnabled=" + sessionIdCollisionCheckEnabled +
+                ", sessionExpiryRefreshThreshold=" + sessionExpiryRefreshThreshold +
+                ", sessionMetricsEnabled=" + sessionMetricsEnabled +
+                ", sessionAttributeProfilerSampleRate=" + sessionAttributeProfilerSampleRate +
+                ", sessionAttributeProfilerTopAttributes=" + sessionAttributeProfilerTopAttributes +
+                ", sessionAttributeProfilerLogInterval=" + sessionAttributeProfilerLogInterval +
+                ", redisSessionDataSyncJournalMaxEntries=" + redisSessionDataSyncJournalMaxEntries +
                 '}';
     }
 
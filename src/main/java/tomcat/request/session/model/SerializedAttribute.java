@@ -0,0 +1,35 @@
+package tomcat.request.session.model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tomcat.request.session.util.SerializationUtil;
+
+import java.io.IOException;
+
+public class SerializedAttribute {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerializedAttribute.class);
+
+    private final byte[] data;
+    private final SerializationUtil serializer;
+
+    public SerializedAttribute(byte[] data, SerializationUtil serializer) {
+        this.data = data;
+        this.serializer = serializer;
+    }
+
+    /** To get serialized attribute data. */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /** To get de-serialized attribute value. Returns null, if the value couldn't be de-serialized. */
+    public Object getValue() {
+        try {
+            return this.serializer.deserializeSessionAttribute(this.data);
+        } catch (IOException | ClassNotFoundException ex) {
+            LOGGER.error("Error occurred while de-serializing the session attribute..", ex);
+        }
+        return null;
+    }
+}
@@ -4,13 +4,20 @@ import org.apache.catalina.Manager;
 import org.apache.catalina.session.StandardSession;
 import tomcat.request.session.redis.SessionManager;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 public class Session extends StandardSession {
@@ -84,7 +91,7 @@ public class Session extends StandardSession {
     /** {@inheritDoc} */
     @Override
     public Object getAttribute(String name) {
-        return super.getAttribute(name);
+        return loadSerializedAttribute(name, super.getAttribute(name));
     }
 
     /** {@inheritDoc} */
@@ -104,6 +111,15 @@ public class Session extends StandardSession {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void removeAttributeInternal(String name, boolean notify) {
+        if (name != null) {
+            loadSerializedAttribute(name, this.attributes.get(name));
+        }
+        super.removeAttributeInternal(name, notify);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setPrincipal(Principal principal) {
@@ -114,10 +130,47 @@ public class Session extends StandardSession {
     /** {@inheritDoc} */
     @Override
     public void writeObjectData(ObjectOutputStream out) throws IOException {
-        super.writeObjectData(out);
+        writeStateObjectData(out);
+        writeAttributesObjectData(out);
         out.writeLong(this.getCreationTime());
     }
 
+    /** To write session state to output stream, in the standard session serialized form. */
+    public void writeStateObjectData(ObjectOutputStream out) throws IOException {
+        out.writeObject(this.creationTime);
+        out.writeObject(this.lastAccessedTime);
+        out.writeObject(this.maxInactiveInterval);
+        out.writeObject(this.isNew);
+        out.writeObject(this.isValid);
+        out.writeObject(this.thisAccessedTime);
+        out.writeObject(this.id);
+    }
+
+    /**
+     * To write session attributes to output stream, in the standard session serialized form. Attributes are
+     * written in name order; as in the standard session, the non-distributable and excluded attributes are skipped.
+     */
+    public void writeAttributesObjectData(ObjectOutputStream out) throws IOException {
+        String[] names = keys();
+        Arrays.sort(names);
+
+        List<String> serializableNames = new ArrayList<>(names.length);
+        List<Object> serializableValues = new ArrayList<>(names.length);
+        for (String name : names) {
+            Object value = loadSerializedAttribute(name, this.attributes.get(name));
+            if (value != null && isAttributeDistributable(name, value) && !exclude(name, value)) {
+                serializableNames.add(name);
+                serializableValues.add(value);
+            }
+        }
+
+        out.writeObject(serializableNames.size());
+        for (int i = 0; i < serializableNames.size(); i++) {
+            out.writeObject(serializableNames.get(i));
+            out.writeObject(serializableValues.get(i));
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void readObjectData(ObjectInputStream in) throws IOException, ClassNotFoundException {
@@ -125,6 +178,65 @@ public class Session extends StandardSession {
         this.setCreationTime(in.readLong());
     }
 
+    /** To write session state, excluding the attributes, to output stream. */
+    public void writeStateData(DataOutput out) throws IOException {
+        out.writeLong(this.creationTime);
+        out.writeLong(this.lastAccessedTime);
+        out.writeInt(this.maxInactiveInterval);
+        out.writeBoolean(this.isNew);
+        out.writeBoolean(this.isValid);
+        out.writeLong(this.thisAccessedTime);
+        out.writeUTF(this.id);
+    }
+
+    /** To read session state, excluding the attributes, from input stream. */
+    public void readStateData(DataInput in) throws IOException {
+        this.creationTime = in.readLong();
+        this.lastAccessedTime = in.readLong();
+        this.maxInactiveInterval = in.readInt();
+        this.isNew = in.readBoolean();
+        this.isValid = in.readBoolean();
+        this.thisAccessedTime = in.readLong();
+        this.id = in.readUTF();
+    }
+
+    /** To load persisted attribute, without notifying the listeners and dirty tracking. */
+    public void loadAttribute(String name, Object value) {
+        if (name != null && value != null) {
+            this.attributes.put(name, value);
+        }
+    }
+
+    /** To get session attribute values, in name order. */
+    public SortedMap<String, Object> getAttributeValues() {
+        SortedMap<String, Object> values = new TreeMap<>();
+        for (String name : keys()) {
+            Object value = loadSerializedAttribute(name, this.attributes.get(name));
+            if (value != null) {
+                values.put(name, value);
+            }
+        }
+        return values;
+    }
+
+    /** To get serialized attribute data, if the attribute is not accessed after the session is loaded. */
+    public byte[] getSerializedAttribute(String name) {
+        Object value = (name == null) ? null : this.attributes.get(name);
+        return (value instanceof SerializedAttribute) ? ((SerializedAttribute) value).getData() : null;
+    }
+
+    /** To de-serialize the attribute on first access and replace the serialized attribute with its value. */
+    private Object loadSerializedAttribute(String name, Object value) {
+        if (!(value instanceof SerializedAttribute)) {
+            return value;
+        }
+        Object attribute = ((SerializedAttribute) value).getValue();
+        if (attribute == null || this.attributes.replace(name, value, attribute)) {
+            return attribute;
+        }
+        return loadSerializedAttribute(name, this.attributes.get(name));
+    }
+
     /** {@inheritDoc} */
     @Override
     public void invalidate() {
@@ -1,5 +1,7 @@
 package tomcat.request.session.model;
 
+import java.util.concurrent.Future;
+
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 public class SessionContext {
 
@@ -7,6 +9,8 @@ public class SessionContext {
     private Session session;
     private boolean persisted;
     private SessionMetadata metadata;
+    private String prefetchedId;
+    private Future<?> prefetchedData;
 
     /** To get session id. */
     public String getId() {
@@ -48,6 +52,22 @@ public class SessionContext {
         this.metadata = metadata;
     }
 
+    /** To get prefetched session id. */
+    public String getPrefetchedId() {
+        return prefetchedId;
+    }
+
+    /** To get prefetched session data. */
+    public Future<?> getPrefetchedData() {
+        return prefetchedData;
+    }
+
+    /** To set prefetched session data. */
+    public void setPrefetchedData(String prefetchedId, Future<?> prefetchedData) {
+        this.prefetchedId = prefetchedId;
+        this.prefetchedData = prefetchedData;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
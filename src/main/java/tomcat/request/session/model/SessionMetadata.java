@@ -4,16 +4,27 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 public class SessionMetadata implements Serializable {
 
     private static final long serialVersionUID = 124438185184833546L;
 
+    // precedes the refresh time in the serialized form, the older form starts with the non-negative hash length.
+    private static final int REFRESH_TIME_MARKER = -1;
+
     private byte[] attributesHash;
+    private long lastRefreshedTime;
+    private transient Map<String, byte[]> attributeHashes;
+    private transient Map<String, byte[]> attributeData;
 
     public SessionMetadata() {
         this.attributesHash = new byte[0];
+        this.attributeHashes = new HashMap<>();
+        this.attributeData = new HashMap<>();
+        this.lastRefreshedTime = System.currentTimeMillis();
     }
 
     /** To get session meta-data hash. */
@@ -26,13 +37,36 @@ public class SessionMetadata implements Serializable {
         this.attributesHash = attributesHash;
     }
 
+    /** To get session attribute hashes, keyed by attribute name. */
+    public Map<String, byte[]> getAttributeHashes() {
+        return this.attributeHashes;
+    }
+
+    /** To get session attribute data, keyed by attribute name, of the attributes not hashed yet. */
+    public Map<String, byte[]> getAttributeData() {
+        return this.attributeData;
+    }
+
+    /** To get the time (in milliseconds) the session is last written with its expiry, 0 if not known. */
+    public long getLastRefreshedTime() {
+        return this.lastRefreshedTime;
+    }
+
+    /** To set the time (in milliseconds) the session is last written with its expiry. */
+    public void setLastRefreshedTime(long lastRefreshedTime) {
+        this.lastRefreshedTime = lastRefreshedTime;
+    }
+
     /** To copy session meta-data. */
     public void copyFieldsFrom(SessionMetadata metadata) {
         this.setAttributesHash(metadata.getAttributesHash());
+        this.setLastRefreshedTime(metadata.getLastRefreshedTime());
     }
 
-    /** To write session meta-data to output stream. */
+    /** To write session meta-data to output stream. The hash is written last, as the codecs update it in place. */
     private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(REFRESH_TIME_MARKER);
+        out.writeLong(this.lastRefreshedTime);
         out.writeInt(this.attributesHash.length);
         out.write(this.attributesHash);
     }
@@ -40,8 +74,15 @@ public class SessionMetadata implements Serializable {
     /** To read session meta-data from input stream. */
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         int hashLength = in.readInt();
+        this.lastRefreshedTime = 0L;
+        if (hashLength == REFRESH_TIME_MARKER) {
+            this.lastRefreshedTime = in.readLong();
+            hashLength = in.readInt();
+        }
         byte[] attributesHash = new byte[hashLength];
         in.read(attributesHash, 0, hashLength);
         this.attributesHash = attributesHash;
+        this.attributeHashes = new HashMap<>();
+        this.attributeData = new HashMap<>();
     }
 }
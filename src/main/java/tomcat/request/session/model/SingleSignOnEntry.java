@@ -42,6 +42,10 @@ public class SingleSignOnEntry implements Serializable {
         }
     }
 
+    public void addSessionKey(SingleSignOnSessionKey key) {
+        this.sessionKeys.putIfAbsent(key, key);
+    }
+
     public void removeSession(Session session) {
         SingleSignOnSessionKey key = new SingleSignOnSessionKey(session);
         this.sessionKeys.remove(key);
@@ -26,6 +26,9 @@ public class SessionHandlerValve extends ValveBase {
     @Override
     public void invoke(Request request, Response response) throws BackendException {
         try {
+            if (this.manager != null) {
+                this.manager.prefetchSession(request.getRequestedSessionId());
+            }
             getNext().invoke(request, response);
         } catch (IOException | ServletException | RuntimeException ex) {
             LOGGER.error("Error processing request", ex);
@@ -9,11 +9,20 @@ import org.apache.catalina.Valve;
 import org.apache.catalina.session.ManagerBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import tomcat.request.session.codec.CompressionCodec;
+import tomcat.request.session.codec.SessionCodec;
+import tomcat.request.session.codec.SessionCodecFactory;
 import tomcat.request.session.constant.SessionConstants;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
 import tomcat.request.session.constant.SessionConstants.SessionPolicy;
+import tomcat.request.session.data.cache.AsyncDataCache;
 import tomcat.request.session.data.cache.DataCache;
 import tomcat.request.session.data.cache.DataCacheFactory;
+import tomcat.request.session.metrics.AttributeProfiler;
+import tomcat.request.session.metrics.Counter;
+import tomcat.request.session.metrics.SessionMetrics;
 import tomcat.request.session.model.Config;
+import tomcat.request.session.model.SerializedAttribute;
 import tomcat.request.session.model.Session;
 import tomcat.request.session.model.SessionContext;
 import tomcat.request.session.model.SessionMetadata;
@@ -21,20 +30,59 @@ import tomcat.request.session.model.SingleSignOnEntry;
 import tomcat.request.session.util.ConfigUtil;
 import tomcat.request.session.util.SerializationUtil;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
-public class SessionManager extends ManagerBase implements Lifecycle {
+public class SessionManager extends ManagerBase implements Lifecycle, PropertyChangeListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SessionManager.class);
 
+    /** Upper bound of the expiry refresh threshold, an idle session keeps at least half of its timeout. */
+    private static final int MAX_EXPIRY_REFRESH_THRESHOLD = 50;
+
     private Integer ssoTimeout;
+    private boolean hashStorageEnabled;
+    private boolean attributeLazyLoadEnabled;
+    private boolean sessionIdCollisionCheckEnabled;
+    private int expiryRefreshThreshold;
+    private int prefetchTimeout;
+
+    /** Catalina context, resolved once on start. */
+    private Context context;
+
+    /** Context session timeout in seconds, updated on the context property change. */
+    private volatile int contextSessionTimeout;
     private DataCache dataCache;
+    private AsyncDataCache asyncDataCache;
+    private SessionWriter sessionWriter;
     private SerializationUtil serializer;
+    private SessionMetrics metrics;
+    private Counter createdCounter;
+    private Counter loadedCounter;
+    private Counter savedCounter;
+    private Counter skippedCounter;
+    private Counter bytesWrittenCounter;
+    private Counter bytesReadCounter;
+    private Counter ssoLookupCounter;
+    private Counter ssoMissCounter;
+
+    /** Samples the session saves to profile the attribute sizes. Null, if disabled. */
+    private AttributeProfiler attributeProfiler;
     private final ThreadLocal<SessionContext> sessionContext = new ThreadLocal<>();
     private final Set<SessionPolicy> sessionPolicy = EnumSet.of(SessionPolicy.DEFAULT);
 
@@ -72,6 +120,9 @@ public class SessionManager extends ManagerBase implements Lifecycle {
 
         boolean initializedValve = false;
         Context context = getContextIns();
+        this.context = context;
+        this.contextSessionTimeout = context.getSessionTimeout() * 60;
+        context.addPropertyChangeListener(this);
         for (Valve valve : context.getPipeline().getValves()) {
             if (valve instanceof SessionHandlerValve) {
                 SessionHandlerValve handlerValve = (SessionHandlerValve) valve;
@@ -85,6 +136,7 @@ public class SessionManager extends ManagerBase implements Lifecycle {
             throw new LifecycleException("Session handling valve is not initialized..");
         }
         initialize();
+        this.metrics.register(getDomain(), getObjectNameKeyProperties());
         LOGGER.info("The sessions will expire after " + (getSessionTimeout(null)) + " seconds.");
         context.setDistributable(true);
     }
@@ -93,40 +145,68 @@ public class SessionManager extends ManagerBase implements Lifecycle {
     @Override
     protected synchronized void stopInternal() throws LifecycleException {
         super.setState(LifecycleState.STOPPING);
+        if (this.context != null) {
+            this.context.removePropertyChangeListener(this);
+        }
+        if (this.sessionWriter != null) {
+            this.sessionWriter.shutdown();
+        }
+        if (this.dataCache != null) {
+            this.dataCache.close();
+        }
+        if (this.attributeProfiler != null) {
+            this.attributeProfiler.shutdown();
+        }
+        if (this.metrics != null) {
+            this.metrics.unregister();
+        }
         super.stopInternal();
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc}
+     *
+     * The session id is reserved and the initial session is written with its expiry in a single atomic operation.
+     * If the session id collision check is disabled, the generated session id is not checked, and the session is
+     * written as any other session save.
+     */
     @Override
     public Session createSession(String sessionId) {
-        if (sessionId != null) {
-            sessionId = (this.dataCache.setnx(sessionId, SessionConstants.NULL_SESSION) == 0L) ? null : sessionId;
-        } else {
-            do {
-                sessionId = generateSessionId();
-            } while (this.dataCache.setnx(sessionId, SessionConstants.NULL_SESSION) == 0L);
-        }
+        Session session = createEmptySession();
+        session.setNew(true);
+        session.setValid(true);
+        session.setCreationTime(System.currentTimeMillis());
+        session.setMaxInactiveInterval(getSessionTimeout(session));
 
-        Session session = (sessionId != null) ? createEmptySession() : null;
-        if (session != null) {
-            session.setId(sessionId);
-            session.setNew(true);
-            session.setValid(true);
-            session.setCreationTime(System.currentTimeMillis());
-            session.setMaxInactiveInterval(getSessionTimeout(session));
-            session.tellNew();
-        }
-        setValues(sessionId, session, false, new SessionMetadata());
-
-        if (session != null) {
-            try {
+        try {
+            if (sessionId == null && !this.sessionIdCollisionCheckEnabled) {
+                session.setId(generateSessionId());
+                setValues(session.getId(), session, false, new SessionMetadata());
+                session.tellNew();
                 save(session, true);
-            } catch (Exception ex) {
-                LOGGER.error("Error occurred while creating session..", ex);
-                setValues(null, null);
-                session = null;
+                this.createdCounter.increment();
+                return session;
+            }
+
+            if (sessionId != null) {
+                session.setId(sessionId);
+                session = saveNewSession(session) ? session : null;
+            } else {
+                do {
+                    session.setId(generateSessionId());
+                } while (!saveNewSession(session));
             }
+        } catch (Exception ex) {
+            LOGGER.error("Error occurred while creating session..", ex);
+            session = null;
+        }
+
+        if (session == null) {
+            setValues(null, null);
+            return null;
         }
+        session.tellNew();
+        this.createdCounter.increment();
         return session;
     }
 
@@ -144,6 +224,7 @@ public class SessionManager extends ManagerBase implements Lifecycle {
 
     /** {@inheritDoc} */
     @Override
+    @SuppressWarnings("unchecked")
     public Session findSession(String sessionId) throws IOException {
         if (sessionId != null && this.sessionContext.get() != null && sessionId.equals(this.sessionContext.get().getId())) {
             return this.sessionContext.get().getSession();
@@ -153,7 +234,31 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         boolean isPersisted = false;
         SessionMetadata metadata = null;
 
-        byte[] data = this.dataCache.get(sessionId);
+        Future<?> prefetchedData = removePrefetchedData(sessionId);
+        if (this.sessionWriter.flush(sessionId)) {
+            // prefetched data is older than the pending write.
+            prefetchedData = null;
+        }
+
+        Object prefetchedValue = null;
+        if (prefetchedData != null) {
+            try {
+                prefetchedValue = getPrefetchedValue(prefetchedData);
+            } catch (TimeoutException ex) {
+                LOGGER.warn("Prefetched session is not received within " + this.prefetchTimeout + " ms, loading again: " + sessionId);
+                prefetchedData = null;
+            }
+        }
+
+        byte[] data;
+        Map<String, byte[]> fields = null;
+        if (this.hashStorageEnabled) {
+            fields = (prefetchedData != null) ? (Map<String, byte[]>) prefetchedValue : this.dataCache.hgetAll(sessionId);
+            data = fields.get(SessionConstants.SESSION_METADATA_FIELD);
+        } else {
+            data = (prefetchedData != null) ? (byte[]) prefetchedValue : this.dataCache.get(sessionId);
+        }
+
         if (data == null) {
             sessionId = null;
             isPersisted = false;
@@ -161,10 +266,15 @@ public class SessionManager extends ManagerBase implements Lifecycle {
             if (Arrays.equals(SessionConstants.NULL_SESSION, data)) {
                 throw new IOException("NULL session data");
             }
+            this.bytesReadCounter.increment((fields != null) ? getSize(fields.values()) : data.length);
             try {
                 metadata = new SessionMetadata();
                 Session newSession = createEmptySession();
-                this.serializer.deserializeSessionData(data, newSession, metadata);
+                if (fields != null) {
+                    deserializeSessionFields(fields, newSession, metadata);
+                } else {
+                    this.serializer.deserializeSessionData(data, newSession, metadata);
+                }
 
                 newSession.setId(sessionId);
                 newSession.access();
@@ -175,6 +285,7 @@ public class SessionManager extends ManagerBase implements Lifecycle {
 
                 session = newSession;
                 isPersisted = true;
+                this.loadedCounter.increment();
             } catch (Exception ex) {
                 LOGGER.error("Error occurred while de-serializing the session object..", ex);
             }
@@ -192,7 +303,7 @@ public class SessionManager extends ManagerBase implements Lifecycle {
     /** {@inheritDoc} */
     @Override
     public void remove(org.apache.catalina.Session session, boolean update) {
-        this.dataCache.delete(session.getId());
+        this.sessionWriter.delete(session.getId());
     }
 
     /** {@inheritDoc} */
@@ -212,12 +323,54 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         try {
             Config config = ConfigUtil.getConfig();
             this.ssoTimeout = config.getRedisSSOTimeout();
-            this.dataCache = new DataCacheFactory(config, getSessionTimeout(null)).getDataCache();
-            this.serializer = new SerializationUtil();
-
-            Context context = getContextIns();
-            ClassLoader loader = (context != null && context.getLoader() != null) ? context.getLoader().getClassLoader() : null;
-            this.serializer.setClassLoader(loader);
+            this.prefetchTimeout = config.getRedisTimeout();
+            this.hashStorageEnabled = config.getSessionHashStorageEnabled();
+            this.sessionIdCollisionCheckEnabled = config.getSessionIdCollisionCheckEnabled();
+            this.expiryRefreshThreshold = config.getSessionExpiryRefreshThreshold();
+            if (this.expiryRefreshThreshold > MAX_EXPIRY_REFRESH_THRESHOLD) {
+                LOGGER.warn("Session expiry refresh threshold {} is above {}, using {}..", this.expiryRefreshThreshold,
+                        MAX_EXPIRY_REFRESH_THRESHOLD, MAX_EXPIRY_REFRESH_THRESHOLD);
+                this.expiryRefreshThreshold = MAX_EXPIRY_REFRESH_THRESHOLD;
+            }
+            if (config.getRedisNearCacheEnabled() && this.expiryRefreshThreshold <= 0) {
+                // each request then refreshes the session expiry in redis, which invalidates the near-cached session.
+                LOGGER.warn("Redis near-cache is enabled with the session expiry refresh threshold 0, sessions are "
+                        + "invalidated on every request; set session.expiry.refresh-threshold above 0..");
+            }
+            this.attributeLazyLoadEnabled = this.hashStorageEnabled && config.getSessionAttributeLazyLoadEnabled();
+            this.metrics = new SessionMetrics(config.getSessionMetricsEnabled());
+            this.createdCounter = this.metrics.getCounter("session.created");
+            this.loadedCounter = this.metrics.getCounter("session.loaded");
+            this.savedCounter = this.metrics.getCounter("session.saved");
+            this.skippedCounter = this.metrics.getCounter("session.skipped");
+            this.bytesWrittenCounter = this.metrics.getCounter("session.bytesWritten");
+            this.bytesReadCounter = this.metrics.getCounter("session.bytesRead");
+            this.ssoLookupCounter = this.metrics.getCounter("sso.lookups");
+            this.ssoMissCounter = this.metrics.getCounter("sso.misses");
+            this.dataCache = new DataCacheFactory(config, getSessionTimeout(null), this.metrics).getDataCache();
+            if (config.getSessionPrefetchEnabled() && this.dataCache instanceof AsyncDataCache) {
+                this.asyncDataCache = (AsyncDataCache) this.dataCache;
+            }
+            this.sessionWriter = new SessionWriter(this.dataCache, config.getSessionPersistenceAsyncEnabled(),
+                    config.getSessionPersistenceAsyncThreads(), config.getSessionPersistenceAsyncQueueSize(),
+                    config.getSessionPersistenceAsyncSyncFallbackEnabled());
+
+            ClassLoader loader = (this.context != null && this.context.getLoader() != null)
+                    ? this.context.getLoader().getClassLoader() : null;
+            SessionCodecFactory codecFactory = new SessionCodecFactory(config, loader);
+            SessionCodec codec = codecFactory.getSessionCodec();
+            CompressionCodec compressionCodec = codecFactory.getCompressionCodec();
+            this.serializer = new SerializationUtil(codec, codecFactory.getSessionCodecs(codec),
+                    HashAlgorithm.fromName(config.getSessionAttributesHashAlgorithm()),
+                    compressionCodec, codecFactory.getCompressionCodecs(compressionCodec),
+                    config.getSessionCompressionThreshold(), this.metrics);
+            if (config.getSessionAttributeProfilerSampleRate() > 0) {
+                this.attributeProfiler = new AttributeProfiler(this.serializer,
+                        config.getSessionAttributeProfilerSampleRate(),
+                        config.getSessionAttributeProfilerTopAttributes(),
+                        config.getSessionAttributeProfilerLogInterval());
+                this.metrics.addMBean("attributeProfiler", this.attributeProfiler);
+            }
 
             setSessionPersistentPolicies(config);
         } catch (Exception ex) {
@@ -229,27 +382,40 @@ public class SessionManager extends ManagerBase implements Lifecycle {
     /** To save session object to data cache. */
     public void save(org.apache.catalina.Session session, boolean forceSave) {
         try {
+            if (this.attributeProfiler != null && this.attributeProfiler.isSampled()) {
+                this.attributeProfiler.profile((Session) session);
+            }
+            if (this.hashStorageEnabled) {
+                saveSessionFields((Session) session, forceSave);
+                return;
+            }
+
             Boolean isPersisted;
             Session newSession = (Session) session;
             byte[] hash = (this.sessionContext.get() != null && this.sessionContext.get().getMetadata() != null)
                     ? this.sessionContext.get().getMetadata().getAttributesHash() : null;
-            byte[] currentHash = this.serializer.getSessionAttributesHashCode(newSession);
+            SessionMetadata metadata = new SessionMetadata();
+            byte[] data = this.serializer.serializeSessionData(newSession, metadata);
+            int timeout = getSessionTimeout(newSession);
 
             if (forceSave
                     || newSession.isDirty()
                     || (isPersisted = (this.sessionContext.get() != null) ? this.sessionContext.get().isPersisted() : null) == null
-                    || !isPersisted || !Arrays.equals(hash, currentHash)) {
+                    || !isPersisted || !Arrays.equals(hash, metadata.getAttributesHash())
+                    || isExpiryRefreshDue(this.sessionContext.get(), timeout)) {
 
-                SessionMetadata metadata = new SessionMetadata();
-                metadata.setAttributesHash(currentHash);
-
-                this.dataCache.set(newSession.getId(), this.serializer.serializeSessionData(newSession, metadata));
+                data = this.serializer.compress(data);
+                this.sessionWriter.setex(newSession.getId(), data, timeout);
                 newSession.resetDirtyTracking();
                 setValues(true, metadata);
+                this.savedCounter.increment();
+                this.bytesWrittenCounter.increment(data.length);
+            } else {
+                if (this.expiryRefreshThreshold <= 0 || timeout <= 0) {
+                    this.sessionWriter.expire(newSession.getId(), timeout);
+                }
+                this.skippedCounter.increment();
             }
-
-            int timeout = getSessionTimeout(newSession);
-            this.dataCache.expire(newSession.getId(), timeout);
             LOGGER.debug("Session [" + newSession.getId() + "] expire in [" + timeout + "] seconds.");
 
         } catch (IOException ex) {
@@ -257,6 +423,214 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         }
     }
 
+    /** To save the changed session attributes and the session meta-data to data cache hash fields. */
+    private void saveSessionFields(Session session, boolean forceSave) throws IOException {
+        SessionContext context = this.sessionContext.get();
+        boolean isPersisted = context != null && context.isPersisted();
+        SessionMetadata persisted = (isPersisted && context.getMetadata() != null) ? context.getMetadata() : new SessionMetadata();
+
+        SessionMetadata metadata = new SessionMetadata();
+        Map<String, byte[]> fields = new HashMap<>();
+        for (Enumeration<String> names = session.getAttributeNames(); names.hasMoreElements(); ) {
+            String name = names.nextElement();
+            byte[] value = session.getSerializedAttribute(name);
+            byte[] data = null;
+            boolean changed;
+            if (value != null && isPersistedAttribute(persisted, name)) {
+                // attribute not accessed after the session is loaded, so it is unchanged and not hashed.
+                metadata.getAttributeData().put(name, value);
+                changed = false;
+            } else {
+                // hashed uncompressed, the changed attribute is compressed only to write.
+                data = (value != null) ? this.serializer.decompress(value)
+                        : this.serializer.serializeSessionAttribute(session.getAttribute(name));
+                byte[] hash = this.serializer.getHashCode(data);
+                metadata.getAttributeHashes().put(name, hash);
+                changed = !Arrays.equals(hash, getPersistedAttributeHash(persisted, name));
+            }
+
+            if (forceSave || changed) {
+                fields.put(SessionConstants.SESSION_ATTRIBUTE_FIELD_PREFIX + name,
+                        (value != null) ? value : this.serializer.compress(data));
+            }
+        }
+
+        Set<String> deletedFields = new HashSet<>();
+        Set<String> persistedNames = new HashSet<>(persisted.getAttributeHashes().keySet());
+        persistedNames.addAll(persisted.getAttributeData().keySet());
+        for (String name : persistedNames) {
+            if (!isPersistedAttribute(metadata, name)) {
+                deletedFields.add(SessionConstants.SESSION_ATTRIBUTE_FIELD_PREFIX + name);
+            }
+        }
+
+        int timeout = getSessionTimeout(session);
+        if (forceSave || !isPersisted || session.isDirty() || !fields.isEmpty() || !deletedFields.isEmpty()
+                || isExpiryRefreshDue(context, timeout)) {
+            fields.put(SessionConstants.SESSION_METADATA_FIELD,
+                    this.serializer.compress(this.serializer.serializeSessionMetadata(session, metadata)));
+            this.sessionWriter.hupdate(session.getId(), fields, deletedFields, timeout);
+            session.resetDirtyTracking();
+            setValues(true, metadata);
+            this.savedCounter.increment();
+            this.bytesWrittenCounter.increment(getSize(fields.values()));
+        } else {
+            if (this.expiryRefreshThreshold <= 0 || timeout <= 0) {
+                this.sessionWriter.expire(session.getId(), timeout);
+            }
+            this.skippedCounter.increment();
+        }
+        LOGGER.debug("Session [" + session.getId() + "] expire in [" + timeout + "] seconds.");
+    }
+
+    /** To check the session attribute is in the session meta-data, hashed or not. */
+    private boolean isPersistedAttribute(SessionMetadata metadata, String name) {
+        return metadata.getAttributeHashes().containsKey(name) || metadata.getAttributeData().containsKey(name);
+    }
+
+    /** To get the session attribute hash from the session meta-data, hashing the attribute data if not hashed yet. */
+    private byte[] getPersistedAttributeHash(SessionMetadata metadata, String name) throws IOException {
+        byte[] hash = metadata.getAttributeHashes().get(name);
+        byte[] data = metadata.getAttributeData().get(name);
+        return (hash == null && data != null) ? this.serializer.getHashCode(this.serializer.decompress(data)) : hash;
+    }
+
+    /**
+     * To check the unchanged session expiry is due for refresh, as the refresh threshold percentage of the session
+     * timeout has elapsed since the session is last written. The session is then re-written with its refresh time, so
+     * the refresh time is known to the other nodes; the expiry of the session is not refreshed until then.
+     *
+     * @param context - session context, carrying the last refresh time of the persisted session.
+     * @param timeout - session timeout in seconds.
+     * @return - Returns false, if the refresh threshold is disabled.
+     */
+    private boolean isExpiryRefreshDue(SessionContext context, int timeout) {
+        if (this.expiryRefreshThreshold <= 0 || timeout <= 0 || context == null || context.getMetadata() == null) {
+            return false;
+        }
+        long elapsedTime = System.currentTimeMillis() - context.getMetadata().getLastRefreshedTime();
+        return elapsedTime >= timeout * 10L * this.expiryRefreshThreshold;
+    }
+
+    /** To de-serialize session object from data cache hash fields. */
+    private void deserializeSessionFields(Map<String, byte[]> fields, Session session, SessionMetadata metadata)
+            throws IOException, ClassNotFoundException {
+        this.serializer.deserializeSessionMetadata(fields.get(SessionConstants.SESSION_METADATA_FIELD), session, metadata);
+
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            if (!field.getKey().startsWith(SessionConstants.SESSION_ATTRIBUTE_FIELD_PREFIX)) {
+                continue;
+            }
+            String name = field.getKey().substring(SessionConstants.SESSION_ATTRIBUTE_FIELD_PREFIX.length());
+            if (this.attributeLazyLoadEnabled) {
+                // hashed only if the attribute is accessed and then saved.
+                session.loadAttribute(name, new SerializedAttribute(field.getValue(), this.serializer));
+                metadata.getAttributeData().put(name, field.getValue());
+            } else {
+                byte[] data = this.serializer.decompress(field.getValue());
+                session.loadAttribute(name, this.serializer.deserializeSessionAttribute(data));
+                metadata.getAttributeHashes().put(name, this.serializer.getHashCode(data));
+            }
+        }
+    }
+
+    /**
+     * To save the new session to data cache, only if the session id is not in use.
+     *
+     * @param session - new session.
+     * @return - Returns false, if the session id is already in use.
+     */
+    private boolean saveNewSession(Session session) throws IOException {
+        SessionMetadata metadata = new SessionMetadata();
+        int timeout = getSessionTimeout(session);
+        Long created;
+        if (this.hashStorageEnabled) {
+            Map<String, byte[]> fields = new HashMap<>();
+            for (Enumeration<String> names = session.getAttributeNames(); names.hasMoreElements(); ) {
+                String name = names.nextElement();
+                byte[] value = this.serializer.serializeSessionAttribute(session.getAttribute(name));
+                metadata.getAttributeHashes().put(name, this.serializer.getHashCode(value));
+                fields.put(SessionConstants.SESSION_ATTRIBUTE_FIELD_PREFIX + name, this.serializer.compress(value));
+            }
+            fields.put(SessionConstants.SESSION_METADATA_FIELD,
+                    this.serializer.compress(this.serializer.serializeSessionMetadata(session, metadata)));
+            created = this.dataCache.hsetnxex(session.getId(), fields, timeout);
+            this.bytesWrittenCounter.increment(getSize(fields.values()));
+        } else {
+            byte[] data = this.serializer.compress(this.serializer.serializeSessionData(session, metadata));
+            created = this.dataCache.setnxex(session.getId(), data, timeout);
+            this.bytesWrittenCounter.increment(data.length);
+        }
+
+        if (created == null || created == 0L) {
+            return false;
+        }
+        session.resetDirtyTracking();
+        setValues(session.getId(), session, true, metadata);
+        return true;
+    }
+
+    /**
+     * To start loading the requested session from data cache, so the load overlaps with the request processing
+     * until the session is first accessed.
+     */
+    void prefetchSession(String sessionId) {
+        if (this.asyncDataCache == null || sessionId == null || this.sessionWriter.isPending(sessionId)) {
+            return;
+        }
+
+        SessionContext context = this.sessionContext.get();
+        if (context != null && (sessionId.equals(context.getId()) || sessionId.equals(context.getPrefetchedId()))) {
+            return;
+        }
+        try {
+            Future<?> data = this.hashStorageEnabled ? this.asyncDataCache.hgetAllAsync(sessionId) : this.asyncDataCache.getAsync(sessionId);
+            if (context == null) {
+                context = new SessionContext();
+                this.sessionContext.set(context);
+            }
+            context.setPrefetchedData(sessionId, data);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Error occurred while prefetching the session..", ex);
+        }
+    }
+
+    /** To discard the prefetched session data, not used by the request. */
+    void clearPrefetchedSession() {
+        SessionContext context = this.sessionContext.get();
+        if (context != null) {
+            context.setPrefetchedData(null, null);
+        }
+    }
+
+    /** To remove and get the prefetched session data, if prefetched for the session id. */
+    private Future<?> removePrefetchedData(String sessionId) {
+        SessionContext context = this.sessionContext.get();
+        if (context == null || context.getPrefetchedData() == null) {
+            return null;
+        }
+        Future<?> data = (sessionId != null && sessionId.equals(context.getPrefetchedId())) ? context.getPrefetchedData() : null;
+        context.setPrefetchedData(null, null);
+        return data;
+    }
+
+    /**
+     * To wait for the prefetched session data, up to the redis timeout.
+     *
+     * @throws TimeoutException - if the prefetched data is not received within the timeout.
+     */
+    private Object getPrefetchedValue(Future<?> data) throws TimeoutException {
+        try {
+            // redis timeout 0 is infinite.
+            return (this.prefetchTimeout > 0) ? data.get(this.prefetchTimeout, TimeUnit.MILLISECONDS) : data.get();
+        } catch (ExecutionException ex) {
+            throw (ex.getCause() instanceof RuntimeException) ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
     /** To process post request process. */
     void afterRequest() {
         Session session = null;
@@ -278,9 +652,19 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void propertyChange(PropertyChangeEvent event) {
+        if (event.getSource() == this.context && "sessionTimeout".equals(event.getPropertyName())
+                && event.getNewValue() instanceof Integer) {
+            this.contextSessionTimeout = (Integer) event.getNewValue() * 60;
+            LOGGER.info("The sessions will expire after " + (getSessionTimeout(null)) + " seconds.");
+        }
+    }
+
     /** To get session timeout. */
     private int getSessionTimeout(Session session) {
-        int timeout = getContextIns().getSessionTimeout() * 60;
+        int timeout = this.contextSessionTimeout;
         int sessionTimeout = (session == null) ? 0 : session.getMaxInactiveInterval();
         return (sessionTimeout < timeout) ? (Math.max(timeout, 1800)) : sessionTimeout;
     }
@@ -309,6 +693,20 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         setValues(isPersisted, metadata);
     }
 
+    /** To get the session manager metrics. */
+    public SessionMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /** To get the total size of the values. */
+    private static long getSize(Collection<byte[]> values) {
+        long size = 0;
+        for (byte[] value : values) {
+            size += (value != null) ? value.length : 0;
+        }
+        return size;
+    }
+
     /** To get catalina context instance. */
     private Context getContextIns() {
         try {
@@ -346,9 +744,10 @@ public class SessionManager extends ManagerBase implements Lifecycle {
         }
         try {
             byte[] data = this.serializer.serializeSingleSignOnEntry(entry);
-            this.dataCache.set(ssoId, data);
             if (this.ssoTimeout > 0) {
-                this.dataCache.expire(ssoId, this.ssoTimeout);
+                this.dataCache.setex(ssoId, data, this.ssoTimeout);
+            } else {
+                this.dataCache.set(ssoId, data);
             }
         } catch (IOException ex) {
             LOGGER.error("Error occurred while serializing the single-sign-on entry..", ex);
@@ -357,8 +756,10 @@ public class SessionManager extends ManagerBase implements Lifecycle {
 
     /** To get single-sign-on entry from cache. */
     SingleSignOnEntry getSingleSignOnEntry(String ssoId) {
+        this.ssoLookupCounter.increment();
         byte[] data = this.dataCache.get(ssoId);
         if (data == null) {
+            this.ssoMissCounter.increment();
             return null;
         }
 
@@ -0,0 +1,357 @@
+package tomcat.request.session.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tomcat.request.session.data.cache.DataCache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Session data-cache writer.
+ *
+ * In asynchronous mode, the session writes are handed over to a bounded executor, so the data-cache round trip
+ * is not added to the request latency. Writes are ordered per session; a write queued for a session absorbs the
+ * later writes of the same session, so only the latest session state is written. A write made while the session
+ * write is in progress is queued behind it, and handed over to the executor once the write in progress completes.
+ * When the executor queue is full, the write is executed on the calling thread, or discarded if the synchronous
+ * fallback is disabled.
+ */
+class SessionWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionWriter.class);
+
+    private static final long SHUTDOWN_WAIT_TIME = 30000L;
+
+    private final DataCache dataCache;
+    private final ThreadPoolExecutor executor;
+    private final boolean syncFallbackEnabled;
+    private final ConcurrentMap<String, SessionWrite> pending = new ConcurrentHashMap<>();
+
+    /**
+     * @param dataCache           - data-cache.
+     * @param asyncEnabled        - true, to write the sessions asynchronously.
+     * @param threads             - number of asynchronous writer threads.
+     * @param queueSize           - maximum number of sessions waiting to be written.
+     * @param syncFallbackEnabled - true, to write the session on the calling thread when the queue is full.
+     */
+    SessionWriter(DataCache dataCache, boolean asyncEnabled, int threads, int queueSize, boolean syncFallbackEnabled) {
+        this.dataCache = dataCache;
+        this.syncFallbackEnabled = syncFallbackEnabled;
+        this.executor = asyncEnabled ? new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new WriterThreadFactory()) : null;
+    }
+
+    /** To set value with expiry in data-cache. */
+    void setex(String key, byte[] value, int seconds) {
+        if (this.executor == null) {
+            this.dataCache.setex(key, value, seconds);
+            return;
+        }
+        write(key, new Write(WriteType.SETEX, value, null, null, seconds));
+    }
+
+    /** To set and remove hash fields with expiry in data-cache. */
+    void hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+        if (this.executor == null) {
+            this.dataCache.hupdate(key, fields, deletedFields, seconds);
+            return;
+        }
+        write(key, new Write(WriteType.HUPDATE, null, fields, deletedFields, seconds));
+    }
+
+    /** To set expiry in data-cache. */
+    void expire(String key, int seconds) {
+        if (this.executor == null) {
+            this.dataCache.expire(key, seconds);
+            return;
+        }
+        write(key, new Write(WriteType.EXPIRE, null, null, null, seconds));
+    }
+
+    /** To delete value from data-cache. */
+    void delete(String key) {
+        if (this.executor == null) {
+            this.dataCache.delete(key);
+            return;
+        }
+        write(key, new Write(WriteType.DELETE, null, null, null, 0));
+    }
+
+    /**
+     * To execute the pending write of the session on the calling thread, so the session is read back as written.
+     *
+     * @param key - session id.
+     * @return - Returns true, if the session had a pending write.
+     */
+    boolean flush(String key) {
+        SessionWrite write = (key != null) ? this.pending.get(key) : null;
+        if (write != null) {
+            write.run();
+        }
+        return write != null;
+    }
+
+    /** To check the session has a pending write. */
+    boolean isPending(String key) {
+        return key != null && this.pending.containsKey(key);
+    }
+
+    /** To write the pending sessions and stop the writer threads. */
+    void shutdown() {
+        if (this.executor == null) {
+            return;
+        }
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(SHUTDOWN_WAIT_TIME, TimeUnit.MILLISECONDS)) {
+                List<Runnable> writes = this.executor.shutdownNow();
+                LOGGER.warn("Session writer is not terminated, discarded " + writes.size() + " pending session writes..");
+            }
+        } catch (InterruptedException ex) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * To merge the write into the pending write of the session, else to queue a new write. If the pending write is
+     * in progress, the new write is queued behind it, so the writes of the session are not executed out of order.
+     */
+    private void write(String key, Write write) {
+        while (true) {
+            SessionWrite pendingWrite = this.pending.get(key);
+            if (pendingWrite == null) {
+                SessionWrite sessionWrite = new SessionWrite(key, write, false);
+                if (this.pending.putIfAbsent(key, sessionWrite) == null) {
+                    submit(sessionWrite);
+                    return;
+                }
+                continue;
+            }
+            if (pendingWrite.merge(write)) {
+                return;
+            }
+
+            SessionWrite sessionWrite = new SessionWrite(key, write, true);
+            if (this.pending.replace(key, pendingWrite, sessionWrite)) {
+                if (!pendingWrite.queue(sessionWrite)) {
+                    // the pending write completed meanwhile.
+                    sessionWrite.release();
+                    submit(sessionWrite);
+                }
+                return;
+            }
+        }
+    }
+
+    private void submit(SessionWrite sessionWrite) {
+        try {
+            this.executor.execute(sessionWrite);
+        } catch (RejectedExecutionException ex) {
+            // on shutdown, the writes queued behind the writes in progress are executed on the completing thread.
+            if (this.syncFallbackEnabled || this.executor.isShutdown()) {
+                sessionWrite.run();
+            } else {
+                LOGGER.warn("Session writer queue is full, discarded the session write: " + sessionWrite.key);
+                sessionWrite.complete();
+            }
+        }
+    }
+
+    /** Session write type. */
+    private enum WriteType {
+        SETEX,
+        HUPDATE,
+        EXPIRE,
+        DELETE
+    }
+
+    /** Session write. */
+    private static class Write {
+        private final WriteType type;
+        private final byte[] value;
+        private final Map<String, byte[]> fields;
+        private final Set<String> deletedFields;
+        private final int seconds;
+
+        Write(WriteType type, byte[] value, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+            this.type = type;
+            this.value = value;
+            this.fields = fields;
+            this.deletedFields = deletedFields;
+            this.seconds = seconds;
+        }
+    }
+
+    /**
+     * Pending session write, holding the merged writes of a session until executed. A write queued behind the write
+     * in progress is blocked until that write completes.
+     */
+    private class SessionWrite implements Runnable {
+        private final String key;
+        private WriteType type;
+        private byte[] value;
+        private Map<String, byte[]> fields;
+        private Set<String> deletedFields;
+        private int seconds;
+        private boolean deleteFirst;
+        private boolean blocked;
+        private boolean executed;
+        private boolean running;
+        private SessionWrite next;
+
+        SessionWrite(String key, Write write, boolean blocked) {
+            this.key = key;
+            this.blocked = blocked;
+            this.type = write.type;
+            this.value = write.value;
+            this.fields = (write.fields != null) ? new HashMap<>(write.fields) : null;
+            this.deletedFields = (write.deletedFields != null) ? new HashSet<>(write.deletedFields) : null;
+            this.seconds = write.seconds;
+        }
+
+        /** To merge the later write of the session. Returns false, if this write is already executed. */
+        synchronized boolean merge(Write write) {
+            if (this.executed) {
+                return false;
+            }
+
+            switch (write.type) {
+                case SETEX:
+                case DELETE:
+                    this.type = write.type;
+                    this.value = write.value;
+                    this.fields = null;
+                    this.deletedFields = null;
+                    this.deleteFirst = false;
+                    break;
+                case EXPIRE:
+                    if (this.type == WriteType.DELETE) {
+                        return true;
+                    }
+                    break;
+                case HUPDATE:
+                    if (this.type == WriteType.HUPDATE) {
+                        this.fields.keySet().removeAll(write.deletedFields);
+                        this.fields.putAll(write.fields);
+                        this.deletedFields.removeAll(write.fields.keySet());
+                        this.deletedFields.addAll(write.deletedFields);
+                    } else {
+                        this.deleteFirst = this.deleteFirst || this.type == WriteType.DELETE;
+                        this.type = write.type;
+                        this.value = null;
+                        this.fields = new HashMap<>(write.fields);
+                        this.deletedFields = new HashSet<>(write.deletedFields);
+                    }
+                    break;
+            }
+            this.seconds = write.seconds;
+            return true;
+        }
+
+        /** To queue the next write of the session behind this write. Returns false, if this write is completed. */
+        synchronized boolean queue(SessionWrite write) {
+            if (this.executed && !this.running) {
+                return false;
+            }
+            this.next = write;
+            return true;
+        }
+
+        /** To unblock the write, once the previous write of the session is completed. */
+        synchronized void release() {
+            this.blocked = false;
+            notifyAll();
+        }
+
+        /** To mark the write completed, and to hand over the write queued behind it to the executor. */
+        void complete() {
+            SessionWrite nextWrite;
+            synchronized (this) {
+                this.executed = true;
+                this.running = false;
+                nextWrite = this.next;
+                notifyAll();
+            }
+            if (nextWrite == null) {
+                pending.remove(this.key, this);
+            } else {
+                nextWrite.release();
+                submit(nextWrite);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         * Waits for the previous write of the session, or for this write if it is in progress on another thread.
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                try {
+                    while (this.blocked || this.running) {
+                        wait();
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (this.executed) {
+                    return;
+                }
+                this.executed = true;
+                this.running = true;
+            }
+
+            try {
+                if (this.deleteFirst) {
+                    dataCache.delete(this.key);
+                }
+                switch (this.type) {
+                    case SETEX:
+                        dataCache.setex(this.key, this.value, this.seconds);
+                        break;
+                    case HUPDATE:
+                        dataCache.hupdate(this.key, this.fields, this.deletedFields, this.seconds);
+                        break;
+                    case EXPIRE:
+                        dataCache.expire(this.key, this.seconds);
+                        break;
+                    case DELETE:
+                        dataCache.delete(this.key);
+                        break;
+                }
+            } catch (Exception ex) {
+                LOGGER.error("Error occurred while writing the session to data cache: " + this.key, ex);
+            } finally {
+                complete();
+            }
+        }
+    }
+
+    /** Session writer thread factory, which creates daemon threads to not block the server shutdown. */
+    private static class WriterThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        /** {@inheritDoc} */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "redis-session-writer-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -72,6 +72,9 @@ public class SingleSignOnValve extends SingleSignOn {
                 } else {
                     LOGGER.debug("singleSignOn.debug.principalCheck, ssoId: {}", cookie.getValue());
 
+                    // the requested session is loaded in parallel with the single-sign-on entry.
+                    this.manager.prefetchSession(request.getRequestedSessionId());
+
                     SingleSignOnEntry entry = this.manager.getSingleSignOnEntry(cookie.getValue());
                     if (entry == null) {
                         LOGGER.debug("singleSignOn.debug.principalNotFound, ssoId: {}", cookie.getValue());
@@ -105,6 +108,10 @@ public class SingleSignOnValve extends SingleSignOn {
         } catch (IOException | ServletException | RuntimeException ex) {
             LOGGER.error("Error processing request", ex);
             throw new BackendException();
+        } finally {
+            if (this.manager != null) {
+                this.manager.clearPrefetchedSession();
+            }
         }
     }
 
@@ -0,0 +1,185 @@
+package tomcat.request.session.util;
+
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class HashUtil {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final ThreadLocal<MessageDigest> MD5_DIGESTER = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException("Unable to get MessageDigest instance for MD5", ex);
+            }
+        }
+    };
+
+    /**
+     * To get hash code.
+     *
+     * @param algorithm - hash algorithm.
+     * @param data      - data to be hashed.
+     * @param offset    - start offset in the data.
+     * @param length    - number of bytes to hash.
+     * @return - Returns the 16 byte hash code.
+     */
+    public static byte[] hash(HashAlgorithm algorithm, byte[] data, int offset, int length) {
+        switch (algorithm) {
+            case MURMUR3:
+                return murmur3(data, offset, length);
+            case MD5:
+            default:
+                return md5(data, offset, length);
+        }
+    }
+
+    /**
+     * To get MD5 hash code.
+     *
+     * @param data   - data to be hashed.
+     * @param offset - start offset in the data.
+     * @param length - number of bytes to hash.
+     * @return - Returns the 16 byte hash code.
+     */
+    public static byte[] md5(byte[] data, int offset, int length) {
+        MessageDigest digester = MD5_DIGESTER.get();
+        digester.reset();
+        digester.update(data, offset, length);
+        return digester.digest();
+    }
+
+    /**
+     * To get MurmurHash3 (x64, 128 bit) hash code.
+     *
+     * @param data   - data to be hashed.
+     * @param offset - start offset in the data.
+     * @param length - number of bytes to hash.
+     * @return - Returns the 16 byte hash code.
+     */
+    @SuppressWarnings("fallthrough")
+    public static byte[] murmur3(byte[] data, int offset, int length) {
+        long h1 = 0L;
+        long h2 = 0L;
+
+        int blocks = length >>> 4;
+        for (int i = 0; i < blocks; i++) {
+            int index = offset + (i << 4);
+            long k1 = getLong(data, index);
+            long k2 = getLong(data, index + 8);
+
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        int tail = offset + (blocks << 4);
+        long k1 = 0L;
+        long k2 = 0L;
+        // the cases fall through intentionally, each one mixes in one more tail byte.
+        switch (length & 15) {
+            case 15:
+                k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+            case 14:
+                k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+            case 13:
+                k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+            case 12:
+                k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+            case 11:
+                k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+            case 10:
+                k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+            case 9:
+                k2 ^= ((long) data[tail + 8] & 0xff);
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+            case 7:
+                k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+            case 6:
+                k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+            case 5:
+                k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+            case 4:
+                k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+            case 3:
+                k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+            case 2:
+                k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+            case 1:
+                k1 ^= ((long) data[tail] & 0xff);
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] hash = new byte[16];
+        putLong(hash, 0, h1);
+        putLong(hash, 8, h2);
+        return hash;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /** To read little-endian long value. */
+    private static long getLong(byte[] data, int index) {
+        return ((long) data[index] & 0xff)
+                | (((long) data[index + 1] & 0xff) << 8)
+                | (((long) data[index + 2] & 0xff) << 16)
+                | (((long) data[index + 3] & 0xff) << 24)
+                | (((long) data[index + 4] & 0xff) << 32)
+                | (((long) data[index + 5] & 0xff) << 40)
+                | (((long) data[index + 6] & 0xff) << 48)
+                | (((long) data[index + 7] & 0xff) << 56);
+    }
+
+    /** To write little-endian long value. */
+    private static void putLong(byte[] data, int index, long value) {
+        for (int i = 0; i < 8; i++) {
+            data[index + i] = (byte) (value >>> (i * 8));
+        }
+    }
+}
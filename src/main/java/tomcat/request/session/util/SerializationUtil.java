@@ -1,101 +1,216 @@
 package tomcat.request.session.util;
 
-import org.apache.catalina.util.CustomObjectInputStream;
+import tomcat.request.session.codec.CompressionCodec;
+import tomcat.request.session.codec.SessionCodec;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+import tomcat.request.session.metrics.Metric;
+import tomcat.request.session.metrics.SessionMetrics;
 import tomcat.request.session.model.Session;
 import tomcat.request.session.model.SessionMetadata;
 import tomcat.request.session.model.SingleSignOnEntry;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.security.MessageDigest;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /** author: Ranjith Manickam @ 12 Jul' 2018 */
 public class SerializationUtil {
 
-    private ClassLoader loader;
+    private static final byte COMPRESSED_DATA_MAGIC = (byte) 0xCD;
+    private static final int COMPRESSED_DATA_HEADER_LENGTH = 6;
 
-    /** To set class loader. */
-    public void setClassLoader(ClassLoader loader) {
-        this.loader = loader;
-    }
+    private final SessionCodec codec;
+    private final List<SessionCodec> codecs;
+    private final HashAlgorithm hashAlgorithm;
+    private final CompressionCodec compressionCodec;
+    private final List<CompressionCodec> compressionCodecs;
+    private final int compressionThreshold;
 
-    /** To get session attributes hash code. */
-    public byte[] getSessionAttributesHashCode(Session session) throws IOException {
-        byte[] serialized;
-        Map<String, Object> attributes = new HashMap<>();
+    private final Metric serializeSessionDataMetric;
+    private final Metric deserializeSessionDataMetric;
+    private final Metric serializeSessionMetadataMetric;
+    private final Metric deserializeSessionMetadataMetric;
+    private final Metric serializeSessionAttributeMetric;
+    private final Metric deserializeSessionAttributeMetric;
+    private final Metric serializedSizeMetric;
+    private final Metric deserializedSizeMetric;
 
-        for (Enumeration<String> enumerator = session.getAttributeNames();
-             enumerator.hasMoreElements(); ) {
-            String key = enumerator.nextElement();
-            attributes.put(key, session.getAttribute(key));
-        }
+    public SerializationUtil(SessionCodec codec, List<SessionCodec> codecs, HashAlgorithm hashAlgorithm,
+                             CompressionCodec compressionCodec, List<CompressionCodec> compressionCodecs,
+                             int compressionThreshold) {
+        this(codec, codecs, hashAlgorithm, compressionCodec, compressionCodecs, compressionThreshold,
+                SessionMetrics.DISABLED);
+    }
 
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bos))) {
-            oos.writeUnshared(attributes);
-            oos.flush();
-            serialized = bos.toByteArray();
-        }
+    /**
+     * @param codec                - session codec, used to encode the data.
+     * @param codecs               - session codecs, used to decode the data based on its format.
+     * @param hashAlgorithm        - hash algorithm, used to compute the hash code of the encoded data.
+     * @param compressionCodec     - compression codec, used to compress the encoded data. null, to disable compression.
+     * @param compressionCodecs    - compression codecs, used to decompress the data based on its header.
+     * @param compressionThreshold - encoded data larger than this size (in bytes) is compressed.
+     * @param metrics              - session manager metrics, to record the serialization time and the data size.
+     */
+    public SerializationUtil(SessionCodec codec, List<SessionCodec> codecs, HashAlgorithm hashAlgorithm,
+                             CompressionCodec compressionCodec, List<CompressionCodec> compressionCodecs,
+                             int compressionThreshold, SessionMetrics metrics) {
+        this.codec = codec;
+        this.codecs = codecs;
+        this.hashAlgorithm = hashAlgorithm;
+        this.compressionCodec = compressionCodec;
+        this.compressionCodecs = compressionCodecs;
+        this.compressionThreshold = compressionThreshold;
+        this.serializeSessionDataMetric = metrics.getMetric("serialization.serializeSessionData", SessionMetrics.MICROSECONDS);
+        this.deserializeSessionDataMetric = metrics.getMetric("serialization.deserializeSessionData", SessionMetrics.MICROSECONDS);
+        this.serializeSessionMetadataMetric = metrics.getMetric("serialization.serializeSessionMetadata", SessionMetrics.MICROSECONDS);
+        this.deserializeSessionMetadataMetric = metrics.getMetric("serialization.deserializeSessionMetadata", SessionMetrics.MICROSECONDS);
+        this.serializeSessionAttributeMetric = metrics.getMetric("serialization.serializeSessionAttribute", SessionMetrics.MICROSECONDS);
+        this.deserializeSessionAttributeMetric = metrics.getMetric("serialization.deserializeSessionAttribute", SessionMetrics.MICROSECONDS);
+        this.serializedSizeMetric = metrics.getMetric("serialization.serializedSize", SessionMetrics.BYTES);
+        this.deserializedSizeMetric = metrics.getMetric("serialization.deserializedSize", SessionMetrics.BYTES);
+    }
 
-        MessageDigest digester;
-        try {
-            digester = MessageDigest.getInstance("MD5");
-        } catch (Exception ex) {
-            throw new RuntimeException("Unable to get MessageDigest instance for MD5", ex);
-        }
-        return digester.digest(serialized);
+    /** To get hash code of the serialized data, uncompressed. */
+    public byte[] getHashCode(byte[] data) {
+        return HashUtil.hash(this.hashAlgorithm, data, 0, data.length);
     }
 
-    /** To serialize session object. */
+    /**
+     * To serialize session object and set the attributes hash code to the meta-data. The data is not compressed, it
+     * is compressed on write to data cache.
+     */
     public byte[] serializeSessionData(Session session, SessionMetadata metadata) throws IOException {
-        byte[] serialized;
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bos))) {
-            oos.writeObject(metadata);
-            session.writeObjectData(oos);
-            oos.flush();
-            serialized = bos.toByteArray();
-        }
-        return serialized;
+        long start = System.nanoTime();
+        byte[] data = this.codec.encodeSessionData(session, metadata);
+        recordSerialized(this.serializeSessionDataMetric, start, data);
+        return data;
     }
 
     /** To de-serialize session object. */
     public void deserializeSessionData(byte[] data, Session session, SessionMetadata metadata)
             throws IOException, ClassNotFoundException {
-        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
-             ObjectInputStream ois = new CustomObjectInputStream(bis, this.loader)) {
-            SessionMetadata serializedMetadata = (SessionMetadata) ois.readObject();
-            metadata.copyFieldsFrom(serializedMetadata);
-            session.readObjectData(ois);
-        }
+        long start = System.nanoTime();
+        byte[] decompressed = decompress(data);
+        getSessionCodec(decompressed).decodeSessionData(decompressed, session, metadata);
+        recordDeserialized(this.deserializeSessionDataMetric, start, decompressed);
+    }
+
+    /** To serialize session meta-data and session state, excluding the attributes. The data is not compressed. */
+    public byte[] serializeSessionMetadata(Session session, SessionMetadata metadata) throws IOException {
+        long start = System.nanoTime();
+        byte[] data = this.codec.encodeSessionMetadata(session, metadata);
+        recordSerialized(this.serializeSessionMetadataMetric, start, data);
+        return data;
     }
 
-    /** To serialize single-sign-on entry. */
+    /** To de-serialize session meta-data and session state, excluding the attributes. */
+    public void deserializeSessionMetadata(byte[] data, Session session, SessionMetadata metadata)
+            throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        byte[] decompressed = decompress(data);
+        getSessionCodec(decompressed).decodeSessionMetadata(decompressed, session, metadata);
+        recordDeserialized(this.deserializeSessionMetadataMetric, start, decompressed);
+    }
+
+    /** To serialize session attribute value. The data is not compressed. */
+    public byte[] serializeSessionAttribute(Object value) throws IOException {
+        long start = System.nanoTime();
+        byte[] data = this.codec.encodeSessionAttribute(value);
+        recordSerialized(this.serializeSessionAttributeMetric, start, data);
+        return data;
+    }
+
+    /** To de-serialize session attribute value. */
+    public Object deserializeSessionAttribute(byte[] data) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        byte[] decompressed = decompress(data);
+        Object value = getSessionCodec(decompressed).decodeSessionAttribute(decompressed);
+        recordDeserialized(this.deserializeSessionAttributeMetric, start, decompressed);
+        return value;
+    }
+
+    /** To serialize single-sign-on entry, compressed for the write to data cache. */
     public byte[] serializeSingleSignOnEntry(SingleSignOnEntry entry) throws IOException {
-        byte[] serialized;
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(bos))) {
-            entry.writeObjectData(oos);
-            oos.flush();
-            serialized = bos.toByteArray();
-        }
-        return serialized;
+        return compress(this.codec.encodeSingleSignOnEntry(entry));
     }
 
     /** To de-serialize single-sign-on entry. */
     public void deserializeSingleSignOnEntry(byte[] data, SingleSignOnEntry entry)
             throws IOException, ClassNotFoundException {
-        try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(data));
-             ObjectInputStream ois = new CustomObjectInputStream(bis, this.loader)) {
-            entry.readObjectData(ois);
+        byte[] decompressed = decompress(data);
+        getSessionCodec(decompressed).decodeSingleSignOnEntry(decompressed, entry);
+    }
+
+    /** To record the serialization time and the uncompressed serialized data size. */
+    private void recordSerialized(Metric metric, long startTime, byte[] data) {
+        metric.recordTime(startTime);
+        this.serializedSizeMetric.record(data.length);
+    }
+
+    /** To record the de-serialization time and the uncompressed serialized data size. */
+    private void recordDeserialized(Metric metric, long startTime, byte[] data) {
+        metric.recordTime(startTime);
+        this.deserializedSizeMetric.record(data.length);
+    }
+
+    /** To get the session codec, which can decode the data. */
+    private SessionCodec getSessionCodec(byte[] data) throws IOException {
+        for (SessionCodec sessionCodec : this.codecs) {
+            if (sessionCodec.canDecode(data)) {
+                return sessionCodec;
+            }
+        }
+        throw new IOException("Unknown session data format");
+    }
+
+    /**
+     * To compress the encoded data, if it is larger than the compression threshold. Compressed data is written with
+     * a header (magic byte, compression codec id and original length), so the uncompressed data stays readable.
+     * Data is kept uncompressed, if the compression doesn't reduce its size. Serialized data is compressed only on
+     * write to data cache, after the hash comparison, so the unchanged sessions are not compressed.
+     */
+    public byte[] compress(byte[] data) throws IOException {
+        if (this.compressionCodec == null || data.length <= this.compressionThreshold) {
+            return data;
+        }
+
+        byte[] compressed = this.compressionCodec.compress(data, 0, data.length);
+        if (compressed.length + COMPRESSED_DATA_HEADER_LENGTH >= data.length) {
+            return data;
+        }
+
+        byte[] value = new byte[compressed.length + COMPRESSED_DATA_HEADER_LENGTH];
+        ByteBuffer.wrap(value)
+                .put(COMPRESSED_DATA_MAGIC)
+                .put(this.compressionCodec.getId())
+                .putInt(data.length)
+                .put(compressed);
+        return value;
+    }
+
+    /** To get the uncompressed length of the data, read from the compressed data header. */
+    public int getUncompressedLength(byte[] data) {
+        if (data.length < COMPRESSED_DATA_HEADER_LENGTH || data[0] != COMPRESSED_DATA_MAGIC) {
+            return data.length;
+        }
+        return ByteBuffer.wrap(data, 2, COMPRESSED_DATA_HEADER_LENGTH - 2).getInt();
+    }
+
+    /** To decompress the data read from data cache, if it is compressed. */
+    public byte[] decompress(byte[] data) throws IOException {
+        if (data.length < COMPRESSED_DATA_HEADER_LENGTH || data[0] != COMPRESSED_DATA_MAGIC) {
+            return data;
+        }
+
+        ByteBuffer header = ByteBuffer.wrap(data, 1, COMPRESSED_DATA_HEADER_LENGTH - 1);
+        byte id = header.get();
+        int originalLength = header.getInt();
+        for (CompressionCodec compression : this.compressionCodecs) {
+            if (compression.getId() == id) {
+                return compression.decompress(data, COMPRESSED_DATA_HEADER_LENGTH,
+                        data.length - COMPRESSED_DATA_HEADER_LENGTH, originalLength);
+            }
         }
+        throw new IOException("Unknown compression codec [" + id + "]");
     }
 }
@@ -0,0 +1,177 @@
+package tomcat.request.session.data.cache.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedLruCacheTest {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final SegmentedLruCache.Weigher<String> LENGTH_WEIGHER = new SegmentedLruCache.Weigher<String>() {
+        @Override
+        public long weigh(String key, String value) {
+            return value.length();
+        }
+    };
+
+    @Test
+    public void evictsLeastRecentlyAddedEntry() {
+        // two entries per segment.
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(2 * SEGMENT_COUNT, 0, 60000L, LENGTH_WEIGHER);
+        List<String> keys = getSegmentKeys(3);
+
+        cache.put(keys.get(0), "a");
+        cache.put(keys.get(1), "b");
+        cache.put(keys.get(2), "c");
+
+        assertFalse(cache.containsKey(keys.get(0)));
+        assertTrue(cache.containsKey(keys.get(1)));
+        assertTrue(cache.containsKey(keys.get(2)));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsProbationEntryBeforeAccessedEntry() {
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(2 * SEGMENT_COUNT, 0, 60000L, LENGTH_WEIGHER);
+        List<String> keys = getSegmentKeys(3);
+
+        cache.put(keys.get(0), "a");
+        cache.put(keys.get(1), "b");
+        // the access promotes the oldest entry to the protected list, on the next write.
+        assertEquals("a", cache.get(keys.get(0)));
+        cache.put(keys.get(2), "c");
+
+        assertTrue(cache.containsKey(keys.get(0)));
+        assertFalse(cache.containsKey(keys.get(1)));
+        assertTrue(cache.containsKey(keys.get(2)));
+    }
+
+    @Test
+    public void replacedProtectedEntryStaysProtected() {
+        // three entries per segment, two of them protected.
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(3 * SEGMENT_COUNT, 0, 60000L, LENGTH_WEIGHER);
+        List<String> keys = getSegmentKeys(5);
+
+        cache.put(keys.get(0), "a");
+        assertEquals("a", cache.get(keys.get(0)));
+        cache.put(keys.get(1), "b");
+        // replaced after its promotion, so it is not demoted to the probation list.
+        cache.put(keys.get(0), "aa");
+        cache.put(keys.get(2), "c");
+        cache.put(keys.get(3), "d");
+        cache.put(keys.get(4), "e");
+
+        assertEquals("aa", cache.peek(keys.get(0)));
+        assertFalse(cache.containsKey(keys.get(1)));
+        assertFalse(cache.containsKey(keys.get(2)));
+        assertTrue(cache.containsKey(keys.get(3)));
+        assertTrue(cache.containsKey(keys.get(4)));
+        assertEquals(2, cache.getEvictionCount());
+        assertEquals(4, cache.weightedSize());
+    }
+
+    @Test
+    public void evictsToStayWithinWeight() {
+        // weight of 10 per segment.
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(0, 10 * SEGMENT_COUNT, 60000L, LENGTH_WEIGHER);
+        List<String> keys = getSegmentKeys(3);
+
+        cache.put(keys.get(0), "aaaa");
+        cache.put(keys.get(1), "bbbb");
+        assertEquals(8, cache.weightedSize());
+
+        cache.put(keys.get(2), "cccc");
+        assertFalse(cache.containsKey(keys.get(0)));
+        assertEquals(8, cache.weightedSize());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void replacesValueAndWeight() {
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(0, 0, 60000L, LENGTH_WEIGHER);
+
+        cache.put("key", "aaaa");
+        cache.put("key", "bb");
+
+        assertEquals("bb", cache.get("key"));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.weightedSize());
+
+        assertEquals("bb", cache.remove("key"));
+        assertNull(cache.remove("key"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(0, 0, 60000L, LENGTH_WEIGHER);
+
+        cache.put("key", "value");
+        cache.get("key");
+        cache.get("key");
+        cache.get("missing");
+        // peek doesn't record the access.
+        cache.peek("key");
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void expiresIdleEntries() throws InterruptedException {
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(0, 0, 100L, LENGTH_WEIGHER);
+        cache.put("key", "value");
+
+        Thread.sleep(200L);
+        // idle entries are treated as absent on read, before they are removed.
+        assertNull(cache.get("key"));
+        assertTrue(cache.containsKey("key"));
+
+        // the entry is removed once its timer wheel bucket (~1 sec) has elapsed.
+        Thread.sleep(1200L);
+        cache.removeExpired();
+        assertFalse(cache.containsKey("key"));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void accessPostponesExpiry() throws InterruptedException {
+        SegmentedLruCache<String> cache = new SegmentedLruCache<>(0, 0, 1000L, LENGTH_WEIGHER);
+        cache.put("key", "value");
+
+        Thread.sleep(600L);
+        assertEquals("value", cache.get("key"));
+        Thread.sleep(600L);
+        cache.removeExpired();
+        assertEquals("value", cache.get("key"));
+        assertEquals(0, cache.getExpirationCount());
+    }
+
+    /** To get the keys, which are stored in the same segment. */
+    private static List<String> getSegmentKeys(int count) {
+        List<String> keys = new ArrayList<>();
+        int segment = getSegmentIndex("key-0");
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "key-" + i;
+            if (getSegmentIndex(key) == segment) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static int getSegmentIndex(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (SEGMENT_COUNT - 1);
+    }
+}
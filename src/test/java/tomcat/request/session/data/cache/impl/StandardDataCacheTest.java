@@ -0,0 +1,212 @@
+package tomcat.request.session.data.cache.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import tomcat.request.session.metrics.SessionMetrics;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.util.ConfigUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StandardDataCacheTest {
+
+    private static final int SEGMENT_COUNT = 16;
+    private static final int SESSION_TIMEOUT = 1800;
+
+    @ClassRule
+    public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+    private final UnreachableDataCache redis = new UnreachableDataCache();
+    private StandardDataCache dataCache;
+
+    @Before
+    public void initialize() throws IOException {
+        // one local cache entry per segment, so the second key of a segment evicts the first one.
+        Properties properties = new Properties();
+        properties.setProperty("lb.sticky-session.local-cache.max-entries", String.valueOf(SEGMENT_COUNT));
+        this.dataCache = new StandardDataCache(getConfig(properties), SESSION_TIMEOUT, SessionMetrics.DISABLED, this.redis);
+    }
+
+    @After
+    public void close() {
+        this.dataCache.close();
+    }
+
+    @Test
+    public void readsEvictedValueFromJournal() throws Exception {
+        List<String> keys = getSegmentKeys(2);
+        this.redis.setex(keys.get(0), bytes("v1"), SESSION_TIMEOUT);
+
+        this.redis.setUnreachable(true, true);
+        this.dataCache.setex(keys.get(0), bytes("v2"), SESSION_TIMEOUT);
+        this.dataCache.setex(keys.get(1), bytes("v1"), SESSION_TIMEOUT);
+
+        // evicted from the local cache, and not read from redis.
+        assertEquals("v2", string(this.dataCache.get(keys.get(0))));
+        assertEquals("v2", string(this.dataCache.getAsync(keys.get(0)).get()));
+    }
+
+    @Test
+    public void readsEvictedHashWithJournalFields() {
+        List<String> keys = getSegmentKeys(2);
+        this.dataCache.hsetnxex(keys.get(0), fields("a", "1", "b", "1", "c", "1"), SESSION_TIMEOUT);
+
+        this.redis.setUnreachable(true, false);
+        this.dataCache.hupdate(keys.get(0), fields("a", "2"), Collections.singleton("b"), SESSION_TIMEOUT);
+        this.dataCache.hsetnxex(keys.get(1), fields("a", "1"), SESSION_TIMEOUT);
+
+        // redis has the hash as of the last successful write, the journal fields are applied over it.
+        assertEquals(strings(fields("a", "2", "c", "1")), strings(this.dataCache.hgetAll(keys.get(0))));
+    }
+
+    @Test
+    public void doesNotReadDeletedValueFromRedis() {
+        List<String> keys = getSegmentKeys(1);
+        this.dataCache.setex(keys.get(0), bytes("v1"), SESSION_TIMEOUT);
+
+        this.redis.setUnreachable(true, false);
+        this.dataCache.delete(keys.get(0));
+
+        assertNull(this.dataCache.get(keys.get(0)));
+        assertEquals("v1", string(this.redis.get(keys.get(0))));
+        assertTrue(this.dataCache.hgetAll(keys.get(0)).isEmpty());
+    }
+
+    private static Config getConfig(Properties properties) throws IOException {
+        File base = FOLDER.newFolder();
+        File conf = new File(base, "conf");
+        if (!conf.mkdirs()) {
+            throw new IOException("Unable to create config directory [" + conf + "]");
+        }
+        try (OutputStream out = new FileOutputStream(new File(conf, Config.APPLICATION_PROPERTIES_FILE))) {
+            properties.store(out, null);
+        }
+
+        String catalinaBase = System.getProperty("catalina.base");
+        System.setProperty("catalina.base", base.getAbsolutePath());
+        try {
+            return ConfigUtil.getConfig();
+        } finally {
+            if (catalinaBase != null) {
+                System.setProperty("catalina.base", catalinaBase);
+            } else {
+                System.clearProperty("catalina.base");
+            }
+        }
+    }
+
+    /** To get the keys, which are stored in the same local cache segment. */
+    private static List<String> getSegmentKeys(int count) {
+        List<String> keys = new ArrayList<>();
+        int segment = getSegmentIndex("key-0");
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "key-" + i;
+            if (getSegmentIndex(key) == segment) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static int getSegmentIndex(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (SEGMENT_COUNT - 1);
+    }
+
+    private static Map<String, byte[]> fields(String... namesAndValues) {
+        Map<String, byte[]> fields = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            fields.put(namesAndValues[i], bytes(namesAndValues[i + 1]));
+        }
+        return fields;
+    }
+
+    private static Map<String, String> strings(Map<String, byte[]> fields) {
+        Map<String, String> values = new TreeMap<>();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            values.put(field.getKey(), string(field.getValue()));
+        }
+        return values;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+
+    private static String string(byte[] value) {
+        return (value == null) ? null : new String(value);
+    }
+
+    /** Local data-cache in place of redis, which can fail the writes and the reads as an unreachable redis. */
+    private static class UnreachableDataCache extends LocalDataCache {
+        private volatile boolean writesFailed;
+        private volatile boolean readsFailed;
+
+        void setUnreachable(boolean writesFailed, boolean readsFailed) {
+            this.writesFailed = writesFailed;
+            this.readsFailed = readsFailed;
+        }
+
+        @Override
+        public byte[] setex(String key, byte[] value, int seconds) {
+            checkReachable(this.writesFailed);
+            return super.setex(key, value, seconds);
+        }
+
+        @Override
+        public Long hsetnxex(String key, Map<String, byte[]> fields, int seconds) {
+            checkReachable(this.writesFailed);
+            return super.hsetnxex(key, fields, seconds);
+        }
+
+        @Override
+        public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+            checkReachable(this.writesFailed);
+            return super.hupdate(key, fields, deletedFields, seconds);
+        }
+
+        @Override
+        public Long delete(String key) {
+            checkReachable(this.writesFailed);
+            return super.delete(key);
+        }
+
+        @Override
+        public byte[] get(String key) {
+            checkReachable(this.readsFailed);
+            return super.get(key);
+        }
+
+        @Override
+        public Map<String, byte[]> hgetAll(String key) {
+            checkReachable(this.readsFailed);
+            return super.hgetAll(key);
+        }
+
+        private static void checkReachable(boolean failed) {
+            if (failed) {
+                throw new JedisConnectionException("redis is not reachable");
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package tomcat.request.session.data.cache.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+
+    private static final long START_TIME = 1L << 40;
+
+    /** Level 0 bucket duration. */
+    private static final long TICK = 1L << 10;
+
+    @Test
+    public void expiresNodeAfterDeadline() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        TimerWheel.Node node = new TimerWheel.Node();
+        wheel.schedule(node, START_TIME + 5000L);
+
+        assertTrue(advance(wheel, START_TIME + 4999L).isEmpty());
+        // nodes expire once their bucket has elapsed, within a tick after the deadline.
+        assertEquals(Collections.singletonList(node), advance(wheel, START_TIME + 5000L + TICK));
+        assertTrue(advance(wheel, START_TIME + 10 * TICK).isEmpty());
+    }
+
+    @Test
+    public void expiresNodesAcrossLevelsInDeadlineOrder() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        long[] deadlines = {500L, 5000L, 120000L, 3600000L, 2L * 24 * 3600000L};
+        List<TimerWheel.Node> nodes = new ArrayList<>();
+        for (int i = deadlines.length - 1; i >= 0; i--) {
+            TimerWheel.Node node = new TimerWheel.Node();
+            wheel.schedule(node, START_TIME + deadlines[i]);
+            nodes.add(0, node);
+        }
+
+        for (int i = 0; i < deadlines.length; i++) {
+            assertTrue("node " + i, advance(wheel, START_TIME + deadlines[i] - 1).isEmpty());
+            assertEquals("node " + i, Collections.singletonList(nodes.get(i)),
+                    advance(wheel, START_TIME + deadlines[i] + TICK));
+        }
+    }
+
+    @Test
+    public void expiresAllElapsedNodesOnLargeAdvance() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        TimerWheel.Node first = new TimerWheel.Node();
+        TimerWheel.Node second = new TimerWheel.Node();
+        TimerWheel.Node pending = new TimerWheel.Node();
+        wheel.schedule(first, START_TIME + 1000L);
+        wheel.schedule(second, START_TIME + 7200000L);
+        wheel.schedule(pending, START_TIME + 8L * 24 * 3600000L);
+
+        List<TimerWheel.Node> expired = advance(wheel, START_TIME + 24 * 3600000L);
+        assertEquals(2, expired.size());
+        assertTrue(expired.containsAll(Arrays.asList(first, second)));
+
+        assertEquals(Collections.singletonList(pending), advance(wheel, START_TIME + 9L * 24 * 3600000L));
+    }
+
+    @Test
+    public void unscheduledNodeDoesNotExpire() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        TimerWheel.Node node = new TimerWheel.Node();
+        wheel.schedule(node, START_TIME + 1000L);
+        wheel.unschedule(node);
+        // unscheduling twice is a no-op.
+        wheel.unschedule(node);
+
+        assertTrue(advance(wheel, START_TIME + 10 * TICK).isEmpty());
+    }
+
+    @Test
+    public void rescheduleReplacesDeadline() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        TimerWheel.Node node = new TimerWheel.Node();
+        wheel.schedule(node, START_TIME + 1000L);
+        wheel.schedule(node, START_TIME + 60000L);
+
+        assertTrue(advance(wheel, START_TIME + 59999L).isEmpty());
+        assertEquals(Collections.singletonList(node), advance(wheel, START_TIME + 60000L + TICK));
+    }
+
+    @Test
+    public void ignoresTimeGoingBackwards() {
+        TimerWheel wheel = new TimerWheel(START_TIME);
+        TimerWheel.Node node = new TimerWheel.Node();
+        wheel.schedule(node, START_TIME + 1000L);
+
+        assertTrue(advance(wheel, START_TIME - 5000L).isEmpty());
+        assertEquals(Collections.singletonList(node), advance(wheel, START_TIME + 1000L + TICK));
+    }
+
+    private static List<TimerWheel.Node> advance(TimerWheel wheel, long time) {
+        List<TimerWheel.Node> expired = new ArrayList<>();
+        wheel.advance(time, expired);
+        return expired;
+    }
+}
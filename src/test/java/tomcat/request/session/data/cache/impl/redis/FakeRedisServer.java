@@ -0,0 +1,169 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Minimal RESP server, supporting PING, GET, SET and DEL, which can stop replying to simulate a dead peer. */
+class FakeRedisServer {
+
+    private final ServerSocket serverSocket;
+    private final Map<String, byte[]> data = new ConcurrentHashMap<>();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger commandCount = new AtomicInteger();
+    private volatile boolean dropReplies;
+
+    FakeRedisServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "fake-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    /** To read the commands without replying, as a peer which is gone without closing the connection. */
+    void setDropReplies(boolean dropReplies) {
+        this.dropReplies = dropReplies;
+    }
+
+    int getConnectionCount() {
+        return this.connectionCount.get();
+    }
+
+    int getCommandCount() {
+        return this.commandCount.get();
+    }
+
+    void stop() throws IOException {
+        this.serverSocket.close();
+        for (Socket socket : this.sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = this.serverSocket.accept();
+            } catch (IOException ex) {
+                return;
+            }
+            this.sockets.add(socket);
+            this.connectionCount.incrementAndGet();
+            Thread handler = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    handle(socket);
+                }
+            }, "fake-redis-connection");
+            handler.setDaemon(true);
+            handler.start();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = socket.getOutputStream()) {
+            List<byte[]> command;
+            while ((command = readCommand(in)) != null) {
+                this.commandCount.incrementAndGet();
+                byte[] reply = execute(command);
+                if (!this.dropReplies) {
+                    out.write(reply);
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            // connection closed.
+        }
+    }
+
+    private byte[] execute(List<byte[]> command) {
+        String name = new String(command.get(0), StandardCharsets.UTF_8).toUpperCase();
+        switch (name) {
+            case "PING":
+                return "+PONG\r\n".getBytes(StandardCharsets.UTF_8);
+            case "SET":
+                this.data.put(new String(command.get(1), StandardCharsets.UTF_8), command.get(2));
+                return "+OK\r\n".getBytes(StandardCharsets.UTF_8);
+            case "GET":
+                byte[] value = this.data.get(new String(command.get(1), StandardCharsets.UTF_8));
+                return (value == null) ? "$-1\r\n".getBytes(StandardCharsets.UTF_8) : bulk(value);
+            case "DEL":
+                boolean deleted = this.data.remove(new String(command.get(1), StandardCharsets.UTF_8)) != null;
+                return (deleted ? ":1\r\n" : ":0\r\n").getBytes(StandardCharsets.UTF_8);
+            default:
+                return ("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] bulk(byte[] value) {
+        byte[] header = ("$" + value.length + "\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] reply = new byte[header.length + value.length + 2];
+        System.arraycopy(header, 0, reply, 0, header.length);
+        System.arraycopy(value, 0, reply, header.length, value.length);
+        reply[reply.length - 2] = '\r';
+        reply[reply.length - 1] = '\n';
+        return reply;
+    }
+
+    /** To read the command, sent as an array of bulk strings. Returns null, if the connection is closed. */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<byte[]> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] arg = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(arg, read, length - read);
+                if (n < 0) {
+                    return null;
+                }
+                read += n;
+            }
+            readLine(in);
+            command.add(arg);
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
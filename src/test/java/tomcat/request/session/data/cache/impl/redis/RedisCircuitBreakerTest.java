@@ -0,0 +1,184 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.junit.After;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import tomcat.request.session.data.cache.impl.redis.RedisCircuitBreaker.State;
+import tomcat.request.session.metrics.SessionMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisCircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final int MAX_RETRIES = 10;
+    private static final long OPEN_TIME = 50L;
+    private static final long WAIT_TIME = 5000L;
+
+    private final JedisConnectionException failure = new JedisConnectionException("connection failed");
+    private final AtomicBoolean reachable = new AtomicBoolean();
+    private final AtomicInteger probes = new AtomicInteger();
+    private RedisCircuitBreaker breaker;
+
+    @After
+    public void shutdown() {
+        if (this.breaker != null) {
+            this.breaker.shutdown();
+        }
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        this.breaker = createBreaker(true);
+
+        for (int tries = 1; tries < FAILURE_THRESHOLD; tries++) {
+            this.breaker.onFailure(tries, MAX_RETRIES, this.failure);
+            assertEquals(State.CLOSED, this.breaker.getState());
+        }
+        assertFailure(FAILURE_THRESHOLD);
+        assertEquals(State.OPEN, this.breaker.getState());
+
+        try {
+            this.breaker.beforeCall();
+            fail("operation is executed while the circuit is open");
+        } catch (JedisConnectionException ex) {
+            // fails fast.
+        }
+    }
+
+    @Test
+    public void successResetsConsecutiveFailures() {
+        this.breaker = createBreaker(true);
+
+        for (int i = 0; i < 2 * FAILURE_THRESHOLD; i++) {
+            this.breaker.onFailure(1, MAX_RETRIES, this.failure);
+            this.breaker.onSuccess();
+        }
+        assertEquals(State.CLOSED, this.breaker.getState());
+        this.breaker.beforeCall();
+    }
+
+    @Test
+    public void halfOpensAfterSuccessfulProbeAndClosesOnSuccess() throws InterruptedException {
+        this.breaker = createBreaker(true);
+        openCircuit();
+
+        this.reachable.set(true);
+        awaitState(State.HALF_OPEN);
+        this.breaker.beforeCall();
+
+        this.breaker.onSuccess();
+        assertEquals(State.CLOSED, this.breaker.getState());
+    }
+
+    @Test
+    public void reopensOnFailureWhileHalfOpen() throws InterruptedException {
+        this.breaker = createBreaker(true);
+        openCircuit();
+
+        this.reachable.set(true);
+        awaitState(State.HALF_OPEN);
+
+        // a single failure reopens the circuit, without waiting for the failure threshold.
+        assertFailure(1);
+        assertEquals(State.OPEN, this.breaker.getState());
+    }
+
+    @Test
+    public void staysOpenWhileProbeFails() throws InterruptedException {
+        this.breaker = createBreaker(true);
+        openCircuit();
+
+        long deadline = System.currentTimeMillis() + WAIT_TIME;
+        while (this.probes.get() < 2) {
+            assertTrue("circuit is not probed", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+        assertEquals(State.OPEN, this.breaker.getState());
+    }
+
+    @Test
+    public void doesNotProbeAfterShutdown() throws InterruptedException {
+        this.breaker = createBreaker(true);
+        this.breaker.shutdown();
+        openCircuit();
+
+        this.reachable.set(true);
+        Thread.sleep(4 * OPEN_TIME);
+        assertEquals(0, this.probes.get());
+        assertEquals(State.OPEN, this.breaker.getState());
+    }
+
+    @Test
+    public void neverOpensIfDisabled() {
+        this.breaker = createBreaker(false);
+
+        for (int tries = 1; tries < MAX_RETRIES; tries++) {
+            this.breaker.onFailure(tries, MAX_RETRIES, this.failure);
+        }
+        assertFailure(MAX_RETRIES);
+        assertEquals(State.CLOSED, this.breaker.getState());
+        this.breaker.beforeCall();
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithinBounds() {
+        this.breaker = new RedisCircuitBreaker(false, FAILURE_THRESHOLD, OPEN_TIME, 10L, 100L,
+                SessionMetrics.DISABLED.getMetric("retry", SessionMetrics.MICROSECONDS));
+
+        long[] maxTimes = {10L, 20L, 40L, 80L, 100L, 100L};
+        for (int i = 0; i < maxTimes.length; i++) {
+            for (int j = 0; j < 100; j++) {
+                long backoffTime = this.breaker.getBackoffTime(i + 1);
+                assertTrue("backoff " + backoffTime, backoffTime >= maxTimes[i] / 2 && backoffTime <= maxTimes[i]);
+            }
+        }
+        long backoffTime = this.breaker.getBackoffTime(Integer.MAX_VALUE);
+        assertTrue("backoff " + backoffTime, backoffTime >= 50L && backoffTime <= 100L);
+    }
+
+    private RedisCircuitBreaker createBreaker(boolean enabled) {
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(enabled, FAILURE_THRESHOLD, OPEN_TIME, 1L, 1L,
+                SessionMetrics.DISABLED.getMetric("retry", SessionMetrics.MICROSECONDS));
+        circuitBreaker.setProbe(new RedisCircuitBreaker.Probe() {
+            @Override
+            public boolean ping() {
+                probes.incrementAndGet();
+                return reachable.get();
+            }
+        });
+        return circuitBreaker;
+    }
+
+    private void openCircuit() {
+        for (int tries = 1; tries < FAILURE_THRESHOLD; tries++) {
+            this.breaker.onFailure(tries, MAX_RETRIES, this.failure);
+        }
+        assertFailure(FAILURE_THRESHOLD);
+        assertEquals(State.OPEN, this.breaker.getState());
+    }
+
+    /** To record the failed attempt, which is expected to rethrow the failure. */
+    private void assertFailure(int tries) {
+        try {
+            this.breaker.onFailure(tries, MAX_RETRIES, this.failure);
+            fail("failure is not rethrown");
+        } catch (JedisConnectionException ex) {
+            assertSame(this.failure, ex);
+        }
+    }
+
+    private void awaitState(State state) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIME;
+        while (this.breaker.getState() != state) {
+            assertTrue("circuit is not " + state, System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+}
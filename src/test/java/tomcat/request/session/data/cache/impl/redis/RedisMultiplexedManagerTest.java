@@ -0,0 +1,97 @@
+package tomcat.request.session.data.cache.impl.redis;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import tomcat.request.session.metrics.SessionMetrics;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RedisMultiplexedManagerTest {
+
+    private static final int TIMEOUT = 200;
+
+    private FakeRedisServer server;
+    private RedisMultiplexedManager manager;
+
+    @Before
+    public void start() throws IOException {
+        this.server = new FakeRedisServer();
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker(false, 1, 1L, 1L, 1L,
+                SessionMetrics.DISABLED.getMetric("retry", SessionMetrics.MICROSECONDS));
+        this.manager = new RedisMultiplexedManager("127.0.0.1", this.server.getPort(), null, 0, TIMEOUT, 1,
+                circuitBreaker);
+    }
+
+    @After
+    public void stop() throws IOException {
+        this.manager.close();
+        this.server.stop();
+    }
+
+    @Test
+    public void reconnectsAfterReplyTimeout() {
+        this.manager.set("key", "value".getBytes());
+        assertEquals(1, this.server.getConnectionCount());
+
+        this.server.setDropReplies(true);
+        try {
+            this.manager.get("key");
+            fail("reply is received from the server, which drops the replies");
+        } catch (JedisConnectionException ex) {
+            // each attempt times out, and fails its connection.
+        }
+
+        this.server.setDropReplies(false);
+        assertArrayEquals("value".getBytes(), this.manager.get("key"));
+        assertTrue(this.server.getConnectionCount() > 2);
+    }
+
+    @Test
+    public void pingsOnNewConnection() {
+        this.manager.set("key", "value".getBytes());
+        this.server.setDropReplies(true);
+        try {
+            this.manager.get("key");
+            fail("reply is received from the server, which drops the replies");
+        } catch (JedisConnectionException ex) {
+            // expected.
+        }
+
+        this.server.setDropReplies(false);
+        int connectionCount = this.server.getConnectionCount();
+        assertTrue(this.manager.ping());
+        assertEquals(connectionCount + 1, this.server.getConnectionCount());
+    }
+
+    @Test
+    public void detectsDeadPeerOnIdleConnection() throws InterruptedException {
+        this.manager.set("key", "value".getBytes());
+        this.server.setDropReplies(true);
+
+        // the idle connection sends a heartbeat on the read timeout, and breaks once it is not answered.
+        Thread.sleep(4 * TIMEOUT);
+        assertTrue(this.server.getCommandCount() > 1);
+
+        this.server.setDropReplies(false);
+        long start = System.currentTimeMillis();
+        assertArrayEquals("value".getBytes(), this.manager.get("key"));
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT);
+        assertEquals(2, this.server.getConnectionCount());
+    }
+
+    @Test
+    public void keepsIdleConnectionToLivePeer() throws InterruptedException {
+        this.manager.set("key", "value".getBytes());
+
+        Thread.sleep(4 * TIMEOUT);
+        assertArrayEquals("value".getBytes(), this.manager.get("key"));
+        assertEquals(1, this.server.getConnectionCount());
+    }
+}
@@ -0,0 +1,276 @@
+package tomcat.request.session.redis;
+
+import org.junit.After;
+import org.junit.Test;
+import tomcat.request.session.data.cache.impl.LocalDataCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionWriterTest {
+
+    private static final long WAIT_TIME = 5000L;
+
+    private final RecordingDataCache dataCache = new RecordingDataCache();
+    private SessionWriter writer;
+
+    @After
+    public void shutdown() {
+        this.dataCache.unblock();
+        if (this.writer != null) {
+            this.writer.shutdown();
+        }
+    }
+
+    @Test
+    public void writesSynchronouslyIfAsyncDisabled() {
+        this.writer = new SessionWriter(this.dataCache, false, 1, 10, true);
+
+        this.writer.setex("session", bytes("v1"), 60);
+
+        assertFalse(this.writer.isPending("session"));
+        assertEquals("v1", string(this.dataCache.get("session")));
+    }
+
+    @Test
+    public void queuesWriteBehindWriteInProgress() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 2, 10, true);
+        this.dataCache.block("session");
+
+        this.writer.setex("session", bytes("v1"), 60);
+        this.dataCache.awaitBlocked();
+        // queued behind the write in progress, and merged into a single write.
+        this.writer.setex("session", bytes("v2"), 60);
+        this.writer.setex("session", bytes("v3"), 60);
+        assertTrue(this.writer.isPending("session"));
+
+        this.dataCache.unblock();
+        awaitWritten("session");
+
+        assertEquals(Arrays.asList("setex session v1", "setex session v3"), this.dataCache.getWrites());
+        assertEquals("v3", string(this.dataCache.get("session")));
+    }
+
+    @Test
+    public void mergesQueuedHashUpdates() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 10, true);
+        blockWriterThread();
+
+        this.writer.hupdate("session", fields("a", "1", "b", "1"), Collections.<String>emptySet(), 60);
+        this.writer.hupdate("session", fields("a", "2", "c", "2"), Collections.singleton("b"), 60);
+
+        this.dataCache.unblock();
+        awaitWritten("session");
+
+        assertEquals(Collections.singletonList("hupdate session {a=2, c=2} [b]"), getWrites("session"));
+        assertEquals(strings(fields("a", "2", "c", "2")), strings(this.dataCache.hgetAll("session")));
+    }
+
+    @Test
+    public void deletesBeforeHashUpdateMergedAfterDelete() throws InterruptedException {
+        this.dataCache.hupdate("session", fields("old", "1"), Collections.<String>emptySet(), 60);
+        this.writer = new SessionWriter(this.dataCache, true, 1, 10, true);
+        blockWriterThread();
+
+        this.writer.hupdate("session", fields("a", "1"), Collections.<String>emptySet(), 60);
+        this.writer.delete("session");
+        this.writer.hupdate("session", fields("b", "1"), Collections.<String>emptySet(), 60);
+
+        this.dataCache.unblock();
+        awaitWritten("session");
+
+        assertEquals(Arrays.asList("hupdate session {old=1} []", "delete session", "hupdate session {b=1} []"),
+                getWrites("session"));
+        assertEquals(strings(fields("b", "1")), strings(this.dataCache.hgetAll("session")));
+    }
+
+    @Test
+    public void expireAfterDeleteIsDropped() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 10, true);
+        blockWriterThread();
+
+        this.writer.setex("session", bytes("v1"), 60);
+        this.writer.delete("session");
+        this.writer.expire("session", 60);
+
+        this.dataCache.unblock();
+        awaitWritten("session");
+
+        assertEquals(Collections.singletonList("delete session"), getWrites("session"));
+    }
+
+    @Test
+    public void flushWritesOnCallingThread() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 10, true);
+        blockWriterThread();
+
+        this.writer.setex("session", bytes("v1"), 60);
+        assertTrue(this.writer.flush("session"));
+
+        assertFalse(this.writer.isPending("session"));
+        assertEquals("v1", string(this.dataCache.get("session")));
+        assertFalse(this.writer.flush("session"));
+    }
+
+    @Test
+    public void writesOnCallingThreadIfQueueIsFull() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 1, true);
+        blockWriterThread();
+
+        this.writer.setex("queued", bytes("v1"), 60);
+        this.writer.setex("session", bytes("v1"), 60);
+
+        assertTrue(this.writer.isPending("queued"));
+        assertFalse(this.writer.isPending("session"));
+        assertEquals("v1", string(this.dataCache.get("session")));
+    }
+
+    @Test
+    public void discardsWriteIfQueueIsFullAndSyncFallbackDisabled() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 1, false);
+        blockWriterThread();
+
+        this.writer.setex("queued", bytes("v1"), 60);
+        this.writer.setex("session", bytes("v1"), 60);
+
+        assertFalse(this.writer.isPending("session"));
+        assertNull(this.dataCache.get("session"));
+    }
+
+    @Test
+    public void shutdownWritesPendingSessions() throws InterruptedException {
+        this.writer = new SessionWriter(this.dataCache, true, 1, 10, true);
+        blockWriterThread();
+
+        this.writer.setex("first", bytes("v1"), 60);
+        this.writer.setex("second", bytes("v1"), 60);
+
+        this.dataCache.unblock();
+        this.writer.shutdown();
+
+        assertEquals("v1", string(this.dataCache.get("first")));
+        assertEquals("v1", string(this.dataCache.get("second")));
+    }
+
+    /** To keep the single writer thread busy, so the later writes stay queued. */
+    private void blockWriterThread() throws InterruptedException {
+        this.dataCache.block("blocker");
+        this.writer.setex("blocker", bytes("v1"), 60);
+        this.dataCache.awaitBlocked();
+    }
+
+    private void awaitWritten(String key) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIME;
+        while (this.writer.isPending(key)) {
+            assertTrue("session write is pending: " + key, System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+    private List<String> getWrites(String key) {
+        List<String> writes = new ArrayList<>();
+        for (String write : this.dataCache.getWrites()) {
+            if (write.split(" ")[1].equals(key)) {
+                writes.add(write);
+            }
+        }
+        return writes;
+    }
+
+    private static Map<String, byte[]> fields(String... namesAndValues) {
+        Map<String, byte[]> fields = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            fields.put(namesAndValues[i], bytes(namesAndValues[i + 1]));
+        }
+        return fields;
+    }
+
+    private static Map<String, String> strings(Map<String, byte[]> fields) {
+        Map<String, String> values = new TreeMap<>();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            values.put(field.getKey(), string(field.getValue()));
+        }
+        return values;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes();
+    }
+
+    private static String string(byte[] value) {
+        return (value == null) ? null : new String(value);
+    }
+
+    /** Local data-cache, which records the session writes and can block the write of a key. */
+    private static class RecordingDataCache extends LocalDataCache {
+        private final List<String> writes = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile String blockedKey;
+
+        void block(String key) {
+            this.blockedKey = key;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue("write is not started", this.blocked.await(WAIT_TIME, TimeUnit.MILLISECONDS));
+        }
+
+        void unblock() {
+            this.released.countDown();
+        }
+
+        List<String> getWrites() {
+            synchronized (this.writes) {
+                return new ArrayList<>(this.writes);
+            }
+        }
+
+        @Override
+        public byte[] setex(String key, byte[] value, int seconds) {
+            if (key.equals(this.blockedKey)) {
+                this.blocked.countDown();
+                try {
+                    this.released.await(WAIT_TIME, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            this.writes.add("setex " + key + " " + string(value));
+            return super.setex(key, value, seconds);
+        }
+
+        @Override
+        public Long hupdate(String key, Map<String, byte[]> fields, Set<String> deletedFields, int seconds) {
+            this.writes.add("hupdate " + key + " " + strings(fields) + " " + new TreeSet<>(deletedFields));
+            return super.hupdate(key, fields, new HashSet<>(deletedFields), seconds);
+        }
+
+        @Override
+        public Long expire(String key, int seconds) {
+            this.writes.add("expire " + key);
+            return super.expire(key, seconds);
+        }
+
+        @Override
+        public Long delete(String key) {
+            this.writes.add("delete " + key);
+            return super.delete(key);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package tomcat.request.session.util;
+
+import org.junit.Test;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class HashUtilTest {
+
+    @Test
+    public void murmur3HashesKnownValues() throws IOException {
+        assertMurmur3("00000000000000000000000000000000", "");
+        assertMurmur3("897859f6655555855a890e51483ab5e6", "a");
+        assertMurmur3("029bbd41b3a7d8cb191dae486a901e5b", "hello");
+        assertMurmur3("12b0d620544306a775054624b25674cd", "hello, world!!!");
+        assertMurmur3("6c1b07bc7bbc4be347939ac4a93c437a", "The quick brown fox jumps over the lazy dog");
+    }
+
+    @Test
+    public void murmur3HashesDataRange() throws IOException {
+        byte[] data = "The quick brown fox jumps over the lazy dog".getBytes("UTF-8");
+        for (int offset = 0; offset < 8; offset++) {
+            for (int length = 0; offset + length <= data.length; length++) {
+                byte[] range = Arrays.copyOfRange(data, offset, offset + length);
+                assertArrayEquals(HashUtil.murmur3(range, 0, range.length), HashUtil.murmur3(data, offset, length));
+            }
+        }
+        assertNotEquals(toHex(HashUtil.murmur3(data, 0, 16)), toHex(HashUtil.murmur3(data, 1, 16)));
+    }
+
+    private static void assertMurmur3(String expected, String value) throws IOException {
+        byte[] data = value.getBytes("UTF-8");
+        assertEquals(expected, toHex(HashUtil.murmur3(data, 0, data.length)));
+        assertEquals(expected, toHex(HashUtil.hash(HashAlgorithm.MURMUR3, data, 0, data.length)));
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : data) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    @Test
+    public void md5HashesKnownValue() throws IOException {
+        byte[] data = "hello".getBytes("UTF-8");
+        assertEquals("5d41402abc4b2a76b9719d911017c592", toHex(HashUtil.hash(HashAlgorithm.MD5, data, 0, data.length)));
+    }
+}
@@ -0,0 +1,272 @@
+package tomcat.request.session.util;
+
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.session.StandardManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import tomcat.request.session.codec.CompressionCodec;
+import tomcat.request.session.codec.SessionCodec;
+import tomcat.request.session.codec.SessionCodecFactory;
+import tomcat.request.session.codec.impl.BinarySessionCodec;
+import tomcat.request.session.codec.impl.DeflateCompressionCodec;
+import tomcat.request.session.codec.impl.JavaSessionCodec;
+import tomcat.request.session.constant.SessionConstants.HashAlgorithm;
+import tomcat.request.session.model.Config;
+import tomcat.request.session.model.Session;
+import tomcat.request.session.model.SessionMetadata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerializationUtilTest {
+
+    private static final byte COMPRESSED_DATA_MAGIC = (byte) 0xCD;
+    private static final int COMPRESSION_THRESHOLD = 256;
+
+    private static Config config;
+    private static ClassLoader loader;
+
+    @BeforeClass
+    public static void initialize() {
+        if (System.getProperty("catalina.base") == null) {
+            System.setProperty("catalina.base", System.getProperty("java.io.tmpdir"));
+        }
+        // default properties, from the classpath.
+        config = ConfigUtil.getConfig();
+        loader = SerializationUtilTest.class.getClassLoader();
+    }
+
+    @Test
+    public void sessionDataRoundTrip() throws Exception {
+        for (SerializationUtil serializer : getSerializers()) {
+            Session session = createSession();
+            SessionMetadata metadata = new SessionMetadata();
+            byte[] data = serializer.compress(serializer.serializeSessionData(session, metadata));
+
+            Session decoded = newSession();
+            SessionMetadata decodedMetadata = new SessionMetadata();
+            serializer.deserializeSessionData(data, decoded, decodedMetadata);
+
+            assertSession(session, decoded);
+            assertArrayEquals(metadata.getAttributesHash(), decodedMetadata.getAttributesHash());
+        }
+    }
+
+    @Test
+    public void sessionMetadataRoundTrip() throws Exception {
+        for (SerializationUtil serializer : getSerializers()) {
+            Session session = createSession();
+            SessionMetadata metadata = new SessionMetadata();
+            metadata.setAttributesHash(new byte[]{1, 2, 3});
+            metadata.setLastRefreshedTime(123456789L);
+            byte[] data = serializer.compress(serializer.serializeSessionMetadata(session, metadata));
+
+            Session decoded = newSession();
+            SessionMetadata decodedMetadata = new SessionMetadata();
+            serializer.deserializeSessionMetadata(data, decoded, decodedMetadata);
+
+            assertEquals(session.getId(), decoded.getIdInternal());
+            assertEquals(session.getCreationTimeInternal(), decoded.getCreationTimeInternal());
+            assertEquals(session.getMaxInactiveInterval(), decoded.getMaxInactiveInterval());
+            assertArrayEquals(metadata.getAttributesHash(), decodedMetadata.getAttributesHash());
+            assertEquals(metadata.getLastRefreshedTime(), decodedMetadata.getLastRefreshedTime());
+        }
+    }
+
+    @Test
+    public void sessionAttributeRoundTrip() throws Exception {
+        for (SerializationUtil serializer : getSerializers()) {
+            for (Object value : createSession().getAttributeValues().values()) {
+                byte[] data = serializer.compress(serializer.serializeSessionAttribute(value));
+                Object decoded = serializer.deserializeSessionAttribute(data);
+                assertTrue(String.valueOf(value), Objects.deepEquals(value, decoded));
+            }
+        }
+    }
+
+    @Test
+    public void compressesDataAboveThreshold() throws Exception {
+        SerializationUtil serializer = getSerializer(new BinarySessionCodec(), new DeflateCompressionCodec());
+        SerializationUtil uncompressed = getSerializer(new BinarySessionCodec(), null);
+
+        byte[] small = serializer.compress(serializer.serializeSessionAttribute("value"));
+        assertArrayEquals(uncompressed.serializeSessionAttribute("value"), small);
+
+        String largeValue = getLargeValue();
+        byte[] encoded = serializer.serializeSessionAttribute(largeValue);
+        byte[] large = serializer.compress(encoded);
+        assertEquals(COMPRESSED_DATA_MAGIC, large[0]);
+        assertTrue(large.length < encoded.length);
+        assertEquals(encoded.length, serializer.getUncompressedLength(large));
+        assertArrayEquals(encoded, serializer.decompress(large));
+        assertArrayEquals(encoded, uncompressed.compress(encoded));
+    }
+
+    @Test
+    public void hashesUncompressedData() throws Exception {
+        SerializationUtil serializer = getSerializer(new BinarySessionCodec(), new DeflateCompressionCodec());
+        SerializationUtil uncompressed = getSerializer(new BinarySessionCodec(), null);
+
+        // serialized data is compressed only on write, so its hash doesn't depend on the compression.
+        byte[] data = serializer.serializeSessionAttribute(getLargeValue());
+        assertArrayEquals(uncompressed.serializeSessionAttribute(getLargeValue()), data);
+        assertArrayEquals(uncompressed.getHashCode(data), serializer.getHashCode(data));
+
+        SessionMetadata metadata = new SessionMetadata();
+        serializer.serializeSessionData(createSession(), metadata);
+        SessionMetadata uncompressedMetadata = new SessionMetadata();
+        uncompressed.serializeSessionData(createSession(), uncompressedMetadata);
+        assertArrayEquals(uncompressedMetadata.getAttributesHash(), metadata.getAttributesHash());
+    }
+
+    @Test
+    public void attributesHashTracksAttributeChanges() throws Exception {
+        for (SerializationUtil serializer : getSerializers()) {
+            SessionMetadata metadata = new SessionMetadata();
+            serializer.serializeSessionData(createSession(), metadata);
+
+            SessionMetadata sameMetadata = new SessionMetadata();
+            serializer.serializeSessionData(createSession(), sameMetadata);
+            assertArrayEquals(metadata.getAttributesHash(), sameMetadata.getAttributesHash());
+
+            Session changed = createSession();
+            changed.loadAttribute("name", "changed");
+            SessionMetadata changedMetadata = new SessionMetadata();
+            serializer.serializeSessionData(changed, changedMetadata);
+            assertFalse(Arrays.equals(metadata.getAttributesHash(), changedMetadata.getAttributesHash()));
+        }
+    }
+
+    @Test
+    public void decodesDataWrittenBeforeCodecChange() throws Exception {
+        SerializationUtil javaSerializer = getSerializer(new JavaSessionCodec(), null);
+        SerializationUtil binarySerializer = getSerializer(new BinarySessionCodec(), new DeflateCompressionCodec());
+
+        Session session = createSession();
+        byte[] data = javaSerializer.compress(javaSerializer.serializeSessionData(session, new SessionMetadata()));
+        Session decoded = newSession();
+        binarySerializer.deserializeSessionData(data, decoded, new SessionMetadata());
+        assertSession(session, decoded);
+
+        data = binarySerializer.compress(binarySerializer.serializeSessionData(session, new SessionMetadata()));
+        decoded = newSession();
+        javaSerializer.deserializeSessionData(data, decoded, new SessionMetadata());
+        assertSession(session, decoded);
+    }
+
+    @Test
+    public void decodesUncompressedDataWithCompressionEnabled() throws Exception {
+        for (SessionCodec codec : Arrays.asList(new JavaSessionCodec(), new BinarySessionCodec())) {
+            SerializationUtil uncompressed = getSerializer(codec, null);
+            SerializationUtil compressed = getSerializer(codec, new DeflateCompressionCodec());
+
+            Session session = createSession();
+            byte[] data = uncompressed.serializeSessionData(session, new SessionMetadata());
+            Session decoded = newSession();
+            compressed.deserializeSessionData(data, decoded, new SessionMetadata());
+            assertSession(session, decoded);
+        }
+    }
+
+    @Test
+    public void decodesLegacySessionData() throws Exception {
+        Session session = createSession();
+        SessionMetadata metadata = new SessionMetadata();
+        metadata.setAttributesHash(new byte[]{1, 2, 3});
+
+        // serialized form written before the session codecs.
+        byte[] data;
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(metadata);
+            session.writeObjectData(oos);
+            oos.flush();
+            data = bos.toByteArray();
+        }
+
+        for (SerializationUtil serializer : getSerializers()) {
+            Session decoded = newSession();
+            SessionMetadata decodedMetadata = new SessionMetadata();
+            serializer.deserializeSessionData(data, decoded, decodedMetadata);
+            assertSession(session, decoded);
+            assertArrayEquals(metadata.getAttributesHash(), decodedMetadata.getAttributesHash());
+        }
+    }
+
+    private static void assertSession(Session expected, Session actual) {
+        assertEquals(expected.getIdInternal(), actual.getIdInternal());
+        assertEquals(expected.getCreationTimeInternal(), actual.getCreationTimeInternal());
+        assertEquals(expected.getMaxInactiveInterval(), actual.getMaxInactiveInterval());
+        Map<String, Object> expectedValues = expected.getAttributeValues();
+        Map<String, Object> actualValues = actual.getAttributeValues();
+        assertEquals(expectedValues.keySet(), actualValues.keySet());
+        for (Map.Entry<String, Object> entry : expectedValues.entrySet()) {
+            assertTrue(entry.getKey(), Objects.deepEquals(entry.getValue(), actualValues.get(entry.getKey())));
+        }
+    }
+
+    /** To get the serializers of the built-in session codecs, with and without compression. */
+    private static List<SerializationUtil> getSerializers() {
+        return Arrays.asList(
+                getSerializer(new JavaSessionCodec(), null),
+                getSerializer(new JavaSessionCodec(), new DeflateCompressionCodec()),
+                getSerializer(new BinarySessionCodec(), null),
+                getSerializer(new BinarySessionCodec(), new DeflateCompressionCodec()));
+    }
+
+    private static SerializationUtil getSerializer(SessionCodec codec, CompressionCodec compressionCodec) {
+        codec.initialize(config, loader);
+        SessionCodecFactory codecFactory = new SessionCodecFactory(config, loader);
+        return new SerializationUtil(codec, codecFactory.getSessionCodecs(codec), HashAlgorithm.MD5,
+                compressionCodec, codecFactory.getCompressionCodecs(compressionCodec), COMPRESSION_THRESHOLD);
+    }
+
+    private static Session newSession() {
+        StandardManager manager = new StandardManager();
+        manager.setContext(new StandardContext());
+        return new Session(manager);
+    }
+
+    private static Session createSession() {
+        Session session = newSession();
+        session.setValid(true);
+        session.setId("session-id");
+        session.setCreationTime(1500000000000L);
+        session.setMaxInactiveInterval(1800);
+
+        List<Object> list = new ArrayList<>();
+        list.add("item");
+        list.add(42L);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("key", 1.5d);
+        map.put("date", new Date(1500000000000L));
+
+        session.loadAttribute("name", "value");
+        session.loadAttribute("count", 10);
+        session.loadAttribute("list", list);
+        session.loadAttribute("map", map);
+        session.loadAttribute("bytes", "bytes".getBytes());
+        session.loadAttribute("large", getLargeValue());
+        return session;
+    }
+
+    private static String getLargeValue() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            value.append("large session attribute value ");
+        }
+        return value.toString();
+    }
+}